@@ -0,0 +1,39 @@
+package com.skydevs.tgdrive.config;
+
+import com.skydevs.tgdrive.service.FileTreeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * WebDAV目录树初始化器
+ * 在应用启动时为迁移前缺少父目录记录、或从备份导入的条目补建目录并计算parent_id，然后加载内存路径索引
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FileTreeInitializer implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final FileTreeService fileTreeService;
+
+    @Override
+    public void onApplicationEvent(@NotNull ApplicationReadyEvent event) {
+        try {
+            int repaired = fileTreeService.repair();
+            if (repaired > 0) {
+                log.info("WebDAV目录树修复完成，共 {} 个条目", repaired);
+            }
+        } catch (Exception e) {
+            log.error("WebDAV目录树修复失败: {}", e.getMessage(), e);
+        }
+        try {
+            fileTreeService.loadIndex();
+        } catch (Exception e) {
+            // 索引不可用时按路径查找改为查询数据库
+            log.error("WebDAV路径索引加载失败: {}", e.getMessage(), e);
+        }
+    }
+}
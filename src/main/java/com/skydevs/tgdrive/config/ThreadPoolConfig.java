@@ -1,6 +1,8 @@
 package com.skydevs.tgdrive.config;
 
-import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -11,6 +13,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 /**
  * 线程池配置类
  * 用于优化文件上传和下载的并发性能
+ * 启用虚拟线程（spring.threads.virtual.enabled，需要Java 21）时由 {@link VirtualThreadConfig} 提供同名的执行器
  */
 @Configuration
 @EnableAsync
@@ -21,19 +24,23 @@ public class ThreadPoolConfig {
      * 用于处理大文件分片上传的并发任务
      */
     @Bean("uploadTaskExecutor")
-    public ThreadPoolTaskExecutor uploadTaskExecutor() {
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor uploadTaskExecutor(@Value("${app.upload.executor.max-threads:20}") int maxThreads,
+                                                     @Value("${app.upload.executor.queue-capacity:100}") int queueCapacity) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         // 核心线程数
-        executor.setCorePoolSize(5);
+        executor.setCorePoolSize(Math.min(5, maxThreads));
         // 最大线程数
-        executor.setMaxPoolSize(20);
+        executor.setMaxPoolSize(maxThreads);
         // 队列容量
-        executor.setQueueCapacity(100);
+        executor.setQueueCapacity(queueCapacity);
         // 线程空闲时间（秒）
         executor.setKeepAliveSeconds(60);
         // 线程名前缀
         executor.setThreadNamePrefix("upload-");
         // 拒绝策略：由调用线程执行
+        // 提交前先从 UploadAdmissionController 获取分块任务名额，名额总数等于线程数+队列容量，
+        // 与并发上传数和bot数量无关，不会落到调用线程上执行
         executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         // 等待所有任务完成后再关闭线程池
         executor.setWaitForTasksToCompleteOnShutdown(true);
@@ -48,6 +55,7 @@ public class ThreadPoolConfig {
      * 用于处理文件下载的并发任务
      */
     @Bean("downloadTaskExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
     public ThreadPoolTaskExecutor downloadTaskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(3);
@@ -61,4 +69,47 @@ public class ThreadPoolConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * 分块预读线程池
+     * 所有下载的分块预读共享该线程池。核心线程数等于最大线程数，任务提交后立即有线程执行，
+     * 不会因为队列未满而只用核心线程；排队的任务数受 {@link com.skydevs.tgdrive.download.ChunkPrefetcher} 的内存预算约束
+     */
+    @Bean("prefetchTaskExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor prefetchTaskExecutor(@Value("${app.download.prefetch.threads:16}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setKeepAliveSeconds(60);
+        // 空闲时回收核心线程
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("prefetch-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 请求处理线程池
+     * 上传接口把整个上传过程（排队、分块、保存记录）放到这里执行，不占用Tomcat线程和公共ForkJoinPool
+     */
+    @Bean("requestTaskExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor requestTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        // 同时进行的上传数 + 排队的上传数（见 app.upload.admission）
+        executor.setCorePoolSize(10);
+        executor.setMaxPoolSize(30);
+        // 不排队，超出最大线程数时由调用线程执行
+        executor.setQueueCapacity(0);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("request-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.skydevs.tgdrive.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * 虚拟线程配置类
+ * 使用 virtual profile（spring.threads.virtual.enabled=true）并运行在Java 21及以上时生效，
+ * 替换 {@link ThreadPoolConfig} 中的线程池：每个任务一个虚拟线程，阻塞在Telegram请求上时不占用平台线程。
+ * 并发数由上传准入控制、下载预读窗口和Telegram限流器约束，这里不再限制线程数。
+ * Tomcat请求线程由Spring Boot根据同一个开关切换为虚拟线程
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    /**
+     * 等待正在执行的任务完成的时间（毫秒）
+     */
+    private static final long TERMINATION_TIMEOUT = 60_000;
+
+    @Bean("uploadTaskExecutor")
+    public SimpleAsyncTaskExecutor uploadTaskExecutor() {
+        return virtualExecutor("upload-");
+    }
+
+    @Bean("downloadTaskExecutor")
+    public SimpleAsyncTaskExecutor downloadTaskExecutor() {
+        return virtualExecutor("download-");
+    }
+
+    @Bean("prefetchTaskExecutor")
+    public SimpleAsyncTaskExecutor prefetchTaskExecutor() {
+        return virtualExecutor("prefetch-");
+    }
+
+    @Bean("requestTaskExecutor")
+    public SimpleAsyncTaskExecutor requestTaskExecutor() {
+        return virtualExecutor("request-");
+    }
+
+    private SimpleAsyncTaskExecutor virtualExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        // 关闭时等待任务完成，与平台线程池的 waitForTasksToCompleteOnShutdown 一致
+        executor.setTaskTerminationTimeout(TERMINATION_TIMEOUT);
+        return executor;
+    }
+}
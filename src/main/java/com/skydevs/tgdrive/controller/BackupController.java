@@ -55,6 +55,12 @@ public class BackupController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
+        try {
+            backupService.checkpoint();
+        } catch (RuntimeException e) {
+            log.warn("数据库检查点失败，备份中可能缺少最近的写入", e);
+        }
+
         Resource resource = new FileSystemResource(file);
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=tgDrive.db")
@@ -1,18 +1,21 @@
 package com.skydevs.tgdrive.controller;
 
+import com.skydevs.tgdrive.download.SendfileSupport;
 import com.skydevs.tgdrive.service.DownloadService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.concurrent.CompletableFuture;
-
 @RestController
 @RequestMapping("/d")
 @Slf4j
@@ -20,20 +23,36 @@ import java.util.concurrent.CompletableFuture;
 public class DownloadController {
 
     private final DownloadService downloadService;
+    private final SendfileSupport sendfileSupport;
 
-    //TODO: 断点续传
     /**
      * Description:
-     * 根据文件ID下载文件
+     * 根据文件ID下载文件，支持Range断点续传和条件请求
      * @author SkyDev
      * @date 2025-07-30 16:47:18
      * @param fileID 文件ID
+     * @param headers 请求头（Range / If-Range / If-None-Match / If-Modified-Since）
      * @return 文件
      */
     @GetMapping("/{fileID}")
-    public CompletableFuture<ResponseEntity<StreamingResponseBody>> downloadFile(@NotBlank(message = "fileID不能为空") @PathVariable String fileID) {
+    public ResponseEntity<StreamingResponseBody> downloadFile(@NotBlank(message = "fileID不能为空") @PathVariable String fileID,
+                                                              @RequestHeader HttpHeaders headers, HttpServletRequest request) {
         log.info("接收到下载请求，fileID: " + fileID);
-        return CompletableFuture.supplyAsync(() -> downloadService.downloadFile(fileID));
+        // 同步返回响应头，sendfile只对同步请求生效；响应体仍由StreamingResponseBody异步写出
+        return sendfileSupport.apply(request, downloadService.downloadFile(fileID, headers));
+    }
+
+    /**
+     * Description:
+     * HEAD请求只返回数据库中的文件信息，不请求Telegram
+     * @param fileID 文件ID
+     * @param headers 请求头（If-None-Match / If-Modified-Since）
+     * @return 响应头
+     */
+    @RequestMapping(value = "/{fileID}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> headFile(@NotBlank(message = "fileID不能为空") @PathVariable String fileID,
+                                         @RequestHeader HttpHeaders headers) {
+        return downloadService.headFile(fileID, headers);
     }
 
 }
@@ -12,6 +12,9 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -26,6 +29,11 @@ import java.util.concurrent.CompletableFuture;
 public class FileController {
 
     private final FileStorageService fileStorageService;
+
+    @Autowired
+    @Qualifier("requestTaskExecutor")
+    private AsyncTaskExecutor requestTaskExecutor;
+
     /**
      * 上传文件
      *
@@ -37,7 +45,8 @@ public class FileController {
     public CompletableFuture<Result<UploadFile>> uploadFile(@NotEmptyFile @RequestParam("file") MultipartFile multipartFile, HttpServletRequest request) {
         final long userId = StpUtil.getLoginIdAsLong();
         
-        return CompletableFuture.supplyAsync(() -> Result.success(fileStorageService.getUploadFile(multipartFile, request, userId)));
+        // 上传会阻塞在Telegram请求上，放到专用执行器中，不占用公共ForkJoinPool
+        return CompletableFuture.supplyAsync(() -> Result.success(fileStorageService.getUploadFile(multipartFile, request, userId)), requestTaskExecutor);
     }
 
     @SaCheckLogin
@@ -48,12 +57,17 @@ public class FileController {
 
     /**
      * 获取文件列表
+     * 传cursor参数时使用游标分页（第一页传空字符串），返回nextCursor用于请求下一页；否则按页码分页
      * @param page 页码
      * @param size 每页数量
+     * @param cursor 上一页返回的游标
+     * @param withTotal 游标分页时是否返回总数（近似值）
      * @return 分页结果
      */
     @GetMapping("/file-list")
-    public Result<PageResult> getFileList(@RequestParam int page, @RequestParam int size, @RequestParam(required = false) String keyword, @RequestParam(required = false) Long userId) {
+    public Result<PageResult> getFileList(@RequestParam(defaultValue = "1") int page, @RequestParam int size,
+                                          @RequestParam(required = false) String keyword, @RequestParam(required = false) Long userId,
+                                          @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "false") boolean withTotal) {
         Long currentUserId = null;
         String role = "visitor";
         if (StpUtil.isLogin()) {
@@ -68,6 +82,9 @@ public class FileController {
             role = "admin_filter"; // 特殊角色标识，用于在mapper中处理
         }
         
+        if (cursor != null) {
+            return Result.success(fileStorageService.getFileListByCursor(cursor, size, keyword, filterUserId, role, withTotal));
+        }
         PageResult pageResult = fileStorageService.getFileList(page, size, keyword, filterUserId, role);
         return Result.success(pageResult);
     }
@@ -0,0 +1,90 @@
+package com.skydevs.tgdrive.controller;
+
+import cn.dev33.satoken.annotation.SaCheckRole;
+import com.skydevs.tgdrive.datasource.DatabaseMonitor;
+import com.skydevs.tgdrive.download.ChunkDiskCache;
+import com.skydevs.tgdrive.dto.DatabaseStats;
+import com.skydevs.tgdrive.dto.DownloadCacheStats;
+import com.skydevs.tgdrive.dto.TelegramSchedulerStats;
+import com.skydevs.tgdrive.dto.TelegramTransportStats;
+import com.skydevs.tgdrive.dto.UploadAdmissionStats;
+import com.skydevs.tgdrive.result.Result;
+import com.skydevs.tgdrive.telegram.TelegramRequestScheduler;
+import com.skydevs.tgdrive.telegram.TelegramTransport;
+import com.skydevs.tgdrive.upload.UploadAdmissionController;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 运行指标控制器
+ */
+@RestController
+@Slf4j
+@RequestMapping("/api/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final UploadAdmissionController uploadAdmissionController;
+    private final TelegramRequestScheduler telegramRequestScheduler;
+    private final ChunkDiskCache chunkDiskCache;
+    private final TelegramTransport telegramTransport;
+    private final DatabaseMonitor databaseMonitor;
+
+    /**
+     * Description:
+     * 获取上传准入控制指标（队列长度、排队时间、在途分块内存）
+     * @return 上传指标
+     */
+    @SaCheckRole("admin")
+    @GetMapping("/upload")
+    public Result<UploadAdmissionStats> getUploadStats() {
+        return Result.success(uploadAdmissionController.getStats());
+    }
+
+    /**
+     * Description:
+     * 获取Telegram请求调度指标（排队数、等待时间、429次数）
+     * @return Telegram调度指标
+     */
+    @SaCheckRole("admin")
+    @GetMapping("/telegram")
+    public Result<TelegramSchedulerStats> getTelegramStats() {
+        return Result.success(telegramRequestScheduler.getStats());
+    }
+
+    /**
+     * Description:
+     * 获取Telegram HTTP客户端指标（连接池、连接复用、HTTP/2、响应耗时）
+     * @return HTTP客户端指标
+     */
+    @SaCheckRole("admin")
+    @GetMapping("/telegram-transport")
+    public Result<TelegramTransportStats> getTelegramTransportStats() {
+        return Result.success(telegramTransport.getStats());
+    }
+
+    /**
+     * Description:
+     * 获取下载磁盘缓存指标（占用空间、命中率）
+     * @return 下载缓存指标
+     */
+    @SaCheckRole("admin")
+    @GetMapping("/download-cache")
+    public Result<DownloadCacheStats> getDownloadCacheStats() {
+        return Result.success(chunkDiskCache.getStats());
+    }
+
+    /**
+     * Description:
+     * 获取数据库指标（写入队列长度、写锁等待、只读连接池）
+     * @return 数据库指标
+     */
+    @SaCheckRole("admin")
+    @GetMapping("/database")
+    public Result<DatabaseStats> getDatabaseStats() {
+        return Result.success(databaseMonitor.getStats());
+    }
+}
@@ -0,0 +1,104 @@
+package com.skydevs.tgdrive.controller;
+
+import cn.dev33.satoken.annotation.SaCheckLogin;
+import cn.dev33.satoken.stp.StpUtil;
+import com.skydevs.tgdrive.dto.UploadFile;
+import com.skydevs.tgdrive.dto.UploadSessionRequest;
+import com.skydevs.tgdrive.dto.UploadSessionStatus;
+import com.skydevs.tgdrive.exception.file.FailedToGetSizeException;
+import com.skydevs.tgdrive.result.Result;
+import com.skydevs.tgdrive.service.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 断点续传上传接口
+ * 创建会话 -> 并行上传分块（可乱序、可重传） -> 查询缺失分块 -> 合并
+ */
+@RestController
+@Slf4j
+@RequestMapping("/api/upload/sessions")
+@RequiredArgsConstructor
+public class UploadSessionController {
+
+    private final UploadSessionService uploadSessionService;
+
+    /**
+     * 创建上传会话
+     * @param request 文件名、文件大小
+     * @return 会话id、分块大小、分块总数
+     */
+    @SaCheckLogin
+    @PostMapping
+    public Result<UploadSessionStatus> createSession(@Valid @RequestBody UploadSessionRequest request) {
+        long userId = StpUtil.getLoginIdAsLong();
+        return Result.success(uploadSessionService.createSession(request, userId));
+    }
+
+    /**
+     * 上传分块，请求体为分块的原始数据
+     * @param uploadId 会话id
+     * @param index 分块序号，从0开始
+     * @return 成功消息
+     */
+    @SaCheckLogin
+    @PutMapping("/{uploadId}/chunks/{index}")
+    public Result<String> uploadChunk(@PathVariable String uploadId, @PathVariable int index, HttpServletRequest request) throws IOException {
+        long size = request.getContentLengthLong();
+        if (size < 0) {
+            throw new FailedToGetSizeException();
+        }
+        long userId = StpUtil.getLoginIdAsLong();
+        String role = StpUtil.getSession().getString("role");
+        try (InputStream inputStream = request.getInputStream()) {
+            uploadSessionService.uploadChunk(uploadId, index, inputStream, size, userId, role);
+        }
+        return Result.success("分块上传成功");
+    }
+
+    /**
+     * 查询会话状态和缺失的分块
+     * @param uploadId 会话id
+     * @return 会话状态
+     */
+    @SaCheckLogin
+    @GetMapping("/{uploadId}")
+    public Result<UploadSessionStatus> getStatus(@PathVariable String uploadId) {
+        long userId = StpUtil.getLoginIdAsLong();
+        String role = StpUtil.getSession().getString("role");
+        return Result.success(uploadSessionService.getStatus(uploadId, userId, role));
+    }
+
+    /**
+     * 合并分块，生成下载链接
+     * @param uploadId 会话id
+     * @return 文件名和下载链接
+     */
+    @SaCheckLogin
+    @PostMapping("/{uploadId}/complete")
+    public Result<UploadFile> complete(@PathVariable String uploadId, HttpServletRequest request) {
+        long userId = StpUtil.getLoginIdAsLong();
+        String role = StpUtil.getSession().getString("role");
+        return Result.success(uploadSessionService.complete(uploadId, request, userId, role));
+    }
+
+    /**
+     * 取消上传会话
+     * @param uploadId 会话id
+     * @return 成功消息
+     */
+    @SaCheckLogin
+    @DeleteMapping("/{uploadId}")
+    public Result<String> abort(@PathVariable String uploadId) {
+        long userId = StpUtil.getLoginIdAsLong();
+        String role = StpUtil.getSession().getString("role");
+        uploadSessionService.abort(uploadId, userId, role);
+        return Result.success("上传已取消");
+    }
+}
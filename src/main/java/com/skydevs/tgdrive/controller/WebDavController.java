@@ -1,5 +1,7 @@
 package com.skydevs.tgdrive.controller;
 
+import com.skydevs.tgdrive.download.SendfileSupport;
+import com.skydevs.tgdrive.exception.file.UploadRejectedException;
 import com.skydevs.tgdrive.service.WebDavFileService;
 import com.skydevs.tgdrive.service.WebDavService;
 import com.skydevs.tgdrive.utils.StringUtil;
@@ -7,6 +9,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
@@ -21,6 +24,7 @@ import java.io.InputStream;
 public class WebDavController {
     private final WebDavFileService webDavFileService;
     private final WebDavService webDavService;
+    private final SendfileSupport sendfileSupport;
 
     /**
      * 上传文件
@@ -30,6 +34,10 @@ public class WebDavController {
         try (InputStream inputStream = request.getInputStream()) {
             webDavFileService.uploadByWebDav(inputStream, request);
             response.setStatus(HttpServletResponse.SC_CREATED); // 201 Created
+        } catch (UploadRejectedException e) {
+            log.warn("WebDAV上传被拒绝: {}", e.getMessage());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE); // 503
         } catch (Exception e) {
             log.error("文件上传失败: {}", e.getMessage(), e);
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR); // 500
@@ -40,8 +48,17 @@ public class WebDavController {
      * 下载文件
      */
     @GetMapping("/**")
-    public ResponseEntity<StreamingResponseBody> handleGet(HttpServletRequest request) {
-        return webDavFileService.downloadByWebDav(request.getRequestURI().substring("/webdav".length()));
+    public ResponseEntity<StreamingResponseBody> handleGet(HttpServletRequest request, @RequestHeader HttpHeaders headers) {
+        return sendfileSupport.apply(request,
+                webDavFileService.downloadByWebDav(request.getRequestURI().substring("/webdav".length()), headers));
+    }
+
+    /**
+     * HEAD请求只返回数据库中的文件信息，不请求Telegram
+     */
+    @RequestMapping(value = "/**", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> handleHead(HttpServletRequest request, @RequestHeader HttpHeaders headers) {
+        return webDavFileService.headByWebDav(request.getRequestURI().substring("/webdav".length()), headers);
     }
 
     /**
@@ -0,0 +1,41 @@
+package com.skydevs.tgdrive.datasource;
+
+/**
+ * WAL模式下SQL语句使用的连接
+ * 没有事务的MyBatis调用由 {@link DataSourceRouteInterceptor} 按语句类型设置，事务中的语句由事务是否只读决定
+ */
+public enum DataSourceRoute {
+    /**
+     * 单个写连接
+     */
+    WRITE,
+
+    /**
+     * 只读连接池
+     */
+    READ;
+
+    private static final ThreadLocal<DataSourceRoute> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 当前线程的路由，没有设置时走写连接
+     */
+    public static DataSourceRoute current() {
+        DataSourceRoute route = CURRENT.get();
+        return route == null ? WRITE : route;
+    }
+
+    /**
+     * 设置当前线程的路由
+     * @return 之前的路由，用于恢复
+     */
+    static DataSourceRoute set(DataSourceRoute route) {
+        DataSourceRoute previous = CURRENT.get();
+        if (route == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(route);
+        }
+        return previous;
+    }
+}
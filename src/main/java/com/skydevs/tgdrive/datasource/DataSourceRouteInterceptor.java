@@ -0,0 +1,37 @@
+package com.skydevs.tgdrive.datasource;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * MyBatis拦截器：SELECT走只读连接池，其余语句走写连接
+ * Executor在执行语句时才获取连接，所以在这里设置的路由对本次获取的连接生效
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+public class DataSourceRouteInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        DataSourceRoute route = statement.getSqlCommandType() == SqlCommandType.SELECT ? DataSourceRoute.READ : DataSourceRoute.WRITE;
+        DataSourceRoute previous = DataSourceRoute.set(route);
+        try {
+            return invocation.proceed();
+        } finally {
+            DataSourceRoute.set(previous);
+        }
+    }
+}
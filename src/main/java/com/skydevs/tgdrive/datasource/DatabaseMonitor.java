@@ -0,0 +1,54 @@
+package com.skydevs.tgdrive.datasource;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.skydevs.tgdrive.dto.DatabaseStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * 汇总连接池和写入队列的指标
+ * 没有启用WAL模式时只有一个Druid连接池，按写连接统计
+ */
+@Component
+@RequiredArgsConstructor
+public class DatabaseMonitor {
+
+    private final DataSource dataSource;
+    private final WriteQueue writeQueue;
+
+    public DatabaseStats getStats() {
+        DataSource target = dataSource instanceof LazyConnectionDataSourceProxy proxy ? proxy.getTargetDataSource() : dataSource;
+        DruidDataSource writer = null;
+        DruidDataSource reader = null;
+        if (target instanceof SqliteRoutingDataSource routing) {
+            writer = routing.getWriter();
+            reader = routing.getReader();
+        } else if (target instanceof DruidDataSource druid) {
+            writer = druid;
+        }
+
+        DatabaseStats.DatabaseStatsBuilder builder = DatabaseStats.builder()
+                .wal(target instanceof SqliteRoutingDataSource)
+                .writeQueueDepth(writeQueue.getQueueDepth())
+                .maxWriteQueueDepth(writeQueue.getMaxQueueDepth())
+                .queuedWrites(writeQueue.getWrites())
+                .failedWrites(writeQueue.getFailedWrites())
+                .writeBatches(writeQueue.getBatches())
+                .avgWriteQueueWaitMillis(writeQueue.getAvgQueueWaitMillis())
+                .maxWriteQueueWaitMillis(writeQueue.getMaxQueueWaitMillis());
+        if (writer != null) {
+            builder.writerWaitCount(writer.getNotEmptyWaitCount())
+                    .writerWaitMillis(writer.getNotEmptyWaitMillis())
+                    .writerWaitingThreads(writer.getWaitThreadCount());
+        }
+        if (reader != null) {
+            builder.activeReaders(reader.getActiveCount())
+                    .readerWaitCount(reader.getNotEmptyWaitCount())
+                    .readerWaitMillis(reader.getNotEmptyWaitMillis());
+        }
+        return builder.build();
+    }
+}
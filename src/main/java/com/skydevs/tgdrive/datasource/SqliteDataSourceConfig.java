@@ -0,0 +1,77 @@
+package com.skydevs.tgdrive.datasource;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * SQLite WAL模式数据源配置
+ * WAL模式下读不阻塞写、写不阻塞读，但同一时刻只能有一个写事务。
+ * 所有写入使用同一个连接，在连接池上排队而不是在SQLite锁上重试（SQLITE_BUSY）；读使用只读连接池。
+ * 关闭后使用Druid默认的单个数据源
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "app.database.wal.enabled", havingValue = "true")
+public class SqliteDataSourceConfig {
+
+    @Bean
+    public SqliteRoutingDataSource sqliteRoutingDataSource(@Value("${spring.datasource.url}") String url,
+                                                           @Value("${app.database.wal.reader-pool-size:8}") int readerPoolSize,
+                                                           @Value("${app.database.wal.busy-timeout:5s}") Duration busyTimeout,
+                                                           @Value("${app.database.wal.max-wait:30s}") Duration maxWait) throws SQLException {
+        // 写连接先初始化，把数据库切换到WAL模式（WAL模式保存在数据库文件中）
+        DruidDataSource writer = newPool(url, 1, maxWait);
+        writer.setName("sqlite-writer");
+        writer.setInitialSize(1);
+        writer.setConnectionProperties("journal_mode=WAL;synchronous=NORMAL;busy_timeout=" + busyTimeout.toMillis());
+        writer.init();
+
+        DruidDataSource reader = newPool(url, Math.max(1, readerPoolSize), maxWait);
+        reader.setName("sqlite-reader");
+        // open_mode=1 即 SQLITE_OPEN_READONLY，只读在打开连接时指定，之后不能再修改
+        reader.setConnectionProperties("open_mode=1;busy_timeout=" + busyTimeout.toMillis());
+        reader.init();
+
+        SqliteRoutingDataSource routingDataSource = new SqliteRoutingDataSource(writer, reader);
+        routingDataSource.afterPropertiesSet();
+        log.info("SQLite WAL模式已启用，只读连接池大小：{}", reader.getMaxActive());
+        return routingDataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(SqliteRoutingDataSource sqliteRoutingDataSource) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(sqliteRoutingDataSource);
+        // 直接指定默认值，避免初始化时为读取默认值占用写连接
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        return proxy;
+    }
+
+    @Bean
+    public DataSourceRouteInterceptor dataSourceRouteInterceptor() {
+        return new DataSourceRouteInterceptor();
+    }
+
+    private DruidDataSource newPool(String url, int maxActive, Duration maxWait) {
+        DruidDataSource pool = new DruidDataSource();
+        pool.setUrl(url);
+        pool.setDriverClassName("org.sqlite.JDBC");
+        pool.setMaxActive(maxActive);
+        pool.setMaxWait(maxWait.toMillis());
+        pool.setValidationQuery("SELECT 1");
+        pool.setTestWhileIdle(true);
+        return pool;
+    }
+}
@@ -0,0 +1,48 @@
+package com.skydevs.tgdrive.datasource;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+/**
+ * WAL模式的数据源：一个写连接加一个只读连接池
+ * 事务中的语句按事务是否只读选择连接（需要外层的LazyConnectionDataSourceProxy把获取连接推迟到第一条语句），
+ * 没有事务时按 {@link DataSourceRoute#current()} 选择
+ */
+public class SqliteRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final DruidDataSource writer;
+    private final DruidDataSource reader;
+
+    public SqliteRoutingDataSource(DruidDataSource writer, DruidDataSource reader) {
+        this.writer = writer;
+        this.reader = reader;
+        setTargetDataSources(Map.of(DataSourceRoute.WRITE, writer, DataSourceRoute.READ, reader));
+        setDefaultTargetDataSource(writer);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? DataSourceRoute.READ : DataSourceRoute.WRITE;
+        }
+        return DataSourceRoute.current();
+    }
+
+    public DruidDataSource getWriter() {
+        return writer;
+    }
+
+    public DruidDataSource getReader() {
+        return reader;
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+        writer.close();
+    }
+}
@@ -0,0 +1,221 @@
+package com.skydevs.tgdrive.datasource;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 数据库写入队列
+ * 高并发的写入（如上传完成时插入文件记录）提交到队列，由单个写线程依次执行；
+ * 队列中积压的写入合并到同一个事务中提交，每个写入使用一个保存点，失败时只回滚自己。
+ * 调用方阻塞到所在事务提交后返回，写入结果和异常原样返回给调用方
+ */
+@Component
+@Slf4j
+public class WriteQueue {
+
+    private final TransactionTemplate batchTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final BlockingQueue<WriteTask<?>> queue;
+    private final int maxBatch;
+    private Thread writerThread;
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    public WriteQueue(PlatformTransactionManager transactionManager,
+                      @Value("${app.database.write-queue.capacity:1000}") int capacity,
+                      @Value("${app.database.write-queue.max-batch:64}") int maxBatch) {
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    @PostConstruct
+    public void start() {
+        writerThread = new Thread(this::loop, "db-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        writerThread.interrupt();
+        List<WriteTask<?>> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(task -> task.future.completeExceptionally(new IllegalStateException("数据库写入队列已关闭")));
+    }
+
+    /**
+     * 在写线程上执行写入，等待事务提交后返回
+     * 已经在事务中或就在写线程上时直接执行，避免等待自己持有的写连接
+     * @param write 写入操作
+     * @return 写入操作的返回值
+     */
+    public <T> T execute(Supplier<T> write) {
+        if (Thread.currentThread() == writerThread || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return write.get();
+        }
+        WriteTask<T> task = new WriteTask<>(write);
+        try {
+            // 队列满时阻塞，对提交方形成背压
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待数据库写入队列时被中断", e);
+        }
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        try {
+            return task.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 在写线程上执行没有返回值的写入
+     * @param write 写入操作
+     */
+    public void run(Runnable write) {
+        execute(() -> {
+            write.run();
+            return null;
+        });
+    }
+
+    /**
+     * 当前排队的写入数
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getWrites() {
+        return writes.get();
+    }
+
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * 写入从提交到开始执行的平均等待时间（毫秒）
+     */
+    public double getAvgQueueWaitMillis() {
+        long count = writes.get();
+        return count == 0 ? 0 : queueWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * 写入从提交到开始执行的最长等待时间（毫秒）
+     */
+    public double getMaxQueueWaitMillis() {
+        return maxQueueWaitNanos.get() / 1_000_000.0;
+    }
+
+    private void loop() {
+        List<WriteTask<?>> batch = new ArrayList<>(maxBatch);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            runBatch(batch);
+            batch.clear();
+        }
+        log.info("数据库写入线程已停止");
+    }
+
+    private void runBatch(List<WriteTask<?>> batch) {
+        batches.incrementAndGet();
+        try {
+            batchTransaction.executeWithoutResult(status -> {
+                for (WriteTask<?> task : batch) {
+                    long waited = System.nanoTime() - task.enqueuedNanos;
+                    queueWaitNanos.addAndGet(waited);
+                    maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+                    writes.incrementAndGet();
+                    task.runInSavepoint();
+                }
+            });
+        } catch (RuntimeException e) {
+            // 提交失败，整批写入都没有生效
+            log.error("数据库写入批次提交失败，共{}个写入", batch.size(), e);
+            for (WriteTask<?> task : batch) {
+                task.error = e;
+            }
+        }
+        // 事务结束后再通知调用方，保证调用方返回时数据已经提交
+        for (WriteTask<?> task : batch) {
+            task.complete();
+        }
+    }
+
+    private final class WriteTask<T> {
+        private final Supplier<T> write;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long enqueuedNanos = System.nanoTime();
+        private T result;
+        private Throwable error;
+
+        private WriteTask(Supplier<T> write) {
+            this.write = write;
+        }
+
+        private void runInSavepoint() {
+            try {
+                result = writeTransaction.execute(status -> write.get());
+            } catch (RuntimeException | Error e) {
+                failedWrites.incrementAndGet();
+                error = e;
+            }
+        }
+
+        private void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.skydevs.tgdrive.download;
+
+import com.skydevs.tgdrive.exception.file.RangeNotSatisfiableException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+
+import java.util.List;
+
+/**
+ * 解析请求中的Range / If-Range
+ * 只支持单个范围，多个范围时按完整文件返回（RFC 9110允许忽略Range）
+ */
+@Getter
+@AllArgsConstructor
+public class ByteRange {
+    private final long start;
+    private final long end;
+    private final long total;
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String toContentRange() {
+        return "bytes " + start + "-" + end + "/" + total;
+    }
+
+    /**
+     * 解析Range请求头
+     * @param headers 请求头
+     * @param total 文件大小
+     * @param entityTag 当前文件的实体标签，用于比较If-Range
+     * @return 请求的范围，没有Range或需要返回完整文件时返回null
+     * @throws RangeNotSatisfiableException 范围无法满足
+     */
+    public static ByteRange parse(HttpHeaders headers, long total, String entityTag) {
+        String rangeHeader = headers == null ? null : headers.getFirst(HttpHeaders.RANGE);
+        if (rangeHeader == null || rangeHeader.isBlank() || !ifRangeMatches(headers.getFirst(HttpHeaders.IF_RANGE), entityTag)) {
+            return null;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // 格式错误的Range按没有Range处理
+            return null;
+        }
+        if (ranges.size() != 1) {
+            return null;
+        }
+        try {
+            HttpRange range = ranges.get(0);
+            long start = range.getRangeStart(total);
+            long end = range.getRangeEnd(total);
+            if (start > end) {
+                throw new RangeNotSatisfiableException(total);
+            }
+            return new ByteRange(start, end, total);
+        } catch (IllegalArgumentException e) {
+            throw new RangeNotSatisfiableException(total);
+        }
+    }
+
+    /**
+     * 同一个fileId对应的内容不会改变，日期形式的If-Range总是满足；实体标签形式需要与当前标签一致
+     */
+    private static boolean ifRangeMatches(String ifRange, String entityTag) {
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            // If-Range要求强比较，弱标签永远不匹配
+            return !value.startsWith("W/") && value.equals(entityTag);
+        }
+        return true;
+    }
+}
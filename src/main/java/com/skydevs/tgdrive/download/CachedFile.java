@@ -0,0 +1,45 @@
+package com.skydevs.tgdrive.download;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * 已打开的缓存文件
+ * 在缓存查找时打开，之后即使缓存被淘汰、文件被删除，已打开的channel仍可以读取完整内容。
+ * 使用完毕后必须close
+ */
+@Getter
+public class CachedFile implements Closeable {
+
+    private final String key;
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+
+    CachedFile(String key, Path path, FileChannel channel) throws IOException {
+        this.key = key;
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * 从指定位置开始读取的输入流，关闭输入流时同时关闭文件
+     * @param position 起始位置
+     */
+    public InputStream newInputStream(long position) throws IOException {
+        channel.position(position);
+        return Channels.newInputStream(channel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,436 @@
+package com.skydevs.tgdrive.download;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.skydevs.tgdrive.dto.DownloadCacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Telegram文件的本地磁盘缓存
+ * 以Telegram文件ID为key，按最近使用顺序淘汰，总大小不超过配置的预算。
+ * 写入时先写临时文件，完整写完后再原子重命名，读取方永远看不到写了一半的文件。
+ * 未命中时可以用 {@link #fill} 边向客户端发送边写入缓存，不必等整个文件下载完
+ */
+@Component
+@Slf4j
+public class ChunkDiskCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+
+    // accessOrder=true，迭代顺序即最近最少使用在前
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    // 交给sendfile的缓存在租期结束前不会被淘汰，value为租期结束时间（System.nanoTime）
+    private final Map<String, Long> leases = new HashMap<>();
+    // 正在边读边写入的缓存，同一个文件同时只有一个请求写入
+    private final Set<String> filling = new HashSet<>();
+    private long usedBytes;
+    private long hits;
+    private long misses;
+
+    public ChunkDiskCache(@Value("${app.download.cache.enabled:true}") boolean enabled,
+                          @Value("${app.download.cache.dir:cache/chunks}") String directory,
+                          @Value("${app.download.cache.max-size:2GB}") DataSize maxSize) {
+        this.directory = Paths.get(directory).toAbsolutePath();
+        this.maxBytes = maxSize.toBytes();
+        this.enabled = enabled && maxBytes > 0 && init();
+    }
+
+    /**
+     * 创建目录，清理上次未写完的临时文件，按修改时间恢复已有缓存
+     */
+    private boolean init() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> stream = Files.list(directory)) {
+                stream.filter(Files::isRegularFile).forEach(files::add);
+            }
+            files.sort(Comparator.comparingLong(this::lastModified));
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                long size = Files.size(file);
+                entries.put(name, size);
+                usedBytes += size;
+            }
+            evict();
+            log.info("下载缓存初始化完成，目录：{}，已缓存 {} 个文件，共 {} MB", directory, entries.size(), usedBytes / 1024 / 1024);
+            return true;
+        } catch (IOException e) {
+            log.error("下载缓存目录不可用，禁用缓存：{}", e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 指定大小的数据能否放入缓存
+     * @param length 数据长度
+     */
+    public boolean canCache(long length) {
+        return enabled && length <= maxBytes;
+    }
+
+    /**
+     * 查找并打开缓存文件
+     * 在缓存锁内打开，淘汰不会在查找和打开之间删除文件；打开之后文件被淘汰也不影响读取
+     * @param fileId Telegram文件ID
+     * @return 已打开的缓存文件，未命中返回null
+     */
+    public CachedFile open(String fileId) {
+        if (!enabled) {
+            return null;
+        }
+        String key = keyOf(fileId);
+        Path path = directory.resolve(key);
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                misses++;
+                return null;
+            }
+            try {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                try {
+                    CachedFile file = new CachedFile(key, path, channel);
+                    hits++;
+                    return file;
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+            } catch (NoSuchFileException e) {
+                // 被外部删除
+                remove(key);
+            } catch (IOException e) {
+                log.warn("打开缓存文件失败：{}", e.getMessage());
+            }
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * 在租期内保留缓存文件，不会被淘汰
+     * 用于sendfile：Tomcat在请求处理结束后才按路径打开文件，打开之后再删除不影响发送
+     * @param file 已打开的缓存文件
+     * @param duration 租期
+     * @return 缓存仍然存在并已保留时返回true；已被淘汰时返回false，只能用已打开的文件发送
+     */
+    public synchronized boolean lease(CachedFile file, Duration duration) {
+        if (!entries.containsKey(file.getKey())) {
+            return false;
+        }
+        leases.merge(file.getKey(), System.nanoTime() + duration.toNanos(), Math::max);
+        return true;
+    }
+
+    /**
+     * 是否已缓存，不计入命中统计、不影响淘汰顺序
+     * @param fileId Telegram文件ID
+     */
+    public boolean contains(String fileId) {
+        if (!enabled) {
+            return false;
+        }
+        String key = keyOf(fileId);
+        synchronized (this) {
+            return entries.containsKey(key);
+        }
+    }
+
+    /**
+     * 把数据写入缓存
+     * @param fileId Telegram文件ID
+     * @param inputStream 数据流，由调用方关闭
+     * @param length 数据长度，写入的字节数不一致时放弃写入
+     * @return 是否写入了缓存；缓存未启用或超出预算时返回false
+     * @throws IOException 读取数据流失败
+     */
+    public boolean put(String fileId, InputStream inputStream, long length) throws IOException {
+        if (!canCache(length)) {
+            return false;
+        }
+        String key = keyOf(fileId);
+        Path target = directory.resolve(key);
+        Path temp = Files.createTempFile(directory, key + ".", TEMP_SUFFIX);
+        try {
+            long written;
+            try (OutputStream outputStream = Files.newOutputStream(temp)) {
+                written = inputStream.transferTo(outputStream);
+            }
+            if (written != length) {
+                throw new EOFException("缓存写入不完整，期望 " + length + " 字节，实际 " + written + " 字节");
+            }
+            commit(key, temp, length);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    /**
+     * 包装上游数据流，读取的同时写入缓存
+     * 调用方读完全部length字节后关闭时缓存才生效；中途关闭、跳过或写盘失败时放弃写入，不影响读取
+     * @param fileId Telegram文件ID
+     * @param inputStream 从头开始的完整数据流
+     * @param length 数据长度
+     * @return 写入缓存的数据流；缓存未启用、超出预算、已缓存或其他请求正在写入时返回原数据流
+     */
+    public InputStream fill(String fileId, InputStream inputStream, long length) {
+        if (length < 0 || !canCache(length)) {
+            return inputStream;
+        }
+        String key = keyOf(fileId);
+        synchronized (this) {
+            if (entries.containsKey(key) || !filling.add(key)) {
+                return inputStream;
+            }
+        }
+        try {
+            Path temp = Files.createTempFile(directory, key + ".", TEMP_SUFFIX);
+            return new FillingInputStream(inputStream, key, temp, length);
+        } catch (IOException e) {
+            log.warn("创建缓存临时文件失败：{}", e.getMessage());
+            synchronized (this) {
+                filling.remove(key);
+            }
+            return inputStream;
+        }
+    }
+
+    /**
+     * 把写完的临时文件重命名为缓存文件并加入索引
+     */
+    private void commit(String key, Path temp, long length) throws IOException {
+        Files.move(temp, directory.resolve(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        synchronized (this) {
+            Long previous = entries.put(key, length);
+            usedBytes += length - (previous == null ? 0 : previous);
+            evict();
+        }
+    }
+
+    /**
+     * 删除一个缓存
+     * @param fileId Telegram文件ID
+     */
+    public void invalidate(String fileId) {
+        if (enabled) {
+            remove(keyOf(fileId));
+        }
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public synchronized DownloadCacheStats getStats() {
+        return DownloadCacheStats.builder()
+                .enabled(enabled)
+                .entryCount(entries.size())
+                .usedBytes(usedBytes)
+                .maxBytes(maxBytes)
+                .hits(hits)
+                .misses(misses)
+                .build();
+    }
+
+    private synchronized void remove(String key) {
+        leases.remove(key);
+        Long size = entries.remove(key);
+        if (size != null) {
+            usedBytes -= size;
+            deleteQuietly(directory.resolve(key));
+        }
+    }
+
+    /**
+     * 淘汰最久未使用的缓存直到总大小不超过预算，跳过租期内的缓存
+     * 读取方在 {@link #open} 中已经打开了文件，删除后仍可以继续读取（Windows下删除失败时等下次启动清理）
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        leases.values().removeIf(until -> until - now <= 0);
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (leases.containsKey(eldest.getKey())) {
+                continue;
+            }
+            iterator.remove();
+            usedBytes -= eldest.getValue();
+            deleteQuietly(directory.resolve(eldest.getKey()));
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除缓存文件失败：{}", e.getMessage());
+        }
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 边读边写入缓存临时文件的数据流
+     * 取消下载时可能在其他线程上关闭，写盘和收尾在锁内进行，阻塞中的read不持有锁
+     */
+    private final class FillingInputStream extends FilterInputStream {
+        private final String key;
+        private final Path temp;
+        private final long length;
+        private OutputStream outputStream;
+        private long written;
+        private boolean finished;
+
+        private FillingInputStream(InputStream in, String key, Path temp, long length) throws IOException {
+            super(in);
+            this.key = key;
+            this.temp = temp;
+            this.length = length;
+            try {
+                this.outputStream = Files.newOutputStream(temp);
+            } catch (IOException e) {
+                finish();
+                throw e;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int bytesRead = in.read(b, off, len);
+            if (bytesRead > 0) {
+                write(b, off, bytesRead);
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // 跳过的数据不会写入缓存
+            abandon();
+            return in.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                finish();
+            }
+        }
+
+        private synchronized void write(byte[] b, int off, int len) {
+            if (outputStream == null) {
+                return;
+            }
+            try {
+                outputStream.write(b, off, len);
+                written += len;
+            } catch (IOException e) {
+                log.warn("写入缓存失败，放弃缓存：{}", e.getMessage());
+                abandon();
+            }
+        }
+
+        private synchronized void abandon() {
+            if (outputStream != null) {
+                closeQuietly();
+                written = -1;
+            }
+        }
+
+        private synchronized void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            try {
+                if (outputStream != null) {
+                    closeQuietly();
+                    if (written == length) {
+                        commit(key, temp, length);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("缓存写入失败：{}", e.getMessage());
+            } finally {
+                deleteQuietly(temp);
+                synchronized (ChunkDiskCache.this) {
+                    filling.remove(key);
+                }
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                log.warn("关闭缓存临时文件失败：{}", e.getMessage());
+                written = -1;
+            }
+            outputStream = null;
+        }
+    }
+
+    /**
+     * Telegram文件ID可能很长，统一转换为固定长度的文件名
+     */
+    private String keyOf(String fileId) {
+        return DigestUtil.sha256Hex(fileId);
+    }
+}
@@ -0,0 +1,13 @@
+package com.skydevs.tgdrive.download;
+
+import java.io.IOException;
+
+/**
+ * 分块下载失败，与客户端断开连接导致的写入失败区分开
+ */
+public class ChunkFetchException extends IOException {
+
+    public ChunkFetchException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
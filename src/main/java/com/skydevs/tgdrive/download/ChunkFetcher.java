@@ -0,0 +1,18 @@
+package com.skydevs.tgdrive.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 打开分块片段的数据流
+ */
+@FunctionalInterface
+public interface ChunkFetcher {
+
+    /**
+     * @param slice 分块片段
+     * @return 定位到片段起始位置的输入流
+     * @throws IOException 下载失败
+     */
+    InputStream open(ChunkSlice slice) throws IOException;
+}
@@ -0,0 +1,383 @@
+package com.skydevs.tgdrive.download;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分块预读下载引擎
+ * 所有下载共享 prefetchTaskExecutor；每个下载最多同时读取 read-ahead-chunks 个分块，
+ * 按顺序写给客户端，写入失败（客户端断开）时取消尚未完成的分块并中断正在进行的读取。
+ * 读取中的片段边读边写，不必等整个分块读完才发送第一个字节。
+ * 多个下载同时需要同一个分块片段时只从上游读取一次，读到的数据由各下载按自己的速度写出，
+ * 每个下载最多持有 read-ahead-chunks 个片段，慢客户端不会拖慢其他客户端。
+ * 预读缓冲区占用全局内存预算 max-memory，预算用完时不再预读，当前片段直接从上游流式转发
+ */
+@Component
+@Slf4j
+public class ChunkPrefetcher {
+
+    // 预算按KB计数，避免Semaphore许可数溢出
+    private static final int PERMIT_UNIT = 1024;
+    // 直接转发时的缓冲区大小
+    private static final int DIRECT_BUFFER_SIZE = 64 * 1024;
+
+    private final AsyncTaskExecutor prefetchTaskExecutor;
+    private final int readAheadChunks;
+    private final Semaphore memoryPermits;
+    private final int maxPermits;
+    // 正在读取的片段，key为 分块文件ID:片段起点:长度
+    private final Map<String, SharedFetch> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedFetches = new AtomicLong();
+    private final AtomicLong directFetches = new AtomicLong();
+
+    public ChunkPrefetcher(@Qualifier("prefetchTaskExecutor") AsyncTaskExecutor prefetchTaskExecutor,
+                           @Value("${app.download.read-ahead-chunks:3}") int readAheadChunks,
+                           @Value("${app.download.prefetch.max-memory:200MB}") DataSize maxMemory) {
+        this.prefetchTaskExecutor = prefetchTaskExecutor;
+        this.readAheadChunks = Math.max(1, readAheadChunks);
+        this.maxPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxMemory.toBytes() / PERMIT_UNIT));
+        this.memoryPermits = new Semaphore(maxPermits);
+    }
+
+    /**
+     * 按顺序把分块片段写入输出流
+     * @param slices 分块片段
+     * @param fetcher 打开分块数据流的方法
+     * @param outputStream 输出流
+     * @throws ChunkFetchException 分块下载失败
+     * @throws IOException 写入输出流失败
+     */
+    public void stream(List<ChunkSlice> slices, ChunkFetcher fetcher, OutputStream outputStream) throws IOException {
+        Prefetch prefetch = new Prefetch(slices, fetcher);
+        try {
+            for (int i = 0; i < slices.size(); i++) {
+                prefetch.fillWindow(i);
+                prefetch.writeTo(i, outputStream);
+                outputStream.flush();
+            }
+        } finally {
+            prefetch.cancel();
+        }
+    }
+
+    /**
+     * 与其他下载合并的片段读取次数
+     */
+    public long getCoalescedFetches() {
+        return coalescedFetches.get();
+    }
+
+    /**
+     * 内存预算不足、直接从上游转发的片段数
+     */
+    public long getDirectFetches() {
+        return directFetches.get();
+    }
+
+    /**
+     * 预读缓冲区当前占用的内存（字节）
+     */
+    public long getUsedBytes() {
+        return (long) (maxPermits - memoryPermits.availablePermits()) * PERMIT_UNIT;
+    }
+
+    /**
+     * 订阅片段读取，已有相同片段正在读取时共享其结果
+     * @return 片段读取，内存预算不足时返回null
+     */
+    private SharedFetch subscribe(ChunkSlice slice, ChunkFetcher fetcher) {
+        String key = slice.getChunk().getChunkFileId() + ":" + slice.getOffsetInChunk() + ":" + slice.getLength();
+        while (true) {
+            SharedFetch existing = inFlight.get(key);
+            if (existing != null) {
+                if (existing.subscribe()) {
+                    coalescedFetches.incrementAndGet();
+                    return existing;
+                }
+                // 所有订阅者都已离开，正在关闭
+                inFlight.remove(key, existing);
+                continue;
+            }
+            int permits = toPermits(slice.getLength());
+            if (!memoryPermits.tryAcquire(permits)) {
+                return null;
+            }
+            SharedFetch created = new SharedFetch(key, slice, permits);
+            created.subscribe();
+            if (inFlight.putIfAbsent(key, created) != null) {
+                // 其他下载刚刚开始读取同一个片段，改为订阅它
+                memoryPermits.release(permits);
+                continue;
+            }
+            try {
+                prefetchTaskExecutor.execute(() -> created.run(fetcher));
+            } catch (RuntimeException e) {
+                inFlight.remove(key, created);
+                memoryPermits.release(permits);
+                throw e;
+            }
+            return created;
+        }
+    }
+
+    private int toPermits(long length) {
+        long required = (length + PERMIT_UNIT - 1) / PERMIT_UNIT;
+        return (int) Math.max(1, Math.min(required, maxPermits));
+    }
+
+    /**
+     * 内存预算不足时直接从上游读取并写出，不经过预读缓冲区
+     */
+    private void streamDirect(ChunkSlice slice, ChunkFetcher fetcher, OutputStream outputStream) throws IOException {
+        directFetches.incrementAndGet();
+        String chunkFileId = slice.getChunk().getChunkFileId();
+        InputStream inputStream;
+        try {
+            inputStream = fetcher.open(slice);
+        } catch (IOException e) {
+            throw new ChunkFetchException("分片文件下载失败：" + chunkFileId, e);
+        }
+        try (inputStream) {
+            byte[] buffer = new byte[(int) Math.min(DIRECT_BUFFER_SIZE, Math.max(1, slice.getLength()))];
+            long remaining = slice.getLength();
+            while (remaining > 0) {
+                int bytesRead;
+                try {
+                    bytesRead = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                } catch (IOException e) {
+                    throw new ChunkFetchException("分片文件下载失败：" + chunkFileId, e);
+                }
+                if (bytesRead == -1) {
+                    throw new ChunkFetchException("分片文件下载失败：" + chunkFileId,
+                            new EOFException("分片数据提前结束，还剩 " + remaining + " 字节"));
+                }
+                outputStream.write(buffer, 0, bytesRead);
+                remaining -= bytesRead;
+            }
+        }
+    }
+
+    /**
+     * 一次下载的预读状态
+     */
+    private class Prefetch {
+        private final List<ChunkSlice> slices;
+        private final ChunkFetcher fetcher;
+        private final SharedFetch[] fetches;
+        private int submitted;
+
+        private Prefetch(List<ChunkSlice> slices, ChunkFetcher fetcher) {
+            this.slices = slices;
+            this.fetcher = fetcher;
+            this.fetches = new SharedFetch[slices.size()];
+        }
+
+        /**
+         * 尽量保证 [current, current + readAheadChunks) 范围内的分块都已提交，
+         * 内存预算不足时停止预读，当前分块留给 {@link #writeTo} 直接转发
+         */
+        private void fillWindow(int current) {
+            int limit = Math.min(slices.size(), current + readAheadChunks);
+            while (submitted < limit) {
+                SharedFetch fetch = subscribe(slices.get(submitted), fetcher);
+                if (fetch == null) {
+                    if (submitted == current) {
+                        // 当前分块不预读，窗口从下一个分块开始
+                        submitted++;
+                        continue;
+                    }
+                    return;
+                }
+                fetches[submitted++] = fetch;
+            }
+        }
+
+        private void writeTo(int index, OutputStream outputStream) throws IOException {
+            SharedFetch fetch = fetches[index];
+            if (fetch == null) {
+                streamDirect(slices.get(index), fetcher, outputStream);
+                return;
+            }
+            try {
+                fetch.writeTo(outputStream);
+            } finally {
+                // 已写出，释放引用以便回收
+                fetches[index] = null;
+                fetch.unsubscribe();
+            }
+        }
+
+        private void cancel() {
+            for (SharedFetch fetch : fetches) {
+                if (fetch != null) {
+                    fetch.unsubscribe();
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个片段的读取，由所有需要它的下载共享；
+     * 读取线程边读边通知订阅者，最后一个订阅者离开时取消读取并归还内存预算
+     */
+    private class SharedFetch {
+        private final String key;
+        private final ChunkSlice slice;
+        private final int permits;
+        private final byte[] data;
+        // 已读取的字节数
+        private int filled;
+        private boolean done;
+        private Throwable error;
+        private int subscribers;
+        private boolean cancelled;
+        private boolean released;
+        // 正在读取的流，取消时关闭以中断阻塞中的读取
+        private InputStream openStream;
+
+        private SharedFetch(String key, ChunkSlice slice, int permits) {
+            this.key = key;
+            this.slice = slice;
+            this.permits = permits;
+            this.data = new byte[(int) slice.getLength()];
+        }
+
+        private synchronized boolean subscribe() {
+            if (cancelled || released) {
+                return false;
+            }
+            subscribers++;
+            return true;
+        }
+
+        private void unsubscribe() {
+            InputStream toClose;
+            synchronized (this) {
+                if (--subscribers > 0) {
+                    return;
+                }
+                if (done) {
+                    release();
+                    return;
+                }
+                cancelled = true;
+                toClose = openStream;
+                notifyAll();
+            }
+            inFlight.remove(key, this);
+            if (toClose != null) {
+                try {
+                    toClose.close();
+                } catch (IOException e) {
+                    log.debug("关闭分片流失败：{}", e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * 读取结束且没有订阅者后归还内存预算，只归还一次
+         */
+        private void release() {
+            if (!released) {
+                released = true;
+                memoryPermits.release(permits);
+            }
+        }
+
+        /**
+         * 把已读取的数据写出，等待剩余数据直到片段读完
+         */
+        private void writeTo(OutputStream outputStream) throws IOException {
+            int position = 0;
+            while (true) {
+                int end;
+                synchronized (this) {
+                    try {
+                        while (filled == position && !done) {
+                            wait();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("等待分块下载时被中断");
+                    }
+                    end = filled;
+                    if (end == position) {
+                        if (error != null) {
+                            throw new ChunkFetchException("分片文件下载失败：" + slice.getChunk().getChunkFileId(), error);
+                        }
+                        return;
+                    }
+                }
+                outputStream.write(data, position, end - position);
+                position = end;
+            }
+        }
+
+        private void run(ChunkFetcher fetcher) {
+            try {
+                read(fetcher);
+                finish(null);
+            } catch (Throwable e) {
+                finish(e);
+            } finally {
+                inFlight.remove(key, this);
+            }
+        }
+
+        private synchronized void finish(Throwable e) {
+            done = true;
+            error = e;
+            notifyAll();
+            if (subscribers == 0) {
+                release();
+            }
+        }
+
+        private void read(ChunkFetcher fetcher) throws IOException {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+            }
+            try (InputStream inputStream = fetcher.open(slice)) {
+                synchronized (this) {
+                    if (cancelled) {
+                        return;
+                    }
+                    openStream = inputStream;
+                }
+                int offset = 0;
+                while (offset < data.length) {
+                    int bytesRead = inputStream.read(data, offset, data.length - offset);
+                    if (bytesRead == -1) {
+                        throw new EOFException("分片数据提前结束，还剩 " + (data.length - offset) + " 字节");
+                    }
+                    offset += bytesRead;
+                    synchronized (this) {
+                        filled = offset;
+                        notifyAll();
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    openStream = null;
+                }
+            }
+        }
+    }
+}
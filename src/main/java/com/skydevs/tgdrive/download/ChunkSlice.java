@@ -0,0 +1,59 @@
+package com.skydevs.tgdrive.download;
+
+import com.skydevs.tgdrive.entity.FileChunk;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分块中需要读取的一段
+ */
+@Getter
+@AllArgsConstructor
+public class ChunkSlice {
+    private final FileChunk chunk;
+
+    /**
+     * 在分块内的起始位置
+     */
+    private final long offsetInChunk;
+
+    /**
+     * 读取的字节数
+     */
+    private final long length;
+
+    /**
+     * 是否读取整个分块
+     */
+    public boolean isWholeChunk() {
+        return offsetInChunk == 0 && length == chunk.getChunkLength();
+    }
+
+    /**
+     * 把文件中的字节范围映射为与之重叠的分块及分块内的偏移，不重叠的分块不会被下载
+     * @param chunks 按顺序排列的分块清单
+     * @param start 起始位置（包含）
+     * @param end 结束位置（包含）
+     * @return 需要读取的分块片段
+     */
+    public static List<ChunkSlice> overlapping(List<FileChunk> chunks, long start, long end) {
+        List<ChunkSlice> slices = new ArrayList<>();
+        for (FileChunk chunk : chunks) {
+            long chunkStart = chunk.getChunkOffset();
+            long chunkEnd = chunkStart + chunk.getChunkLength() - 1;
+            if (chunkEnd < start || chunk.getChunkLength() == 0) {
+                continue;
+            }
+            if (chunkStart > end) {
+                break;
+            }
+            long from = Math.max(start, chunkStart);
+            long to = Math.min(end, chunkEnd);
+            slices.add(new ChunkSlice(chunk, from - chunkStart, to - from + 1));
+        }
+        return slices;
+    }
+}
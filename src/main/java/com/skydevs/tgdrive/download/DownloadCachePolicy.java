@@ -0,0 +1,92 @@
+package com.skydevs.tgdrive.download;
+
+import com.skydevs.tgdrive.entity.FileInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 下载响应的缓存验证
+ * fileId对应的内容不会改变，直接用fileId作为强实体标签，上传时间作为Last-Modified。
+ * 公开文件允许浏览器和CDN长期缓存，私有文件每次使用前都要重新验证
+ */
+@Component
+public class DownloadCachePolicy {
+
+    private final CacheControl publicCacheControl;
+    private final CacheControl privateCacheControl = CacheControl.noCache().cachePrivate();
+
+    public DownloadCachePolicy(@Value("${app.download.public-max-age:365d}") Duration publicMaxAge) {
+        this.publicCacheControl = CacheControl.maxAge(publicMaxAge).cachePublic().immutable();
+    }
+
+    /**
+     * 同一个fileId对应的内容不会改变，直接用fileId作为实体标签
+     */
+    public static String entityTag(String fileID) {
+        return "\"" + fileID + "\"";
+    }
+
+    /**
+     * 判断条件请求能否返回304
+     * 有If-None-Match时只比较实体标签（弱比较），否则比较If-Modified-Since
+     * @param requestHeaders 请求头，可以为null
+     * @param fileID 文件ID
+     * @param stored 数据库中的文件信息，旧数据没有记录时为null
+     * @return 客户端缓存仍然有效时返回true
+     */
+    public boolean isNotModified(HttpHeaders requestHeaders, String fileID, FileInfo stored) {
+        if (requestHeaders == null) {
+            return false;
+        }
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            String tag = entityTag(fileID);
+            for (String candidate : ifNoneMatch) {
+                String value = candidate.startsWith("W/") ? candidate.substring(2) : candidate;
+                if ("*".equals(value) || tag.equals(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long lastModified = lastModified(stored);
+        if (lastModified < 0) {
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = requestHeaders.getIfModifiedSince();
+        } catch (IllegalArgumentException e) {
+            // 日期格式错误时忽略该请求头
+            return false;
+        }
+        // HTTP日期只精确到秒
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * 设置ETag、Last-Modified和Cache-Control
+     * @param headers 响应头
+     * @param fileID 文件ID
+     * @param stored 数据库中的文件信息，旧数据没有记录时为null
+     */
+    public void apply(HttpHeaders headers, String fileID, FileInfo stored) {
+        headers.setETag(entityTag(fileID));
+        long lastModified = lastModified(stored);
+        if (lastModified >= 0) {
+            headers.setLastModified(lastModified);
+        }
+        boolean isPublic = stored != null && stored.isPublic();
+        headers.setCacheControl(isPublic ? publicCacheControl : privateCacheControl);
+    }
+
+    private long lastModified(FileInfo stored) {
+        return stored == null || stored.getUploadTime() == null ? -1 : stored.getUploadTime() * 1000;
+    }
+}
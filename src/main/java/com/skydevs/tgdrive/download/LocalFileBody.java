@@ -0,0 +1,53 @@
+package com.skydevs.tgdrive.download;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 本地缓存文件的响应体
+ * 容器支持sendfile时由 {@link SendfileSupport} 交给Tomcat直接发送，不经过此方法；
+ * 否则从查找缓存时已打开的FileChannel传输到输出流，传输结束后关闭
+ */
+@Getter
+@Slf4j
+public class LocalFileBody implements StreamingResponseBody {
+
+    private final CachedFile file;
+    private final long position;
+    private final long length;
+
+    public LocalFileBody(CachedFile file, long position, long length) {
+        this.file = file;
+        this.position = position;
+        this.length = length;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        try (CachedFile cached = file) {
+            FileChannel channel = cached.getChannel();
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            long transferred = 0;
+            while (transferred < length) {
+                long count = channel.transferTo(position + transferred, length - transferred, target);
+                if (count <= 0) {
+                    throw new EOFException("缓存文件提前结束，还剩 " + (length - transferred) + " 字节");
+                }
+                transferred += count;
+            }
+        } catch (EOFException e) {
+            log.error("缓存文件传输失败：{}", e.getMessage());
+        } catch (IOException e) {
+            // 多数情况是客户端断开连接，此时响应已经开始发送，只记录日志
+            log.info("文件传输中止：{}", e.getMessage());
+        }
+    }
+}
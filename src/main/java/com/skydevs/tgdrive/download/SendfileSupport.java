@@ -0,0 +1,71 @@
+package com.skydevs.tgdrive.download;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Tomcat sendfile支持
+ * 响应体是本地文件时设置sendfile请求属性并去掉响应体，Spring只写出响应头，
+ * 文件内容由Tomcat在请求处理结束后用sendfile从内核直接发送，不经过用户态复制。
+ * 只能用于同步返回的请求，异步分派的请求Tomcat不会执行sendfile。
+ * Tomcat按路径打开文件，交出路径前先在缓存中租用该文件，租期内不会被淘汰；已被淘汰时改用已打开的文件发送
+ */
+@Component
+@Slf4j
+public class SendfileSupport {
+
+    private static final String SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // Tomcat在请求处理结束后立即打开文件，租期只需覆盖这段时间
+    private static final Duration LEASE = Duration.ofSeconds(30);
+
+    private final boolean enabled;
+    private final ChunkDiskCache chunkDiskCache;
+
+    public SendfileSupport(@Value("${app.download.sendfile:true}") boolean enabled, ChunkDiskCache chunkDiskCache) {
+        this.enabled = enabled;
+        this.chunkDiskCache = chunkDiskCache;
+    }
+
+    /**
+     * 尽量用sendfile发送响应
+     * @param request 当前请求
+     * @param response 下载服务返回的响应
+     * @return 可以使用sendfile时返回不带响应体的响应，否则原样返回
+     */
+    public ResponseEntity<StreamingResponseBody> apply(HttpServletRequest request, ResponseEntity<StreamingResponseBody> response) {
+        if (!enabled || response == null || !(response.getBody() instanceof LocalFileBody body)
+                || HttpMethod.HEAD.matches(request.getMethod())
+                || !Boolean.TRUE.equals(request.getAttribute(SUPPORTED_ATTR))
+                || !chunkDiskCache.lease(body.getFile(), LEASE)) {
+            return response;
+        }
+        request.setAttribute(FILENAME_ATTR, body.getFile().getPath().toString());
+        request.setAttribute(START_ATTR, body.getPosition());
+        // end不包含在发送范围内
+        request.setAttribute(END_ATTR, body.getPosition() + body.getLength());
+        // 响应体不会再被调用，关闭已打开的缓存文件
+        closeQuietly(body.getFile());
+        log.debug("使用sendfile发送 {} 字节", body.getLength());
+        return ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders()).build();
+    }
+
+    private void closeQuietly(CachedFile file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            log.debug("关闭缓存文件失败：{}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.skydevs.tgdrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 数据库连接和写入队列统计信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DatabaseStats {
+    /**
+     * 是否启用了WAL模式的读写分离数据源
+     */
+    private boolean wal;
+
+    /**
+     * 写入队列中排队的写入数
+     */
+    private int writeQueueDepth;
+
+    /**
+     * 写入队列的最大排队数
+     */
+    private int maxWriteQueueDepth;
+
+    /**
+     * 经过写入队列的写入数
+     */
+    private long queuedWrites;
+
+    /**
+     * 经过写入队列且失败的写入数
+     */
+    private long failedWrites;
+
+    /**
+     * 写入队列提交的事务数，与写入数的比值即为平均每个事务合并的写入数
+     */
+    private long writeBatches;
+
+    /**
+     * 写入在队列中的平均等待时间（毫秒）
+     */
+    private double avgWriteQueueWaitMillis;
+
+    /**
+     * 写入在队列中的最长等待时间（毫秒）
+     */
+    private double maxWriteQueueWaitMillis;
+
+    /**
+     * 等待写连接的次数（写锁等待）
+     */
+    private long writerWaitCount;
+
+    /**
+     * 等待写连接的总时间（毫秒）
+     */
+    private long writerWaitMillis;
+
+    /**
+     * 正在等待写连接的线程数
+     */
+    private int writerWaitingThreads;
+
+    /**
+     * 正在使用的只读连接数
+     */
+    private int activeReaders;
+
+    /**
+     * 等待只读连接的次数
+     */
+    private long readerWaitCount;
+
+    /**
+     * 等待只读连接的总时间（毫秒）
+     */
+    private long readerWaitMillis;
+}
@@ -0,0 +1,45 @@
+package com.skydevs.tgdrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 下载磁盘缓存统计信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DownloadCacheStats {
+    /**
+     * 缓存是否启用
+     */
+    private boolean enabled;
+
+    /**
+     * 已缓存的文件数
+     */
+    private int entryCount;
+
+    /**
+     * 已占用空间（字节）
+     */
+    private long usedBytes;
+
+    /**
+     * 空间上限（字节）
+     */
+    private long maxBytes;
+
+    /**
+     * 命中次数
+     */
+    private long hits;
+
+    /**
+     * 未命中次数
+     */
+    private long misses;
+}
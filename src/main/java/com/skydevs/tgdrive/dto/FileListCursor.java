@@ -0,0 +1,47 @@
+package com.skydevs.tgdrive.dto;
+
+import com.skydevs.tgdrive.exception.file.InvalidCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 文件列表的分页游标：上一页最后一个文件的上传时间和id
+ * 文件列表按 (upload_time, id) 倒序排列，下一页从比游标小的位置开始
+ */
+@Data
+@AllArgsConstructor
+public class FileListCursor {
+
+    private long uploadTime;
+    private long id;
+
+    /**
+     * 编码为不透明的字符串返回给客户端
+     */
+    public String encode() {
+        String raw = uploadTime + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 解析客户端传回的游标
+     * @param cursor 游标字符串，为空表示第一页
+     * @return 游标，第一页返回null
+     * @throws InvalidCursorException 游标格式错误
+     */
+    public static FileListCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = raw.indexOf(':');
+            return new FileListCursor(Long.parseLong(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.skydevs.tgdrive.dto;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 文件名搜索条件
+ * 关键词按空白拆分，所有词都要出现在文件名中（不区分大小写）。
+ * 至少3个字符的词交给files_fts全文索引（trigram）匹配；更短的词trigram无法匹配，用LIKE在索引筛选后的结果上过滤
+ */
+@Getter
+public class FileSearch {
+
+    /**
+     * trigram能匹配的最短词长
+     */
+    static final int MIN_INDEXED_LENGTH = 3;
+
+    /**
+     * FTS5 MATCH表达式，没有可以走索引的词时为null
+     */
+    private final String match;
+
+    /**
+     * 需要用LIKE过滤的短词，已转义LIKE通配符（ESCAPE '\'）
+     */
+    private final List<String> likeTerms;
+
+    private FileSearch(String match, List<String> likeTerms) {
+        this.match = match;
+        this.likeTerms = likeTerms;
+    }
+
+    /**
+     * 解析搜索关键词
+     * @param keyword 关键词
+     * @return 搜索条件，关键词为空时返回null
+     */
+    public static FileSearch of(String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return null;
+        }
+        List<String> indexed = new ArrayList<>();
+        List<String> likeTerms = new ArrayList<>();
+        for (String term : keyword.trim().split("\\s+")) {
+            if (term.codePointCount(0, term.length()) >= MIN_INDEXED_LENGTH) {
+                // 双引号包住整个词，作为短语匹配，词中的FTS5语法字符不起作用
+                indexed.add("\"" + term.replace("\"", "\"\"") + "\"");
+            } else {
+                likeTerms.add(term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_"));
+            }
+        }
+        String match = indexed.isEmpty() ? null : "file_name : (" + String.join(" AND ", indexed) + ")";
+        return new FileSearch(match, Collections.unmodifiableList(likeTerms));
+    }
+}
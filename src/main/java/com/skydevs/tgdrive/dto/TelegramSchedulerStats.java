@@ -0,0 +1,65 @@
+package com.skydevs.tgdrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Telegram请求调度统计信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelegramSchedulerStats {
+    /**
+     * 已发出的交互请求数
+     */
+    private long interactiveRequests;
+
+    /**
+     * 已发出的批量请求数
+     */
+    private long bulkRequests;
+
+    /**
+     * 正在排队的交互请求数
+     */
+    private int waitingInteractive;
+
+    /**
+     * 正在排队的批量请求数
+     */
+    private int waitingBulk;
+
+    /**
+     * 交互请求平均等待时间（毫秒）
+     */
+    private double interactiveAvgWaitMillis;
+
+    /**
+     * 交互请求最长等待时间（毫秒）
+     */
+    private long interactiveMaxWaitMillis;
+
+    /**
+     * 批量请求平均等待时间（毫秒）
+     */
+    private double bulkAvgWaitMillis;
+
+    /**
+     * 批量请求最长等待时间（毫秒）
+     */
+    private long bulkMaxWaitMillis;
+
+    /**
+     * 收到429的次数
+     */
+    private long floodWaitCount;
+
+    /**
+     * 最近一次429的retry_after（秒）
+     */
+    private int lastRetryAfterSeconds;
+}
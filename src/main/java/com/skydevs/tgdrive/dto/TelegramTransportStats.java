@@ -0,0 +1,70 @@
+package com.skydevs.tgdrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Telegram HTTP客户端统计信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelegramTransportStats {
+    /**
+     * 已发出的HTTP请求数（包括Bot API请求和文件下载）
+     */
+    private long calls;
+
+    /**
+     * 失败的HTTP请求数
+     */
+    private long failedCalls;
+
+    /**
+     * 正在进行的请求数（已获取许可、响应体尚未关闭）
+     */
+    private int runningCalls;
+
+    /**
+     * 等待并发许可的请求数
+     */
+    private int queuedCalls;
+
+    /**
+     * 连接池中的连接数
+     */
+    private int connectionCount;
+
+    /**
+     * 连接池中的空闲连接数
+     */
+    private int idleConnectionCount;
+
+    /**
+     * 请求获取连接的次数
+     */
+    private long connectionsAcquired;
+
+    /**
+     * 新建连接的次数，与获取连接次数的差值即为复用次数
+     */
+    private long newConnections;
+
+    /**
+     * 使用HTTP/2连接的次数
+     */
+    private long http2Acquisitions;
+
+    /**
+     * 从发出请求到收到响应头的平均时间（毫秒）
+     */
+    private double avgHeadersMillis;
+
+    /**
+     * 从发出请求到收到响应头的最长时间（毫秒）
+     */
+    private double maxHeadersMillis;
+}
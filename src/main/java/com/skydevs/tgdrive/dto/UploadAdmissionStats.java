@@ -0,0 +1,70 @@
+package com.skydevs.tgdrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 上传准入控制统计信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadAdmissionStats {
+    /**
+     * 允许同时进行的上传数
+     */
+    private int maxConcurrentUploads;
+
+    /**
+     * 正在进行的上传数
+     */
+    private int activeUploads;
+
+    /**
+     * 排队等待的上传数
+     */
+    private int queuedUploads;
+
+    /**
+     * 已准入的上传总数
+     */
+    private long admittedTotal;
+
+    /**
+     * 被拒绝的上传总数
+     */
+    private long rejectedTotal;
+
+    /**
+     * 平均排队时间（毫秒）
+     */
+    private double avgWaitMillis;
+
+    /**
+     * 最长排队时间（毫秒）
+     */
+    private long maxWaitMillis;
+
+    /**
+     * 在途分块占用的内存（字节）
+     */
+    private long inFlightChunkBytes;
+
+    /**
+     * 分块内存预算（字节）
+     */
+    private long maxInFlightChunkBytes;
+
+    /**
+     * 在途的分块任务数
+     */
+    private int inFlightChunkTasks;
+
+    /**
+     * 在途分块任务数上限（上传线程数+队列容量）
+     */
+    private int maxInFlightChunkTasks;
+}
@@ -0,0 +1,28 @@
+package com.skydevs.tgdrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 上传会话状态
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionStatus {
+    private String uploadId;
+    private String fileName;
+    private long fileSize;
+    private int chunkSize;
+    private int totalChunks;
+    private String status;
+    // 尚未上传的分块序号
+    private List<Integer> missingChunks;
+    // 上传完成后的下载链接
+    private String downloadLink;
+}
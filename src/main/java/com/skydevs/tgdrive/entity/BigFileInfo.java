@@ -12,5 +12,9 @@ public class BigFileInfo {
     private String fileName;
     private long fileSize;
     private List<String> fileIds;
+    /**
+     * 每个分块所属的bot id，与fileIds一一对应；旧记录文件没有该字段，表示全部由主bot上传
+     */
+    private List<String> botIds;
     private boolean isRecordFile;
 }
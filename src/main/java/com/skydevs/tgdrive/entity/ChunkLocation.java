@@ -0,0 +1,22 @@
+package com.skydevs.tgdrive.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 已上传分块的位置：Telegram文件ID只对上传它的bot有效，下载时必须用同一个bot调用getFile
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkLocation {
+    private String fileId;
+    private String botId;
+    /**
+     * 分块大小（字节）
+     */
+    private long size;
+}
@@ -0,0 +1,39 @@
+package com.skydevs.tgdrive.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 大文件的一个分块
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileChunk {
+    /**
+     * 所属文件的ID（files表中的file_id）
+     */
+    private String fileId;
+
+    private Integer chunkIndex;
+
+    /**
+     * 分块在Telegram中的文件ID
+     */
+    private String chunkFileId;
+
+    /**
+     * 上传该分块的bot，为空表示主bot
+     */
+    private String botId;
+
+    /**
+     * 分块在文件中的起始位置
+     */
+    private Long chunkOffset;
+
+    private Long chunkLength;
+}
@@ -7,6 +7,7 @@ import lombok.*;
 @NoArgsConstructor
 @Builder
 public class FileInfo {
+    private Long id;
     private String fileName;         // 文件名
     private String downloadUrl;      // 文件下载URL
     private String size;
@@ -20,6 +21,9 @@ public class FileInfo {
     // WebDAV文件路径
     private String webdavPath;
 
+    // 父目录在files表中的id，WebDAV根目录下为0，不在WebDAV中的文件为null
+    private Long parentId;
+
     private boolean dir;
 
     private Long userId;
@@ -27,5 +31,7 @@ public class FileInfo {
     private boolean isPublic = false;
     
     private String uploader; // 上传者用户名
+
+    private String contentType; // 上传时检测的MIME类型
 }
 
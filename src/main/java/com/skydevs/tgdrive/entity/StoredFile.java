@@ -0,0 +1,18 @@
+package com.skydevs.tgdrive.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 上传到Telegram的文件：下载ID及上传时检测到的MIME类型
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+    private String fileId;
+    private String contentType;
+}
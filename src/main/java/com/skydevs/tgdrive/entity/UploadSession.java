@@ -0,0 +1,36 @@
+package com.skydevs.tgdrive.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 断点续传上传会话
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+    public static final String STATUS_UPLOADING = "uploading";
+    public static final String STATUS_COMPLETED = "completed";
+
+    private String id;
+    private String fileName;
+    private Long fileSize;
+    private Integer chunkSize;
+    private Integer totalChunks;
+    private Long userId;
+    private String status;
+
+    // 第一个分块上传时检测的MIME类型
+    private String contentType;
+
+    // 完成后的文件ID和下载链接
+    private String fileId;
+    private String downloadUrl;
+
+    private Long createTime;
+    private Long updateTime;
+}
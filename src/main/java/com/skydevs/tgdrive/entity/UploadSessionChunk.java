@@ -0,0 +1,21 @@
+package com.skydevs.tgdrive.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 上传会话中已上传的分块
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionChunk {
+    private String sessionId;
+    private Integer chunkIndex;
+    private String fileId;
+    private String botId;
+    private Long size;
+}
@@ -0,0 +1,9 @@
+package com.skydevs.tgdrive.exception.file;
+
+import com.skydevs.tgdrive.exception.BaseException;
+
+public class InvalidCursorException extends BaseException {
+    public InvalidCursorException() {
+        super("无效的分页游标");
+    }
+}
@@ -0,0 +1,21 @@
+package com.skydevs.tgdrive.exception.file;
+
+import com.skydevs.tgdrive.exception.BaseException;
+import lombok.Getter;
+
+/**
+ * 请求的下载范围超出文件大小
+ */
+@Getter
+public class RangeNotSatisfiableException extends BaseException {
+
+    /**
+     * 文件大小，用于416响应的Content-Range
+     */
+    private final long total;
+
+    public RangeNotSatisfiableException(long total) {
+        super("请求范围无法满足");
+        this.total = total;
+    }
+}
@@ -0,0 +1,26 @@
+package com.skydevs.tgdrive.exception.file;
+
+import com.skydevs.tgdrive.exception.BaseException;
+import lombok.Getter;
+
+/**
+ * 上传请求过多，被准入控制拒绝
+ */
+@Getter
+public class UploadRejectedException extends BaseException {
+
+    /**
+     * 建议客户端重试的等待秒数
+     */
+    private final long retryAfterSeconds;
+
+    public UploadRejectedException(long retryAfterSeconds) {
+        super("服务器繁忙，请稍后重试上传");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public UploadRejectedException(String msg, long retryAfterSeconds) {
+        super(msg);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
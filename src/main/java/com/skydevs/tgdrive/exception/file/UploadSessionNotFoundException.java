@@ -0,0 +1,13 @@
+package com.skydevs.tgdrive.exception.file;
+
+import com.skydevs.tgdrive.exception.BaseException;
+
+public class UploadSessionNotFoundException extends BaseException {
+    public UploadSessionNotFoundException() {
+        super("上传会话不存在或已过期");
+    }
+
+    public UploadSessionNotFoundException(String msg) {
+        super(msg);
+    }
+}
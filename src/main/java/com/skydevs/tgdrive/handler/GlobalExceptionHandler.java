@@ -4,10 +4,13 @@ import cn.dev33.satoken.exception.NotLoginException;
 import cn.dev33.satoken.exception.NotPermissionException;
 import cn.dev33.satoken.exception.NotRoleException;
 import com.skydevs.tgdrive.exception.BaseException;
+import com.skydevs.tgdrive.exception.file.UploadRejectedException;
 import com.skydevs.tgdrive.result.Result;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.catalina.connector.ClientAbortException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -31,6 +34,19 @@ public class GlobalExceptionHandler {
         return Result.error(ex.getMessage());
     }
 
+    /**
+     * 上传被准入控制拒绝，返回503并告知客户端重试时间
+     * @param ex 上传拒绝异常
+     * @return 返回异常信息
+     */
+    @ExceptionHandler(UploadRejectedException.class)
+    public ResponseEntity<Result<String>> handleUploadRejectedException(UploadRejectedException ex) {
+        log.warn("上传被拒绝：{}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Result.error(ex.getMessage()));
+    }
+
     /**
      * 客户端终止连接处理
      * @param e 客户端终止连接异常
@@ -0,0 +1,28 @@
+package com.skydevs.tgdrive.mapper;
+
+import com.skydevs.tgdrive.entity.FileChunk;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+@Mapper
+public interface FileChunkMapper {
+
+    /**
+     * 批量插入分块清单，重复插入时覆盖
+     * @param chunks 分块
+     */
+    @Insert("<script>" +
+            "INSERT OR REPLACE INTO file_chunks (file_id, chunk_index, chunk_file_id, bot_id, chunk_offset, chunk_length) VALUES " +
+            "<foreach collection='chunks' item='c' separator=','>" +
+            "(#{c.fileId}, #{c.chunkIndex}, #{c.chunkFileId}, #{c.botId}, #{c.chunkOffset}, #{c.chunkLength})" +
+            "</foreach>" +
+            "</script>")
+    void insertChunks(@Param("chunks") List<FileChunk> chunks);
+
+    @Select("SELECT * FROM file_chunks WHERE file_id = #{fileId} ORDER BY chunk_index")
+    List<FileChunk> getChunksByFileId(String fileId);
+
+    @Select("SELECT SUM(chunk_length) FROM file_chunks WHERE file_id = #{fileId}")
+    Long getTotalLength(String fileId);
+}
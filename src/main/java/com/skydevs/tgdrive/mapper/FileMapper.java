@@ -1,19 +1,46 @@
 package com.skydevs.tgdrive.mapper;
 
 import com.github.pagehelper.Page;
+import com.skydevs.tgdrive.dto.FileListCursor;
+import com.skydevs.tgdrive.dto.FileSearch;
 import com.skydevs.tgdrive.entity.FileInfo;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
 @Mapper
 public interface FileMapper {
 
+    /**
+     * 由webdav_path计算父目录路径：目录路径以/结尾，先去掉结尾的/；rtrim去掉最后一个/之后的所有字符
+     */
+    String PARENT_PATH_SQL = "(CASE WHEN files.webdav_path LIKE '%/'"
+            + " THEN rtrim(substr(files.webdav_path, 1, length(files.webdav_path) - 1), replace(substr(files.webdav_path, 1, length(files.webdav_path) - 1), '/', ''))"
+            + " ELSE rtrim(files.webdav_path, replace(files.webdav_path, '/', '')) END)";
+
+    /**
+     * 由webdav_path计算parent_id，父目录记录不存在时为NULL
+     */
+    String PARENT_ID_SQL = "CASE WHEN " + PARENT_PATH_SQL + " = '/' THEN 0"
+            + " ELSE (SELECT p.id FROM files p WHERE p.dir = 1 AND p.webdav_path = " + PARENT_PATH_SQL + " ORDER BY p.id LIMIT 1) END";
+
+    /**
+     * 路径本身及其子树：#{sourceEnd}由StringUtil.getSubtreeUpperBound计算，用范围条件走webdav_path索引
+     */
+    String SUBTREE_SQL = "(webdav_path = #{source} OR (webdav_path > #{source} AND webdav_path < #{sourceEnd}))";
+
+    /**
+     * 子树中的条目移动、复制到目标后的路径
+     */
+    String TARGET_PATH_SQL = "#{target} || substr(webdav_path, length(#{source}) + 1)";
+
     /**
      * 插入已上传文件
      * @param fileInfo
      */
-    @Insert("INSERT INTO files (file_name, download_url, upload_time, file_id, size, full_size, webdav_path, dir, user_id, is_public) VALUES (#{fileName}, #{downloadUrl}, #{uploadTime}, #{fileId}, #{size}, #{fullSize}, #{webdavPath}, #{dir}, #{userId}, #{isPublic})")
+    @Insert("INSERT INTO files (file_name, download_url, upload_time, file_id, size, full_size, webdav_path, parent_id, dir, user_id, is_public, content_type) VALUES (#{fileName}, #{downloadUrl}, #{uploadTime}, #{fileId}, #{size}, #{fullSize}, #{webdavPath}, #{parentId}, #{dir}, #{userId}, #{isPublic}, #{contentType})")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
     void insertFile(FileInfo fileInfo);
 
     /**
@@ -24,15 +51,57 @@ public interface FileMapper {
     Page<FileInfo> getAllFiles();
 
     @SelectProvider(type = FileSqlProvider.class, method = "getFilteredFilesQuery")
-    Page<FileInfo> getFilteredFiles(@Param("keyword") String keyword, @Param("userId") Long userId, @Param("role") String role);
+    Page<FileInfo> getFilteredFiles(@Param("search") FileSearch search, @Param("userId") Long userId, @Param("role") String role);
+
+    /**
+     * 游标分页查询文件列表
+     * @param cursor 上一页最后一个文件，第一页为null
+     * @param limit 最多返回的条数
+     */
+    @SelectProvider(type = FileSqlProvider.class, method = "getFilteredFilesAfterQuery")
+    List<FileInfo> getFilteredFilesAfter(@Param("search") FileSearch search, @Param("userId") Long userId, @Param("role") String role,
+                                         @Param("cursor") FileListCursor cursor, @Param("limit") int limit);
+
+    /**
+     * 统计符合条件的文件数，不关联users表
+     */
+    @SelectProvider(type = FileSqlProvider.class, method = "countFilteredFilesQuery")
+    long countFilteredFiles(@Param("search") FileSearch search, @Param("userId") Long userId, @Param("role") String role);
 
     class FileSqlProvider {
-        public String getFilteredFilesQuery(String keyword, Long userId, String role) {
+        public String getFilteredFilesQuery(FileSearch search, Long userId, String role) {
             StringBuilder sql = new StringBuilder("SELECT f.*, u.username as uploader FROM files f LEFT JOIN users u ON f.user_id = u.id WHERE 1=1");
-            
-            // 关键词过滤
-            if (keyword != null && !keyword.isEmpty()) {
-                sql.append(" AND f.file_name LIKE '%").append(keyword).append("%'");
+            appendFilters(sql, search, userId, role);
+            sql.append(" ORDER BY f.upload_time DESC, f.id DESC");
+            return sql.toString();
+        }
+
+        public String getFilteredFilesAfterQuery(FileSearch search, Long userId, String role, FileListCursor cursor, int limit) {
+            StringBuilder sql = new StringBuilder("SELECT f.*, u.username as uploader FROM files f LEFT JOIN users u ON f.user_id = u.id WHERE 1=1");
+            appendFilters(sql, search, userId, role);
+            if (cursor != null) {
+                // 行值比较，可以直接在 (upload_time, id) 索引上定位
+                sql.append(" AND (f.upload_time, f.id) < (#{cursor.uploadTime}, #{cursor.id})");
+            }
+            sql.append(" ORDER BY f.upload_time DESC, f.id DESC LIMIT #{limit}");
+            return sql.toString();
+        }
+
+        public String countFilteredFilesQuery(FileSearch search, Long userId, String role) {
+            StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM files f WHERE 1=1");
+            appendFilters(sql, search, userId, role);
+            return sql.toString();
+        }
+
+        private static void appendFilters(StringBuilder sql, FileSearch search, Long userId, String role) {
+            // 关键词过滤，关键词都通过参数绑定
+            if (search != null) {
+                if (search.getMatch() != null) {
+                    sql.append(" AND f.id IN (SELECT rowid FROM files_fts WHERE files_fts MATCH #{search.match})");
+                }
+                for (int i = 0; i < search.getLikeTerms().size(); i++) {
+                    sql.append(" AND f.file_name LIKE '%' || #{search.likeTerms[").append(i).append("]} || '%' ESCAPE '\\'");
+                }
             }
             
             // 权限过滤
@@ -40,23 +109,35 @@ public interface FileMapper {
                 // admin可以查看所有文件，不添加额外条件
             } else if ("admin_filter".equals(role)) {
                 // admin按指定用户筛选文件
-                sql.append(" AND f.user_id = ").append(userId);
+                sql.append(" AND f.user_id = #{userId}");
             } else if ("user".equals(role)) {
                 // user可以查看自己的文件和公开文件
-                sql.append(" AND (f.user_id = ").append(userId).append(" OR f.is_public = 1)");
+                sql.append(" AND (f.user_id = #{userId} OR f.is_public = 1)");
             } else if ("visitor".equals(role) || userId == null) {
                 // visitor或未登录用户只能查看公开文件
                 sql.append(" AND f.is_public = 1");
             }
-            
-            sql.append(" ORDER BY f.upload_time DESC");
-            return sql.toString();
         }
     }
 
     @Select("SELECT file_name FROM files where file_id = #{fileId} AND (webdav_path IS NULL OR webdav_path != 'deleted') LIMIT 1")
     String getFileNameByFileId(String fileId);
 
+    /**
+     * 下载和HEAD请求需要的文件信息
+     */
+    @Select("SELECT file_id, file_name, content_type, full_size, upload_time, dir, is_public FROM files where file_id = #{fileId} AND (webdav_path IS NULL OR webdav_path != 'deleted') LIMIT 1")
+    FileInfo getDownloadInfoByFileId(String fileId);
+
+    /**
+     * 还没有MIME类型的文件，按id分批
+     */
+    @Select("SELECT id, file_id, file_name FROM files WHERE content_type IS NULL AND dir = 0 AND id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<FileInfo> getFilesWithoutContentType(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    @Update("UPDATE files SET content_type = #{contentType} WHERE file_id = #{fileId} AND content_type IS NULL")
+    void updateContentType(@Param("fileId") String fileId, @Param("contentType") String contentType);
+
     @Select("SELECT full_size FROM files where file_id = #{fileId} LIMIT 1")
     Long getFullSizeByFileId(String fileId);
 
@@ -65,8 +146,70 @@ public interface FileMapper {
     @Select("SELECT * FROM files WHERE webdav_path = #{path}")
     FileInfo getFileByWebdavPath(String path);
 
-    @Select("SELECT * FROM files WHERE webdav_path LIKE #{path} || '%' ORDER BY id DESC")
-    List<FileInfo> getFilesByPathPrefix(String path);
+    @Select("SELECT * FROM files WHERE webdav_path = #{path}")
+    List<FileInfo> getFilesByWebdavPath(String path);
+
+    /**
+     * 目录的id
+     * @param path 目录路径，以/结尾
+     */
+    @Select("SELECT id FROM files WHERE webdav_path = #{path} AND dir = 1 ORDER BY id LIMIT 1")
+    Long getDirIdByWebdavPath(String path);
+
+    /**
+     * 逐行读取目录下的直接子项，不一次性加载到列表中
+     * @param parentId 目录id，根目录为0
+     * @param handler 每读到一行调用一次
+     */
+    @Select("SELECT * FROM files WHERE parent_id = #{parentId} ORDER BY id DESC")
+    @ResultType(FileInfo.class)
+    void getChildren(@Param("parentId") long parentId, ResultHandler<FileInfo> handler);
+
+    /**
+     * 路径及其子树中的条目，只包含WebDAV和下载需要的字段，用于加载内存路径索引
+     * @param source 路径，目录以/结尾，根目录为/
+     * @param sourceEnd 子树范围的上界
+     */
+    @Select("SELECT id, file_name, full_size, file_id, upload_time, webdav_path, parent_id, dir, user_id, is_public, content_type"
+            + " FROM files WHERE " + SUBTREE_SQL + " ORDER BY id")
+    List<FileInfo> getSubtree(@Param("source") String source, @Param("sourceEnd") String sourceEnd);
+
+    /**
+     * 按路径顺序逐行读取路径及其子树中的条目，不一次性加载到列表中
+     * @param handler 每读到一行调用一次
+     */
+    @Select("SELECT id, file_name, full_size, file_id, upload_time, webdav_path, parent_id, dir, user_id, is_public, content_type"
+            + " FROM files WHERE " + SUBTREE_SQL + " ORDER BY webdav_path")
+    @ResultType(FileInfo.class)
+    void scanSubtree(@Param("source") String source, @Param("sourceEnd") String sourceEnd, ResultHandler<FileInfo> handler);
+
+    /**
+     * 在目录的直接子项中不区分大小写地查找路径
+     */
+    @Select("SELECT * FROM files WHERE parent_id = #{parentId} AND webdav_path = #{path} COLLATE NOCASE ORDER BY id LIMIT 1")
+    FileInfo getChildByPathIgnoreCase(@Param("parentId") long parentId, @Param("path") String path);
+
+    /**
+     * 重新计算路径及其子树中所有条目的parent_id
+     * @param source 路径
+     * @param sourceEnd 子树范围的上界
+     * @return 更新的条目数
+     */
+    @Update("UPDATE files SET parent_id = " + PARENT_ID_SQL + " WHERE " + SUBTREE_SQL + " AND webdav_path != '/'")
+    int relinkParents(@Param("source") String source, @Param("sourceEnd") String sourceEnd);
+
+    /**
+     * 在WebDAV中但还没有parent_id的条目
+     */
+    @Select("SELECT id, webdav_path, dir FROM files WHERE parent_id IS NULL AND webdav_path LIKE '/%' AND webdav_path != '/'")
+    List<FileInfo> getOrphans();
+
+    /**
+     * 为还没有parent_id的条目计算parent_id
+     * @return 更新的条目数
+     */
+    @Update("UPDATE files SET parent_id = " + PARENT_ID_SQL + " WHERE parent_id IS NULL AND webdav_path LIKE '/%' AND webdav_path != '/'")
+    int relinkOrphans();
 
     @Select("SELECT * FROM files WHERE file_id = #{fileId}")
     FileInfo getFileByFileId(String fileId);
@@ -74,14 +217,47 @@ public interface FileMapper {
     @Delete("DELETE FROM files WHERE file_id = #{fileId}")
     void deleteFile(String fileId);
 
-    @Delete("DELETE FROM files WHERE webdav_path LIKE CONCAT(#{path}, '%')")
-    void deleteFileByWebDav(String path);
+    /**
+     * 删除路径及其子树
+     * @param source 路径，目录以/结尾
+     * @param sourceEnd 子树范围的上界
+     */
+    @Delete("DELETE FROM files WHERE " + SUBTREE_SQL)
+    void deleteFileByWebDav(@Param("source") String source, @Param("sourceEnd") String sourceEnd);
 
-    @Update("UPDATE files SET download_url = #{file.downloadUrl}, upload_time = #{file.uploadTime}, size = #{file.size}, full_size = #{file.fullSize}, file_id = #{file.fileId} WHERE webdav_path = #{target}")
-    void updateFileAttributeByWebDav(@Param("file") FileInfo file, @Param("target") String target);
+    /**
+     * 删除目标位置上会被源子树覆盖的条目
+     * @param source 源路径
+     * @param sourceEnd 源子树范围的上界
+     * @param target 目标路径
+     * @return 删除的条目数
+     */
+    @Delete("DELETE FROM files WHERE webdav_path IN (SELECT " + TARGET_PATH_SQL + " FROM files WHERE " + SUBTREE_SQL + ")")
+    int deleteSubtreeCollisions(@Param("source") String source, @Param("sourceEnd") String sourceEnd, @Param("target") String target);
 
-    @Insert("INSERT INTO files (file_name, download_url, upload_time, file_id, size, full_size, webdav_path, dir) VALUES (#{file.fileName}, #{file.downloadUrl}, #{file.uploadTime}, #{file.fileId}, #{file.size}, #{file.fullSize}, #{target}, #{file.dir})")
-    void moveFile(@Param("file") FileInfo sourceFile, @Param("target") String target);
+    /**
+     * 把源路径及其子树整体改写到目标路径，子项的id和parent_id不变
+     * @param fileName 源条目在目标位置的文件名
+     * @param parentId 目标位置的父目录id
+     * @return 移动的条目数
+     */
+    @Update("UPDATE files SET webdav_path = " + TARGET_PATH_SQL + ","
+            + " file_name = CASE WHEN webdav_path = #{source} THEN #{fileName} ELSE file_name END,"
+            + " parent_id = CASE WHEN webdav_path = #{source} THEN #{parentId} ELSE parent_id END"
+            + " WHERE " + SUBTREE_SQL)
+    int moveSubtree(@Param("source") String source, @Param("sourceEnd") String sourceEnd, @Param("target") String target,
+                    @Param("fileName") String fileName, @Param("parentId") long parentId);
+
+    /**
+     * 把源路径及其子树复制到目标路径，新条目的parent_id为NULL，需要随后relinkParents
+     * @param fileName 源条目在目标位置的文件名
+     * @return 复制的条目数
+     */
+    @Insert("INSERT INTO files (file_name, download_url, upload_time, size, full_size, file_id, webdav_path, dir, user_id, is_public, content_type)"
+            + " SELECT CASE WHEN webdav_path = #{source} THEN #{fileName} ELSE file_name END, download_url, upload_time, size, full_size, file_id, "
+            + TARGET_PATH_SQL + ", dir, user_id, is_public, content_type FROM files WHERE " + SUBTREE_SQL)
+    int copySubtree(@Param("source") String source, @Param("sourceEnd") String sourceEnd, @Param("target") String target,
+                    @Param("fileName") String fileName);
 
     @Update("UPDATE files SET is_public = #{isPublic} WHERE file_id = #{fileId}")
     void updateIsPublic(@Param("fileId") String fileId, @Param("isPublic") boolean isPublic);
@@ -0,0 +1,54 @@
+package com.skydevs.tgdrive.mapper;
+
+import com.skydevs.tgdrive.entity.UploadSession;
+import com.skydevs.tgdrive.entity.UploadSessionChunk;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+@Mapper
+public interface UploadSessionMapper {
+
+    @Insert("INSERT INTO upload_sessions (id, file_name, file_size, chunk_size, total_chunks, user_id, status, create_time, update_time) " +
+            "VALUES (#{id}, #{fileName}, #{fileSize}, #{chunkSize}, #{totalChunks}, #{userId}, #{status}, #{createTime}, #{updateTime})")
+    void insertSession(UploadSession session);
+
+    @Select("SELECT * FROM upload_sessions WHERE id = #{id}")
+    UploadSession getSession(String id);
+
+    /**
+     * 只有仍在上传中的会话才会被标记为完成
+     * @return 更新的行数，会话已完成或已删除时为0
+     */
+    @Update("UPDATE upload_sessions SET status = #{status}, file_id = #{fileId}, download_url = #{downloadUrl}, update_time = #{updateTime} " +
+            "WHERE id = #{id} AND status = 'uploading'")
+    int completeSession(UploadSession session);
+
+    @Update("UPDATE upload_sessions SET content_type = #{contentType} WHERE id = #{id}")
+    void updateContentType(@Param("id") String id, @Param("contentType") String contentType);
+
+    @Update("UPDATE upload_sessions SET update_time = #{updateTime} WHERE id = #{id}")
+    void touchSession(@Param("id") String id, @Param("updateTime") long updateTime);
+
+    @Delete("DELETE FROM upload_sessions WHERE id = #{id}")
+    void deleteSession(String id);
+
+    /**
+     * 分块重传时覆盖原有记录
+     */
+    @Insert("INSERT OR REPLACE INTO upload_session_chunks (session_id, chunk_index, file_id, bot_id, size) " +
+            "VALUES (#{sessionId}, #{chunkIndex}, #{fileId}, #{botId}, #{size})")
+    void upsertChunk(UploadSessionChunk chunk);
+
+    @Select("SELECT * FROM upload_session_chunks WHERE session_id = #{sessionId} ORDER BY chunk_index")
+    List<UploadSessionChunk> getChunks(String sessionId);
+
+    @Select("SELECT chunk_index FROM upload_session_chunks WHERE session_id = #{sessionId} ORDER BY chunk_index")
+    List<Integer> getUploadedChunkIndexes(String sessionId);
+
+    @Delete("DELETE FROM upload_session_chunks WHERE session_id = #{sessionId}")
+    void deleteChunks(String sessionId);
+
+    @Select("SELECT id FROM upload_sessions WHERE status = 'uploading' AND update_time < #{before}")
+    List<String> getExpiredSessionIds(long before);
+}
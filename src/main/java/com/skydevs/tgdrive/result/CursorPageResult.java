@@ -0,0 +1,24 @@
+package com.skydevs.tgdrive.result;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 封装游标分页查询结果
+ * total为-1表示没有请求总数；请求总数时为缓存的近似值
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class CursorPageResult extends PageResult {
+
+    private String nextCursor; //下一页游标，没有更多数据时为null
+
+    public CursorPageResult(long total, List records, String nextCursor) {
+        super(total, records);
+        this.nextCursor = nextCursor;
+    }
+}
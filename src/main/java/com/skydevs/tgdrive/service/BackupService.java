@@ -4,4 +4,9 @@ import org.springframework.web.multipart.MultipartFile;
 
 public interface BackupService {
     void loadBackupDb(MultipartFile db) throws Exception;
+
+    /**
+     * 把WAL文件中的内容写回数据库文件，复制数据库文件前调用
+     */
+    void checkpoint();
 }
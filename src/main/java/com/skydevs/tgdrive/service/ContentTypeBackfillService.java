@@ -0,0 +1,14 @@
+package com.skydevs.tgdrive.service;
+
+/**
+ * 文件类型回填服务
+ * 为添加content_type字段之前上传的文件补上MIME类型
+ */
+public interface ContentTypeBackfillService {
+
+    /**
+     * 回填所有还没有类型的文件
+     * @return 本次回填的文件数
+     */
+    int backfill();
+}
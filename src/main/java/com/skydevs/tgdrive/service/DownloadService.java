@@ -1,8 +1,12 @@
 package com.skydevs.tgdrive.service;
 
+import com.skydevs.tgdrive.entity.FileInfo;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+
 public interface DownloadService {
     /**
      * 下载文件
@@ -10,4 +14,37 @@ public interface DownloadService {
      * @return
      */
     ResponseEntity<StreamingResponseBody> downloadFile(String fileID);
+
+    /**
+     * 下载文件，支持Range / If-Range断点续传
+     * @param fileID
+     * @param requestHeaders 请求头
+     * @return 完整文件（200）、部分内容（206）、缓存有效（304）或范围无法满足（416）
+     */
+    ResponseEntity<StreamingResponseBody> downloadFile(String fileID, HttpHeaders requestHeaders);
+
+    /**
+     * 只根据数据库中的文件信息生成HEAD响应，不请求Telegram
+     * @param fileID
+     * @param requestHeaders 请求头（If-None-Match / If-Modified-Since）
+     * @return 包含Content-Length、Content-Type、Last-Modified和ETag的响应，缓存有效时返回304，文件不存在时返回404
+     */
+    ResponseEntity<Void> headFile(String fileID, HttpHeaders requestHeaders);
+
+    /**
+     * 根据已查询到的文件信息生成HEAD响应
+     * @param fileInfo 文件信息
+     * @param requestHeaders 请求头（If-None-Match / If-Modified-Since）
+     * @return HEAD响应
+     */
+    ResponseEntity<Void> headFile(FileInfo fileInfo, HttpHeaders requestHeaders);
+
+    /**
+     * 读取文件开头的数据
+     * @param fileID
+     * @param length 读取的字节数
+     * @return 文件开头的数据，文件较小时不足length
+     * @throws IOException 下载失败
+     */
+    byte[] readHead(String fileID, int length) throws IOException;
 }
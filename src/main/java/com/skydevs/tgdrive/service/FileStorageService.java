@@ -1,11 +1,15 @@
 package com.skydevs.tgdrive.service;
 
 import com.skydevs.tgdrive.dto.UploadFile;
+import com.skydevs.tgdrive.entity.ChunkLocation;
+import com.skydevs.tgdrive.entity.StoredFile;
+import com.skydevs.tgdrive.result.CursorPageResult;
 import com.skydevs.tgdrive.result.PageResult;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
+import java.util.List;
 
 /**
  * 文件存储服务接口
@@ -22,13 +26,41 @@ public interface FileStorageService {
     UploadFile getUploadFile(MultipartFile multipartFile, HttpServletRequest request, Long userId);
 
     /**
-     * 上传文件
+     * 上传文件，上传前根据文件头检测MIME类型
      * @param inputStream 文件输入流
      * @param filename 文件名
      * @param size 文件大小
-     * @return 文件存储ID
+     * @return 文件存储ID及MIME类型
      */
-    String uploadFile(InputStream inputStream, String filename, long size);
+    StoredFile uploadFile(InputStream inputStream, String filename, long size);
+
+    /**
+     * Description:
+     * 上传单个分块，用于断点续传
+     * @param inputStream 分块输入流
+     * @param filename 原始文件名
+     * @param partIndex 分块序号
+     * @param totalParts 分块总数，只有一个分块时按小文件上传
+     * @param size 分块大小
+     * @return 分块的文件ID及上传它的bot
+     */
+    ChunkLocation uploadPart(InputStream inputStream, String filename, int partIndex, int totalParts, long size);
+
+    /**
+     * Description:
+     * 为分块上传的文件生成并上传记录文件
+     * @param filename 原始文件名
+     * @param size 文件大小
+     * @param chunks 按顺序排列的分块位置
+     * @return 记录文件ID，即文件的下载ID
+     */
+    String createRecordFile(String filename, long size, List<ChunkLocation> chunks);
+
+    /**
+     * 获取分块大小
+     * @return 分块大小（字节）
+     */
+    int getChunkSize();
 
     /**
      * 分页查询文件列表
@@ -38,6 +70,15 @@ public interface FileStorageService {
      */
     PageResult getFileList(int page, int size, String keyword, Long userId, String role);
 
+    /**
+     * 游标分页查询文件列表
+     * @param cursor 上一页返回的游标，第一页为空
+     * @param size 每页数量
+     * @param withTotal 是否返回总数（缓存的近似值）
+     * @return 分页结果
+     */
+    CursorPageResult getFileListByCursor(String cursor, int size, String keyword, Long userId, String role, boolean withTotal);
+
     /**
      * 更新文件url
      */
@@ -0,0 +1,89 @@
+package com.skydevs.tgdrive.service;
+
+import com.skydevs.tgdrive.entity.FileInfo;
+
+import java.util.function.Consumer;
+
+/**
+ * WebDAV目录树服务
+ * 每个条目通过parent_id指向父目录，列目录只查询直接子项，不再按路径前缀扫描整棵子树。
+ * 启动后按路径查找和列目录走内存路径索引，修改WebDAV条目后需要调用refresh同步索引
+ */
+public interface FileTreeService {
+
+    /**
+     * 根目录的id，根目录下条目的parent_id
+     */
+    long ROOT_ID = 0;
+
+    /**
+     * 获取目录的id
+     * @param dirPath 目录路径，可以不以/结尾
+     * @return 目录id，根目录返回0，目录不存在时返回null
+     */
+    Long dirIdOf(String dirPath);
+
+    /**
+     * 获取路径的父目录id
+     * @param webdavPath 文件或目录路径
+     * @return 父目录id，父目录不存在时返回null
+     */
+    Long parentIdOf(String webdavPath);
+
+    /**
+     * 按WebDAV路径查找条目，找不到时依次尝试URL解码后的路径、不区分大小写的路径
+     * @param path WebDAV路径
+     * @return 条目，找不到时返回null
+     */
+    FileInfo resolve(String path);
+
+    /**
+     * 创建路径上缺失的父目录
+     * @param webdavPath 文件或目录路径
+     * @return 父目录id
+     */
+    long ensureParentDirs(String webdavPath);
+
+    /**
+     * 遍历目录的直接子项，逐个交给action处理，不构建子项列表
+     * @param dirPath 目录路径，以/结尾，根目录为/
+     * @param action 对每个子项执行的操作
+     */
+    void forEachChild(String dirPath, Consumer<FileInfo> action);
+
+    /**
+     * 遍历目录下的所有条目（不含目录本身），逐个交给action处理
+     * @param dirPath 目录路径，以/结尾，根目录为/
+     * @param action 对每个条目执行的操作
+     */
+    void forEachDescendant(String dirPath, Consumer<FileInfo> action);
+
+    /**
+     * 重新计算路径及其子树中所有条目的parent_id，用于批量移动、复制后修正父子关系
+     * @param webdavPath 文件或目录路径，目录以/结尾
+     */
+    void relink(String webdavPath);
+
+    /**
+     * 为还没有parent_id的条目补建缺失的目录并计算parent_id
+     * @return 修复的条目数
+     */
+    int repair();
+
+    /**
+     * 从数据库加载内存路径索引
+     */
+    void loadIndex();
+
+    /**
+     * 修改路径及其子树后同步内存路径索引，在事务中调用时等事务提交后再同步
+     * @param webdavPath 文件或目录路径，目录以/结尾
+     */
+    void refresh(String webdavPath);
+
+    /**
+     * 按Telegram文件ID修改、删除条目后同步内存路径索引
+     * @param fileId Telegram文件ID
+     */
+    void refreshFile(String fileId);
+}
@@ -2,6 +2,13 @@ package com.skydevs.tgdrive.service;
 
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.File;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+import com.skydevs.tgdrive.entity.ChunkLocation;
+import com.skydevs.tgdrive.telegram.BotEndpoint;
+import com.skydevs.tgdrive.telegram.RequestPriority;
+
+import java.util.List;
 
 /**
  * Telegram Bot服务接口
@@ -27,6 +34,41 @@ public interface TelegramBotService {
      */
     String getChatId();
 
+    /**
+     * 经限流调度器执行Bot API请求，触发429时按retry_after等待后重试
+     * @param request 请求
+     * @param priority 优先级
+     * @return 响应
+     */
+    <T extends BaseRequest<T, R>, R extends BaseResponse> R execute(T request, RequestPriority priority);
+
+    /**
+     * 用指定bot执行Bot API请求
+     * @param endpoint bot池中的bot
+     * @param request 请求
+     * @param priority 优先级
+     * @return 响应
+     */
+    <T extends BaseRequest<T, R>, R extends BaseResponse> R execute(BotEndpoint endpoint, T request, RequestPriority priority);
+
+    /**
+     * 轮询选出下一个用于上传分块的bot，未启用bot池时始终返回主bot
+     * @return bot
+     */
+    BotEndpoint nextUploadBot();
+
+    /**
+     * 当前参与上传的bot数量
+     * @return bot数量
+     */
+    int getUploadBotCount();
+
+    /**
+     * 获取当前加载的主bot
+     * @return 主bot
+     */
+    BotEndpoint getPrimaryBot();
+
     /**
      * 初始化Bot配置
      */
@@ -45,6 +87,35 @@ public interface TelegramBotService {
      */
     File getFile(String fileId);
 
+    /**
+     * 用上传该文件的bot获取文件信息，Telegram文件ID只对上传它的bot有效
+     * @param fileId 文件ID
+     * @param botId bot id，为空时使用主bot
+     * @return 文件信息
+     */
+    File getFile(String fileId, String botId);
+
+    /**
+     * 删除缓存的文件信息，下载返回404（file_path已失效）时调用
+     * @param fileId 文件ID
+     * @param botId bot id，为空时使用主bot
+     */
+    void invalidateFile(String fileId, String botId);
+
+    /**
+     * 异步预先获取一批文件的信息并写入缓存，用于分块文件下载前批量解析file_path
+     * @param files 文件位置
+     */
+    void warmUpFiles(List<ChunkLocation> files);
+
+    /**
+     * 获取文件完整下载路径（路径中包含token，必须与getFile使用同一个bot）
+     * @param file 文件对象
+     * @param botId bot id，为空时使用主bot
+     * @return 完整下载路径
+     */
+    String getFullFilePath(File file, String botId);
+
     /**
      * 获取文件完整下载路径
      * @param file 文件对象
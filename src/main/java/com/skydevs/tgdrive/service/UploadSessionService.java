@@ -0,0 +1,61 @@
+package com.skydevs.tgdrive.service;
+
+import com.skydevs.tgdrive.dto.UploadFile;
+import com.skydevs.tgdrive.dto.UploadSessionRequest;
+import com.skydevs.tgdrive.dto.UploadSessionStatus;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.InputStream;
+
+/**
+ * 断点续传上传会话服务
+ * 会话状态和每个分块的Telegram文件ID保存在数据库中，客户端断线或服务重启后可以继续上传
+ */
+public interface UploadSessionService {
+
+    /**
+     * 创建上传会话
+     * @param request 文件名、文件大小
+     * @param userId 用户id
+     * @return 会话状态（包含分块大小和分块总数）
+     */
+    UploadSessionStatus createSession(UploadSessionRequest request, Long userId);
+
+    /**
+     * 上传分块，分块可以乱序、并行上传，重复上传同一分块会覆盖
+     * @param uploadId 会话id
+     * @param chunkIndex 分块序号
+     * @param inputStream 分块数据
+     * @param size 分块大小
+     * @param userId 用户id
+     * @param role 权限
+     */
+    void uploadChunk(String uploadId, int chunkIndex, InputStream inputStream, long size, Long userId, String role);
+
+    /**
+     * 查询会话状态和缺失的分块
+     * @param uploadId 会话id
+     * @param userId 用户id
+     * @param role 权限
+     * @return 会话状态
+     */
+    UploadSessionStatus getStatus(String uploadId, Long userId, String role);
+
+    /**
+     * 所有分块上传完成后合并为文件
+     * @param uploadId 会话id
+     * @param request HTTP请求，用于生成下载链接
+     * @param userId 用户id
+     * @param role 权限
+     * @return 文件名和下载链接
+     */
+    UploadFile complete(String uploadId, HttpServletRequest request, Long userId, String role);
+
+    /**
+     * 取消上传会话
+     * @param uploadId 会话id
+     * @param userId 用户id
+     * @param role 权限
+     */
+    void abort(String uploadId, Long userId, String role);
+}
@@ -1,12 +1,11 @@
 package com.skydevs.tgdrive.service;
 
-import com.skydevs.tgdrive.entity.FileInfo;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.InputStream;
-import java.util.List;
 
 public interface WebDavFileService {
 
@@ -22,21 +21,22 @@ public interface WebDavFileService {
     /**
      * WebDAV下载文件
      * @param path 文件路径
+     * @param requestHeaders 请求头（Range / If-Range）
      * @return 文件流
      */
-    ResponseEntity<StreamingResponseBody> downloadByWebDav(String path);
+    ResponseEntity<StreamingResponseBody> downloadByWebDav(String path, HttpHeaders requestHeaders);
 
     /**
-     * 从Telegram删除文件
+     * WebDAV HEAD请求，只使用数据库中的文件信息
      * @param path 文件路径
+     * @param requestHeaders 请求头（If-None-Match / If-Modified-Since）
+     * @return 响应头
      */
-    void deleteByWebDav(String path);
+    ResponseEntity<Void> headByWebDav(String path, HttpHeaders requestHeaders);
 
     /**
-     * 获取文件列表
-     *
-     * @param path 路径
-     * @return 文件列表
+     * 从Telegram删除文件
+     * @param path 文件路径
      */
-    List<FileInfo> listFiles(String path);
+    void deleteByWebDav(String path);
 }
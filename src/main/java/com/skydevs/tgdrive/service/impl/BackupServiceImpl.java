@@ -1,6 +1,8 @@
 package com.skydevs.tgdrive.service.impl;
 
 import com.skydevs.tgdrive.service.BackupService;
+import com.skydevs.tgdrive.service.FileTreeService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -10,20 +12,25 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.sql.Statement;
 
 @Service
+@RequiredArgsConstructor
 public class BackupServiceImpl implements BackupService {
 
     private static final String BACKEND_DB_PATH = "jdbc:sqlite:db/tgDrive.db"; // 后端数据库路径
     private static final String BACKUP_DB_PATH = "db/tgdrive_backup.db"; // 备份路径
 
+    private final FileTreeService fileTreeService;
+
     @Override
     public void loadBackupDb(MultipartFile db) throws Exception {
         File tempFile = File.createTempFile("uploaded", ".db");
         db.transferTo(tempFile.toPath());
 
         // 备份当前数据库
+        checkpoint();
         Files.copy(Paths.get(BACKEND_DB_PATH.replace("jdbc:sqlite:", "")),
                 Paths.get(BACKUP_DB_PATH),
                 StandardCopyOption.REPLACE_EXISTING);
@@ -56,5 +63,20 @@ public class BackupServiceImpl implements BackupService {
             boolean delete = Files.deleteIfExists(tempFile.toPath());// 删除临时文件
             System.out.println("删除临时文件：" + delete);
         }
+
+        // 导入的条目没有parent_id，补建目录并计算父子关系
+        fileTreeService.repair();
+    }
+
+    @Override
+    public void checkpoint() {
+        // WAL模式下最近提交的数据可能还在-wal文件中；非WAL模式下没有效果
+        try (Connection conn = DriverManager.getConnection(BACKEND_DB_PATH);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000");
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        } catch (SQLException e) {
+            throw new RuntimeException("数据库检查点失败", e);
+        }
     }
 }
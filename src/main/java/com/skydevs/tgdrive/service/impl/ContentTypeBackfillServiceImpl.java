@@ -0,0 +1,93 @@
+package com.skydevs.tgdrive.service.impl;
+
+import com.skydevs.tgdrive.datasource.WriteQueue;
+import com.skydevs.tgdrive.entity.FileInfo;
+import com.skydevs.tgdrive.mapper.FileMapper;
+import com.skydevs.tgdrive.service.ContentTypeBackfillService;
+import com.skydevs.tgdrive.service.DownloadService;
+import com.skydevs.tgdrive.service.TelegramBotService;
+import com.skydevs.tgdrive.upload.ContentTypeDetector;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件类型回填服务实现类
+ * 有可识别扩展名的文件直接根据文件名判断；没有扩展名的文件从Telegram读取文件头检测，
+ * 读取失败（bot未加载、文件已删除）的文件保持为空，下次继续尝试，下载时也会检测一次
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ContentTypeBackfillServiceImpl implements ContentTypeBackfillService {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final FileMapper fileMapper;
+    private final DownloadService downloadService;
+    private final TelegramBotService telegramBotService;
+    private final ContentTypeDetector contentTypeDetector;
+    private final WriteQueue writeQueue;
+
+    /**
+     * 每天凌晨4点回填文件类型
+     */
+    @Scheduled(cron = "0 0 4 * * ?")
+    public void scheduledBackfill() {
+        int updated = backfill();
+        if (updated > 0) {
+            log.info("文件类型回填完成，共 {} 个文件", updated);
+        }
+    }
+
+    @Override
+    public synchronized int backfill() {
+        int updated = 0;
+        long afterId = 0;
+        while (true) {
+            List<FileInfo> files = fileMapper.getFilesWithoutContentType(afterId, BATCH_SIZE);
+            if (files.isEmpty()) {
+                return updated;
+            }
+            // 先检测完一批再一次性写入，检测时不占用写连接
+            Map<String, String> detected = new LinkedHashMap<>();
+            for (FileInfo file : files) {
+                afterId = file.getId();
+                String contentType = detect(file);
+                if (contentType != null) {
+                    detected.put(file.getFileId(), contentType);
+                }
+            }
+            if (!detected.isEmpty()) {
+                writeQueue.run(() -> detected.forEach(fileMapper::updateContentType));
+                updated += detected.size();
+            }
+        }
+    }
+
+    /**
+     * 检测单个文件的类型
+     * @return MIME类型，无法检测时返回null
+     */
+    private String detect(FileInfo file) {
+        String byName = contentTypeDetector.detectByName(file.getFileName());
+        if (!ContentTypeDetector.DEFAULT_TYPE.equals(byName)) {
+            return byName;
+        }
+        if (!telegramBotService.isInitialized()) {
+            return null;
+        }
+        try {
+            byte[] head = downloadService.readHead(file.getFileId(), ContentTypeDetector.HEAD_SIZE);
+            return contentTypeDetector.detect(head, file.getFileName());
+        } catch (Exception e) {
+            log.warn("读取文件 {} 的文件头失败：{}", file.getFileId(), e.getMessage());
+            return null;
+        }
+    }
+}
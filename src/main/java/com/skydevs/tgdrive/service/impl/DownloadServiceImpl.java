@@ -2,18 +2,32 @@ package com.skydevs.tgdrive.service.impl;
 
 import com.alibaba.fastjson.JSON;
 import com.pengrad.telegrambot.model.File;
+import com.skydevs.tgdrive.datasource.WriteQueue;
+import com.skydevs.tgdrive.download.ByteRange;
+import com.skydevs.tgdrive.download.CachedFile;
+import com.skydevs.tgdrive.download.ChunkDiskCache;
+import com.skydevs.tgdrive.download.ChunkFetchException;
+import com.skydevs.tgdrive.download.ChunkPrefetcher;
+import com.skydevs.tgdrive.download.ChunkSlice;
+import com.skydevs.tgdrive.download.DownloadCachePolicy;
+import com.skydevs.tgdrive.download.LocalFileBody;
 import com.skydevs.tgdrive.entity.BigFileInfo;
+import com.skydevs.tgdrive.entity.ChunkLocation;
+import com.skydevs.tgdrive.entity.FileChunk;
+import com.skydevs.tgdrive.entity.FileInfo;
 import com.skydevs.tgdrive.exception.bot.BotNotSetException;
+import com.skydevs.tgdrive.exception.file.RangeNotSatisfiableException;
+import com.skydevs.tgdrive.mapper.FileChunkMapper;
 import com.skydevs.tgdrive.mapper.FileMapper;
 import com.skydevs.tgdrive.service.DownloadService;
 import com.skydevs.tgdrive.service.FileStorageService;
 import com.skydevs.tgdrive.service.TelegramBotService;
+import com.skydevs.tgdrive.telegram.TelegramTransport;
+import com.skydevs.tgdrive.upload.ChunkBufferPool;
+import com.skydevs.tgdrive.upload.ContentTypeDetector;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
-import org.apache.tika.Tika;
-import org.apache.tika.mime.MimeType;
-import org.apache.tika.mime.MimeTypes;
 import org.springframework.http.MediaType;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
@@ -22,15 +36,8 @@ import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBo
 import java.io.*;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
@@ -40,44 +47,83 @@ public class DownloadServiceImpl implements DownloadService {
     private final FileStorageService fileStorageService;
     private final TelegramBotService telegramBotService;
     private final FileMapper fileMapper;
-
-    // 优化的HTTP客户端配置
-    private final OkHttpClient okHttpClient = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(60, TimeUnit.SECONDS)
-            .writeTimeout(60, TimeUnit.SECONDS)
-            // 配置连接池：最大空闲连接数5，连接保持时间5分钟
-            .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
-            // 启用连接复用
-            .retryOnConnectionFailure(true)
-            // 最大请求数限制
-            .build();
+    private final FileChunkMapper fileChunkMapper;
+    private final ChunkPrefetcher chunkPrefetcher;
+    private final ChunkDiskCache chunkDiskCache;
+    private final ContentTypeDetector contentTypeDetector;
+    private final DownloadCachePolicy downloadCachePolicy;
+    private final TelegramTransport telegramTransport;
+    private final WriteQueue writeQueue;
+
+    // 旧版记录文件的大小上限，超过的文件不可能是记录文件
+    private static final int RECORD_FILE_MAX_SIZE = 1024 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
 
     /**
      * 下载文件
+     * 分块清单在数据库中时不需要额外的Telegram请求；否则直接流式读取文件，
+     * 只有很小的文件才会被读入内存判断是否为旧版记录文件
      * @param fileID
      * @return
      */
     @Override
     public ResponseEntity<StreamingResponseBody> downloadFile(String fileID) {
-        try (InputStream inputStream = downloadFileInputStream(fileID);
-             ByteArrayOutputStream buffer = new ByteArrayOutputStream()){
-            byte[] data = new byte[8192];
-            int byteRead;
-            while ((byteRead = inputStream.read(data)) != -1) {
-                buffer.write(data, 0, byteRead);
-            }
+        return downloadFile(fileID, null);
+    }
 
-            byte[] inputData = buffer.toByteArray();
-            try (InputStream inputStream1 = new ByteArrayInputStream(inputData);
-            InputStream inputStream2 = new ByteArrayInputStream(inputData)) {
-                BigFileInfo record = parseBigFileInfo(inputStream1);
+    /**
+     * 下载文件，支持Range / If-Range，分块文件只下载与请求范围重叠的分块
+     * 条件请求命中时直接返回304，不请求Telegram
+     * @param fileID
+     * @param requestHeaders 请求头
+     * @return
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> downloadFile(String fileID, HttpHeaders requestHeaders) {
+        FileInfo stored = fileMapper.getDownloadInfoByFileId(fileID);
+        if (downloadCachePolicy.isNotModified(requestHeaders, fileID, stored)) {
+            return notModified(fileID, stored);
+        }
+        try {
+            List<FileChunk> chunks = fileChunkMapper.getChunksByFileId(fileID);
+            if (!chunks.isEmpty()) {
+                return handleChunkedFile(fileID, stored, chunks, requestHeaders);
+            }
 
-                if (record != null && record.isRecordFile()) {
-                    return handleRecordFile(fileID, record);
+            // 缓存命中时不需要任何Telegram请求；未命中时直接从Telegram流式发送，同时写入缓存
+            CachedFile cached = chunkDiskCache.open(fileID);
+            File file = null;
+            long fullSize;
+            InputStream rawStream;
+            if (cached != null) {
+                fullSize = cached.getSize();
+                rawStream = cached.newInputStream(0);
+            } else {
+                file = telegramBotService.getFile(fileID);
+                fullSize = file.fileSize();
+                rawStream = openFileStream(fileID, null, file, 0, -1);
+                if (requestHeaders == null || !requestHeaders.containsKey(HttpHeaders.RANGE)) {
+                    // 范围请求只发送文件的一部分，写不完整个缓存
+                    rawStream = chunkDiskCache.fill(fileID, rawStream, fullSize);
                 }
-                return handleRegularFile(fileID, inputStream2, inputData);
             }
+            String defaultName = file != null ? file.filePath() : fileID;
+
+            InputStream inputStream = new BufferedInputStream(rawStream, STREAM_BUFFER_SIZE);
+            BigFileInfo record = tryReadRecordFile(fullSize, inputStream);
+            if (record != null) {
+                inputStream.close();
+                return handleChunkedFile(fileID, stored, migrateRecordFile(fileID, record), requestHeaders);
+            }
+            if (cached != null) {
+                return handleLocalFile(fileID, stored, defaultName, cached, fullSize, inputStream, requestHeaders);
+            }
+            return handleRegularFile(fileID, stored, defaultName, fullSize, inputStream, requestHeaders);
+        } catch (RangeNotSatisfiableException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + e.getTotal())
+                    .build();
         } catch (IOException e) {
             log.error("下载文件失败：" + e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
@@ -86,70 +132,182 @@ public class DownloadServiceImpl implements DownloadService {
         }
     }
 
+    @Override
+    public ResponseEntity<Void> headFile(String fileID, HttpHeaders requestHeaders) {
+        FileInfo stored = fileMapper.getDownloadInfoByFileId(fileID);
+        if (stored == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return headFile(stored, requestHeaders);
+    }
+
+    @Override
+    public ResponseEntity<Void> headFile(FileInfo fileInfo, HttpHeaders requestHeaders) {
+        if (fileInfo.isDir()) {
+            return ResponseEntity.ok().build();
+        }
+        if (downloadCachePolicy.isNotModified(requestHeaders, fileInfo.getFileId(), fileInfo)) {
+            HttpHeaders headers = new HttpHeaders();
+            downloadCachePolicy.apply(headers, fileInfo.getFileId(), fileInfo);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+        Long size = fileInfo.getFullSize();
+        if (size == null) {
+            // 早期版本没有保存full_size，分块文件从清单计算
+            size = fileChunkMapper.getTotalLength(fileInfo.getFileId());
+        }
+
+        FileInfo info = describe(fileInfo.getFileName(), fileInfo.getContentType());
+        HttpHeaders headers = setHeaders(info.getFileName(), info.getContentType(), size);
+        if (size != null) {
+            headers.setContentLength(size);
+        }
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        downloadCachePolicy.apply(headers, fileInfo.getFileId(), fileInfo);
+        return ResponseEntity.ok().headers(headers).build();
+    }
+
     /**
-     * 处理小文件
+     * 客户端缓存仍然有效，只返回验证信息
      * @param fileID
-     * @param inputStream
-     * @return
+     * @param stored 数据库中的文件信息，可以为null
+     * @return 304响应
      */
-    private ResponseEntity<StreamingResponseBody> handleRegularFile(String fileID, InputStream inputStream, byte[] chunkData) {
-        log.info("文件不是记录文件，直接下载文件...");
+    private ResponseEntity<StreamingResponseBody> notModified(String fileID, FileInfo stored) {
+        HttpHeaders headers = new HttpHeaders();
+        downloadCachePolicy.apply(headers, fileID, stored);
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+    }
 
-        File file = telegramBotService.getFile(fileID);
-        String filename = resolveFilename(fileID, file.filePath());
-        if (filename.lastIndexOf('.') == -1) {
-            Tika tika = new Tika();
-            try (InputStream is = new ByteArrayInputStream(chunkData)) {
-                String mimeType = tika.detect(is);
-
-                String extension = getExtensionByMimeType(mimeType);
-                if (!extension.isEmpty()) {
-                    filename = filename + extension;
-                } else {
-                    log.error("未添加扩展名，扩展名检测失败");
+    /**
+     * 读取文件开头的数据，用于回填旧数据的文件类型
+     * 只请求需要的字节，不写入下载缓存；旧版记录文件会先转换为分块清单
+     * @param fileID
+     * @param length 读取的字节数
+     * @return 文件开头的数据，文件较小时不足length
+     * @throws IOException
+     */
+    @Override
+    public byte[] readHead(String fileID, int length) throws IOException {
+        List<FileChunk> chunks = fileChunkMapper.getChunksByFileId(fileID);
+        if (chunks.isEmpty()) {
+            CachedFile cached = chunkDiskCache.open(fileID);
+            File file = cached == null ? telegramBotService.getFile(fileID) : null;
+            long size = cached != null ? cached.getSize() : file.fileSize();
+            // 可能是记录文件时需要读取完整内容判断
+            long fetchLength = Math.min(size, size <= RECORD_FILE_MAX_SIZE ? size : length);
+            InputStream rawStream = cached != null ? cached.newInputStream(0) : openFileStream(fileID, null, file, 0, fetchLength);
+            try (InputStream inputStream = new BufferedInputStream(rawStream, STREAM_BUFFER_SIZE)) {
+                BigFileInfo record = tryReadRecordFile(size, inputStream);
+                if (record == null) {
+                    return inputStream.readNBytes((int) Math.min(length, fetchLength));
                 }
-            } catch (Exception e) {
-                log.error("文件检测失败" + e.getCause().getMessage());
+                chunks = migrateRecordFile(fileID, record);
             }
         }
-        long fullSize = file.fileSize();
 
-        HttpHeaders headers = setHeaders(filename, fullSize);
+        FileChunk first = chunks.get(0);
+        long fetchLength = Math.min(length, first.getChunkLength());
+        File partFile = telegramBotService.getFile(first.getChunkFileId(), first.getBotId());
+        try (InputStream inputStream = openFileStream(first.getChunkFileId(), first.getBotId(), partFile, 0, fetchLength)) {
+            return inputStream.readNBytes((int) fetchLength);
+        }
+    }
+
+    /**
+     * 处理小文件
+     * @param fileID
+     * @param stored 数据库中的文件信息，可以为null
+     * @param defaultName 数据库中没有文件名时使用的名字
+     * @param fullSize 文件大小
+     * @param inputStream 支持mark的文件流
+     * @param requestHeaders 请求头
+     * @return
+     */
+    private ResponseEntity<StreamingResponseBody> handleRegularFile(String fileID, FileInfo stored, String defaultName, long fullSize,
+                                                                    InputStream inputStream, HttpHeaders requestHeaders) throws IOException {
+        log.info("文件不是记录文件，直接下载文件...");
+
+        ByteRange range;
+        try {
+            range = ByteRange.parse(requestHeaders, fullSize, DownloadCachePolicy.entityTag(fileID));
+        } catch (RangeNotSatisfiableException e) {
+            inputStream.close();
+            throw e;
+        }
 
+        FileInfo info = resolveDownloadInfo(fileID, stored, defaultName, inputStream);
+        // 单个文件不超过20MB，范围请求直接在本地跳过前面的字节
+        long skip = range == null ? 0 : range.getStart();
+        long length = range == null ? fullSize : range.length();
         StreamingResponseBody streamingResponseBody = outputStream -> {
-            streamData(inputStream, outputStream);
+            streamData(inputStream, outputStream, skip, length);
         };
 
-        return ResponseEntity.ok()
-                .headers(headers)
-                .contentType(MediaType.parseMediaType(getContentTypeFromFilename(filename)))
-                .body(streamingResponseBody);
+        return buildResponse(info, fullSize, range, streamingResponseBody);
     }
 
-    private String getExtensionByMimeType(String mimeType) {
+    /**
+     * 处理已缓存在本地磁盘的小文件，响应体直接引用已打开的缓存文件，容器支持时用sendfile发送
+     * @param fileID
+     * @param stored 数据库中的文件信息，可以为null
+     * @param defaultName 数据库中没有文件名时使用的名字
+     * @param cached 已打开的缓存文件，由响应体关闭
+     * @param fullSize 文件大小
+     * @param inputStream 支持mark的缓存文件流，只用于旧数据检测文件类型；与响应体共用同一个channel，响应体按绝对位置读取
+     * @param requestHeaders 请求头
+     * @return
+     */
+    private ResponseEntity<StreamingResponseBody> handleLocalFile(String fileID, FileInfo stored, String defaultName, CachedFile cached, long fullSize,
+                                                                  InputStream inputStream, HttpHeaders requestHeaders) throws IOException {
+        FileInfo info;
+        ByteRange range;
         try {
-            // 使用Tika的MimeType工具获取扩展名
-            MimeTypes allTypes = MimeTypes.getDefaultMimeTypes();
-            MimeType type = allTypes.forName(mimeType);
-            return type.getExtension();
-        } catch (Exception e) {
-            log.error("无法获取扩展名");
-            return "";
+            range = ByteRange.parse(requestHeaders, fullSize, DownloadCachePolicy.entityTag(fileID));
+            info = resolveDownloadInfo(fileID, stored, defaultName, inputStream);
+        } catch (RuntimeException e) {
+            cached.close();
+            throw e;
+        }
+
+        long position = range == null ? 0 : range.getStart();
+        long length = range == null ? fullSize : range.length();
+        return buildResponse(info, fullSize, range, new LocalFileBody(cached, position, length));
+    }
+
+    /**
+     * 构建下载响应，有范围时返回206
+     * @param info 文件名、MIME类型和缓存验证信息
+     * @param fullSize 文件大小
+     * @param range 请求范围，为null时返回完整文件
+     * @param body 响应体
+     * @return
+     */
+    private ResponseEntity<StreamingResponseBody> buildResponse(FileInfo info, long fullSize, ByteRange range,
+                                                                StreamingResponseBody body) {
+        HttpHeaders headers = setHeaders(info.getFileName(), info.getContentType(), range == null ? fullSize : range.length());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        downloadCachePolicy.apply(headers, info.getFileId(), info);
+        if (range != null) {
+            headers.set(HttpHeaders.CONTENT_RANGE, range.toContentRange());
         }
+
+        return ResponseEntity.status(range == null ? HttpStatus.OK : HttpStatus.PARTIAL_CONTENT)
+                .headers(headers)
+                .body(body);
     }
 
     /**
      * 流数据处理
      * @param inputStream
      * @param outputStream
+     * @param skip 跳过的字节数
+     * @param length 输出的字节数
      */
-    private void streamData(InputStream inputStream, OutputStream outputStream) {
+    private void streamData(InputStream inputStream, OutputStream outputStream, long skip, long length) {
         try (InputStream is = inputStream) {
-            byte[] buffer = new byte[4096];
-            int byteRead;
-            while ((byteRead = is.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, byteRead);
-            }
+            is.skipNBytes(skip);
+            copy(is, outputStream, length);
         } catch (IOException e) {
             handleClientAbortException(e);
         } catch (Exception e) {
@@ -161,88 +319,91 @@ public class DownloadServiceImpl implements DownloadService {
     /**
      * 处理大文件
      * @param fileID
-     * @param record
+     * @param stored 数据库中的文件信息，可以为null
+     * @param chunks 分块清单
+     * @param requestHeaders 请求头
      * @return
      */
-    private ResponseEntity<StreamingResponseBody> handleRecordFile(String fileID, BigFileInfo record) {
-        log.info("文件名为：" + record.getFileName());
-        log.info("检测到记录文件，开始下载并合并分片文件...");
-
-        String filename = resolveFilename(fileID, record.getFileName());
-        Long fullSize = fileMapper.getFullSizeByFileId(fileID);
-
-        HttpHeaders headers = setHeaders(filename, fullSize);
-
-        List<String> partFileIds = record.getFileIds();
+    private ResponseEntity<StreamingResponseBody> handleChunkedFile(String fileID, FileInfo stored, List<FileChunk> chunks,
+                                                                    HttpHeaders requestHeaders) throws IOException {
+        long fullSize = 0;
+        for (FileChunk chunk : chunks) {
+            fullSize += chunk.getChunkLength();
+        }
+        ByteRange range = ByteRange.parse(requestHeaders, fullSize, DownloadCachePolicy.entityTag(fileID));
+        List<ChunkSlice> slices = range == null
+                ? ChunkSlice.overlapping(chunks, 0, fullSize - 1)
+                : ChunkSlice.overlapping(chunks, range.getStart(), range.getEnd());
+        log.info("文件由 {} 个分块组成，需要下载其中 {} 个，开始下载并合并分片文件...", chunks.size(), slices.size());
+
+        FileInfo info = resolveDownloadInfo(fileID, stored, fileID, null);
+        if (slices.size() == 1) {
+            // 范围只落在一个分块内（例如视频拖动进度），分块已缓存时直接引用缓存文件；
+            // 未缓存时由下面的流式下载只读取需要的部分，不写入缓存
+            ChunkSlice slice = slices.get(0);
+            CachedFile cached = chunkDiskCache.open(slice.getChunk().getChunkFileId());
+            if (cached != null) {
+                return buildResponse(info, fullSize, range, new LocalFileBody(cached, slice.getOffsetInChunk(), slice.getLength()));
+            }
+        }
+        warmUpFilePaths(slices);
 
         StreamingResponseBody streamingResponseBody = outputStream -> {
-            downloadAndMergeFileParts(partFileIds, outputStream);
+            downloadAndMergeFileParts(slices, outputStream);
         };
 
-        return ResponseEntity.ok()
-                .headers(headers)
-                .contentType(MediaType.parseMediaType(getContentTypeFromFilename(filename)))
-                .body(streamingResponseBody);
+        return buildResponse(info, fullSize, range, streamingResponseBody);
     }
 
     /**
-     * 下载并合并分片文件
-     * @param partFileIds
-     * @param outputStream
+     * 在后台批量获取需要下载的分块的file_path，本地已缓存的分块跳过
+     * @param slices 需要读取的分块片段
      */
-    private void downloadAndMergeFileParts(List<String> partFileIds, OutputStream outputStream) {
-        int maxConcurrentDownloads = 3; // 最大并发下载数
-        ExecutorService executorService = Executors.newFixedThreadPool(maxConcurrentDownloads);
-
-        List<PipedInputStream> pipedInputStreams = new ArrayList<>(partFileIds.size());
-        CountDownLatch latch = new CountDownLatch(partFileIds.size());
-
-        try {
-            for (int i = 0; i < partFileIds.size(); i++) {
-                pipedInputStreams.add(new PipedInputStream());
+    private void warmUpFilePaths(List<ChunkSlice> slices) {
+        List<ChunkLocation> locations = new ArrayList<>();
+        for (ChunkSlice slice : slices) {
+            FileChunk chunk = slice.getChunk();
+            if (!chunkDiskCache.contains(chunk.getChunkFileId())) {
+                locations.add(new ChunkLocation(chunk.getChunkFileId(), chunk.getBotId(), chunk.getChunkLength()));
             }
+        }
+        if (locations.size() > 1) {
+            telegramBotService.warmUpFiles(locations);
+        }
+    }
 
-            for (int i = 0; i < partFileIds.size(); i++) {
-                final int index = i;
-                final String partFileId = partFileIds.get(i);
-                final PipedInputStream pipedInputStream = pipedInputStreams.get(index);
-                final PipedOutputStream pipedOutputStream = new PipedOutputStream(pipedInputStream);
-
-                executorService.submit(() -> {
-                    try (InputStream partInputStream = downloadFileByte(partFileId).byteStream();
-                         OutputStream pos = pipedOutputStream) {
-                        byte[] buffer = new byte[8192];
-                        int bytesRead;
-                        while ((bytesRead = partInputStream.read(buffer)) != -1) {
-                            pos.write(buffer, 0, bytesRead);
-                            pos.flush();
-                        }
-                    } catch (IOException e) {
-                        log.error("分片文件下载失败：{}", partFileId, e);
-                    } finally {
-                        latch.countDown();
-                    }
-                });
-            }
+    /**
+     * 下载并合并分片文件，由共享的预读引擎按顺序输出
+     * @param chunks 需要读取的分块片段
+     * @param outputStream
+     */
+    private void downloadAndMergeFileParts(List<ChunkSlice> chunks, OutputStream outputStream) {
+        try {
+            chunkPrefetcher.stream(chunks, this::downloadFileByte, outputStream);
+        } catch (ChunkFetchException e) {
+            log.error("文件下载终止：{}", e.getMessage(), e.getCause());
+        } catch (IOException e) {
+            handleClientAbortException(e);
+        }
+    }
 
-            for (int i = 0; i < partFileIds.size(); i++) {
-                try (InputStream pis = pipedInputStreams.get(i)) {
-                    byte[] buffer = new byte[8192];
-                    int bytesRead;
-                    while ((bytesRead = pis.read(buffer)) != -1) {
-                        outputStream.write(buffer, 0, bytesRead);
-                        outputStream.flush();
-                    }
-                } catch (IOException e) {
-                    handleClientAbortException(e);
-                }
+    /**
+     * 复制指定长度的数据
+     * @param in 输入流
+     * @param out 输出流
+     * @param length 复制的字节数
+     * @throws IOException 输入流提前结束
+     */
+    private void copy(InputStream in, OutputStream out, long length) throws IOException {
+        byte[] buffer = new byte[8192];
+        long remaining = length;
+        while (remaining > 0) {
+            int bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (bytesRead == -1) {
+                throw new EOFException("文件流提前结束，还剩 " + remaining + " 字节");
             }
-
-            latch.await();
-        } catch (Exception e) {
-            log.error("文件下载终止：{}", e.getMessage(), e);
-        } finally {
-            executorService.shutdown();
+            out.write(buffer, 0, bytesRead);
+            remaining -= bytesRead;
         }
     }
 
@@ -261,28 +422,111 @@ public class DownloadServiceImpl implements DownloadService {
     }
 
     /**
-     * 处理文件名
+     * 获取文件名和MIME类型
+     * 类型在上传时已检测并保存；旧数据还没有回填时根据文件头检测一次并保存，没有文件头时根据文件名判断。
+     * 文件名没有扩展名时按类型补上扩展名
      * @param fileID
-     * @param defaultName
-     * @return
+     * @param stored 数据库中的文件信息，可以为null
+     * @param defaultName 数据库中没有记录时使用的文件名
+     * @param headStream 支持mark的文件流，可以为null
+     * @return 文件名、MIME类型和缓存验证信息
+     */
+    private FileInfo resolveDownloadInfo(String fileID, FileInfo stored, String defaultName, InputStream headStream) {
+        String filename = stored != null ? stored.getFileName() : defaultName;
+        String contentType = stored != null ? stored.getContentType() : null;
+        if (contentType == null && headStream != null) {
+            contentType = contentTypeDetector.detect(headStream, filename);
+            if (stored != null) {
+                String detected = contentType;
+                writeQueue.run(() -> fileMapper.updateContentType(fileID, detected));
+            }
+        }
+        FileInfo info = describe(filename, contentType);
+        info.setFileId(fileID);
+        if (stored != null) {
+            info.setUploadTime(stored.getUploadTime());
+            info.setPublic(stored.isPublic());
+        }
+        return info;
+    }
+
+    /**
+     * 补全MIME类型和扩展名
+     * @param filename 文件名
+     * @param contentType 保存的MIME类型，为null时根据文件名判断
+     * @return 文件名和MIME类型
+     */
+    private FileInfo describe(String filename, String contentType) {
+        if (contentType == null) {
+            contentType = contentTypeDetector.detectByName(filename);
+        }
+
+        if (filename.lastIndexOf('.') == -1) {
+            String extension = contentTypeDetector.extensionOf(contentType);
+            if (!extension.isEmpty()) {
+                filename = filename + extension;
+            } else {
+                log.error("未添加扩展名，扩展名检测失败");
+            }
+        }
+        return FileInfo.builder().fileName(filename).contentType(contentType).build();
+    }
+
+    /**
+     * 尝试把文件当作旧版记录文件解析
+     * 记录文件只有几KB，超过上限的文件直接跳过，不会读入内存；读取后reset，流可以继续使用
+     * @param size 文件大小
+     * @param inputStream 支持mark的文件流
+     * @return 记录文件内容，不是记录文件时返回null
      */
-    private String resolveFilename(String fileID, String defaultName) {
-        String filename = fileMapper.getFileNameByFileId(fileID);
-        if (filename == null) {
-            filename = defaultName;
+    private BigFileInfo tryReadRecordFile(long size, InputStream inputStream) throws IOException {
+        if (size > RECORD_FILE_MAX_SIZE) {
+            return null;
         }
+        inputStream.mark(RECORD_FILE_MAX_SIZE + 1);
+        byte[] content = inputStream.readNBytes(RECORD_FILE_MAX_SIZE + 1);
+        inputStream.reset();
 
-        return filename;
+        BigFileInfo record = parseBigFileInfo(content);
+        return record != null && record.isRecordFile() && record.getFileIds() != null ? record : null;
+    }
+
+    /**
+     * 把旧版记录文件转换为数据库中的分块清单，之后下载不再需要读取记录文件
+     * 旧版记录文件的分块都是固定大小，只有最后一块可能较小
+     * @param fileID 记录文件ID
+     * @param record 记录文件内容
+     * @return 分块清单
+     */
+    private List<FileChunk> migrateRecordFile(String fileID, BigFileInfo record) {
+        List<String> fileIds = record.getFileIds();
+        List<String> botIds = record.getBotIds();
+        List<FileChunk> chunks = new ArrayList<>(fileIds.size());
+        for (int i = 0; i < fileIds.size(); i++) {
+            long offset = (long) i * ChunkBufferPool.CHUNK_SIZE;
+            long length = i == fileIds.size() - 1 ? record.getFileSize() - offset : ChunkBufferPool.CHUNK_SIZE;
+            chunks.add(FileChunk.builder()
+                    .fileId(fileID)
+                    .chunkIndex(i)
+                    .chunkFileId(fileIds.get(i))
+                    .botId(botIds == null ? null : botIds.get(i))
+                    .chunkOffset(offset)
+                    .chunkLength(length)
+                    .build());
+        }
+        writeQueue.run(() -> fileChunkMapper.insertChunks(chunks));
+        log.info("记录文件 {} 已转换为分块清单，共 {} 个分块", fileID, chunks.size());
+        return chunks;
     }
 
     /**
      * 尝试转换为大文件的记录文件
-     * @param inputStream 下载的文件的输入流
+     * @param content 文件内容
      * @return BigFilInfo
      */
-    private BigFileInfo parseBigFileInfo(InputStream inputStream) {
+    private BigFileInfo parseBigFileInfo(byte[] content) {
         try {
-            String fileContent = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            String fileContent = new String(content, StandardCharsets.UTF_8);
             return JSON.parseObject(fileContent, BigFileInfo.class);
         } catch (Exception e) {
             log.info("文件不是 BigFileInfo类型，作为普通文件处理");
@@ -291,24 +535,29 @@ public class DownloadServiceImpl implements DownloadService {
     }
 
     /**
-     * 下载文件并转换为流处理
-     * @param fileID
-     * @return
+     * 打开Telegram文件流
+     * 指定范围时向Telegram发送Range请求；服务器不支持Range返回200时在本地跳过前面的字节。
+     * 返回404说明缓存的file_path已失效，重新获取文件信息后重试一次
+     * @param fileId Telegram文件ID
+     * @param file Telegram文件信息
+     * @param botId 获取该文件信息的bot
+     * @param offset 起始位置
+     * @param length 读取长度，-1表示读到文件末尾
+     * @return 定位到offset的文件流，调用方负责只读取length字节
      * @throws IOException
      */
-    private InputStream downloadFileInputStream(String fileID) throws IOException {
-        File file = telegramBotService.getFile(fileID);
-        String fileUrl = telegramBotService.getFullFilePath(file);
-
-        Request request = new Request.Builder()
-                .url(fileUrl)
-                .get()
-                .build();
-
-        Response response = okHttpClient.newCall(request).execute();
+    private InputStream openFileStream(String fileId, String botId, File file, long offset, long length) throws IOException {
+        Response response = requestFile(file, botId, offset, length);
+        if (response.code() == HttpStatus.NOT_FOUND.value()) {
+            response.close();
+            log.info("文件路径已失效，重新获取文件信息：{}", fileId);
+            telegramBotService.invalidateFile(fileId, botId);
+            response = requestFile(telegramBotService.getFile(fileId, botId), botId, offset, length);
+        }
 
         if (!response.isSuccessful()) {
             log.error("无法下载文件，响应码：" + response.code());
+            response.close();
             throw new IOException("无法下载文件，响应码：" + response.code());
         }
 
@@ -318,20 +567,45 @@ public class DownloadServiceImpl implements DownloadService {
             throw new IOException("响应体为空");
         }
 
-        return responseBody.byteStream();
+        InputStream inputStream = responseBody.byteStream();
+        if (offset > 0 && response.code() != HttpStatus.PARTIAL_CONTENT.value()) {
+            inputStream.skipNBytes(offset);
+        }
+        return inputStream;
+    }
+
+    /**
+     * 向Telegram请求文件内容
+     * @param file Telegram文件信息
+     * @param botId 获取该文件信息的bot
+     * @param offset 起始位置
+     * @param length 读取长度，-1表示读到文件末尾
+     * @return 响应
+     * @throws IOException
+     */
+    private Response requestFile(File file, String botId, long offset, long length) throws IOException {
+        String fileUrl = telegramBotService.getFullFilePath(file, botId);
+
+        Request.Builder builder = new Request.Builder()
+                .url(fileUrl)
+                .get();
+        if (offset > 0 || length >= 0) {
+            builder.header(HttpHeaders.RANGE, "bytes=" + offset + "-" + (length >= 0 ? String.valueOf(offset + length - 1) : ""));
+        }
+        return telegramTransport.getClient().newCall(builder.build()).execute();
     }
 
     /**
      * 设置响应头
      *
      * @param filename
+     * @param contentType MIME类型
      * @param size
      * @return
      */
-    private HttpHeaders setHeaders(String filename, Long size) {
+    private HttpHeaders setHeaders(String filename, String contentType, Long size) {
         HttpHeaders headers = new HttpHeaders();
         try {
-            String contentType = getContentTypeFromFilename(filename);
             headers.setContentType(MediaType.parseMediaType(contentType));
             if (size != null && size > 0) {
                 headers.setContentLength(size);
@@ -353,78 +627,25 @@ public class DownloadServiceImpl implements DownloadService {
     }
 
     /**
-     * 下载分片文件
+     * 下载分片文件，只请求分块中需要的部分
+     * 已缓存的分块从本地读取；读取整个分块时边发送边写入缓存，只读取一部分时不缓存
      *
-     * @param partFileId
-     * @return
+     * @param slice 分块片段
+     * @return 定位到片段起始位置的输入流
      * @throws IOException
      */
-    private ResponseBody downloadFileByte(String partFileId) throws IOException {
-        File partFile = telegramBotService.getFile(partFileId);
-        String partFileUrl = telegramBotService.getFullFilePath(partFile);
-        Request partRequest = new Request.Builder()
-                .url(partFileUrl)
-                .get()
-                .build();
-
-        Response response = okHttpClient.newCall(partRequest).execute();
-        if (!response.isSuccessful()) {
-            log.error("无法下载分片文件，响应码：" + response.code());
-            throw new IOException("无法下载分片文件，响应码：" + response.code());
-        }
-
-        ResponseBody responseBody = response.body();
-        if (responseBody == null) {
-            log.error("分片响应体为空");
-            throw new IOException("分片响应体为空");
-        }
-
-        return responseBody;
-    }
-
-    /**
-     * 获取文件类型
-     *
-     * @param filename
-     * @return
-     */
-    private String getContentTypeFromFilename(String filename) {
-        String contentType = null;
-        Path path = Paths.get(filename);
-        try {
-            contentType = Files.probeContentType(path);
-        } catch (IOException e) {
-            log.warn("无法通过 Files.probeContentType 获取 MIME 类型: " + e.getMessage());
+    private InputStream downloadFileByte(ChunkSlice slice) throws IOException {
+        FileChunk chunk = slice.getChunk();
+        CachedFile cached = chunkDiskCache.open(chunk.getChunkFileId());
+        if (cached != null) {
+            return cached.newInputStream(slice.getOffsetInChunk());
         }
 
-        if (contentType == null) {
-            // 手动映射常见的文件扩展名到 MIME 类型
-            String extension = getFileExtension(filename).toLowerCase();
-            contentType = switch (extension) {
-                case "gif" -> "image/gif";
-                case "jpg", "jpeg" -> "image/jpeg";
-                case "png" -> "image/png";
-                case "bmp" -> "image/bmp";
-                case "txt" -> "text/plain";
-                case "pdf" -> "application/pdf";
-                case "mp4" -> "video/mp4";
-                // 添加其他需要的类型
-                default -> "application/octet-stream";
-            };
-        }
-        return contentType;
-    }
-
-    /**
-     * 获取文件扩展名
-     *
-     * @param filename
-     * @return
-     */
-    private String getFileExtension(String filename) {
-        if (filename == null || !filename.contains(".")) {
-            return "";
+        File partFile = telegramBotService.getFile(chunk.getChunkFileId(), chunk.getBotId());
+        if (slice.isWholeChunk()) {
+            InputStream inputStream = openFileStream(chunk.getChunkFileId(), chunk.getBotId(), partFile, 0, -1);
+            return chunkDiskCache.fill(chunk.getChunkFileId(), inputStream, chunk.getChunkLength());
         }
-        return filename.substring(filename.lastIndexOf('.') + 1);
+        return openFileStream(chunk.getChunkFileId(), chunk.getBotId(), partFile, slice.getOffsetInChunk(), slice.getLength());
     }
-}
\ No newline at end of file
+}
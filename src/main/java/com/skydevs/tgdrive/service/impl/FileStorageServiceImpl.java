@@ -4,19 +4,34 @@ import cn.hutool.crypto.digest.DigestUtil;
 import com.alibaba.fastjson.JSON;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
-import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.Message;
 import com.pengrad.telegrambot.request.SendDocument;
 import com.pengrad.telegrambot.response.SendResponse;
+import com.skydevs.tgdrive.datasource.WriteQueue;
+import com.skydevs.tgdrive.dto.FileListCursor;
+import com.skydevs.tgdrive.dto.FileSearch;
 import com.skydevs.tgdrive.dto.UploadFile;
 import com.skydevs.tgdrive.entity.BigFileInfo;
+import com.skydevs.tgdrive.entity.ChunkLocation;
+import com.skydevs.tgdrive.entity.FileChunk;
 import com.skydevs.tgdrive.entity.FileInfo;
+import com.skydevs.tgdrive.entity.StoredFile;
 import com.skydevs.tgdrive.exception.user.InsufficientPermissionException;
+import com.skydevs.tgdrive.exception.file.UploadFailedException;
 import com.skydevs.tgdrive.exception.file.UploadFileIsNullException;
+import com.skydevs.tgdrive.mapper.FileChunkMapper;
 import com.skydevs.tgdrive.mapper.FileMapper;
+import com.skydevs.tgdrive.result.CursorPageResult;
 import com.skydevs.tgdrive.result.PageResult;
 import com.skydevs.tgdrive.service.FileStorageService;
+import com.skydevs.tgdrive.service.FileTreeService;
 import com.skydevs.tgdrive.service.TelegramBotService;
+import com.skydevs.tgdrive.telegram.BotEndpoint;
+import com.skydevs.tgdrive.telegram.RequestPriority;
+import com.skydevs.tgdrive.upload.ChunkBuffer;
+import com.skydevs.tgdrive.upload.ChunkBufferPool;
+import com.skydevs.tgdrive.upload.ContentTypeDetector;
+import com.skydevs.tgdrive.upload.UploadAdmissionController;
 import com.skydevs.tgdrive.utils.StringUtil;
 import com.skydevs.tgdrive.utils.UserFriendly;
 import com.skydevs.tgdrive.websocket.UploadProgressWebSocketHandler;
@@ -24,25 +39,29 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -54,6 +73,9 @@ public class FileStorageServiceImpl implements FileStorageService {
     @Autowired
     private FileMapper fileMapper;
 
+    @Autowired
+    private FileChunkMapper fileChunkMapper;
+
     @Autowired
     private TelegramBotService telegramBotService;
 
@@ -62,11 +84,36 @@ public class FileStorageServiceImpl implements FileStorageService {
 
     @Autowired
     @Qualifier("uploadTaskExecutor")
-    private ThreadPoolTaskExecutor uploadTaskExecutor;
+    private AsyncTaskExecutor uploadTaskExecutor;
+
+    @Autowired
+    private ChunkBufferPool chunkBufferPool;
+
+    @Autowired
+    private UploadAdmissionController uploadAdmissionController;
+
+    @Autowired
+    private ContentTypeDetector contentTypeDetector;
+
+    @Autowired
+    private WriteQueue writeQueue;
+
+    @Autowired
+    private FileTreeService fileTreeService;
+
+    // 游标分页时文件总数的缓存时间
+    @Value("${app.file-list.count-cache-ttl:30s}")
+    private Duration fileCountTtl;
+
+    private static final int MAX_CACHED_COUNTS = 1000;
+    private final Map<String, CachedCount> fileCounts = new ConcurrentHashMap<>();
+
+    private record CachedCount(long count, long expiresAt) {
+    }
 
     // tg bot接口限制20MB，传10MB是最佳实践
-    private final int MAX_FILE_SIZE = 10 * 1024 * 1024;
-    // 控制同时运行的任务数量
+    private final int MAX_FILE_SIZE = ChunkBufferPool.CHUNK_SIZE;
+    // 控制每个bot同时运行的任务数量
     private final int PERMITS = 5;
 
     @Override
@@ -81,7 +128,8 @@ public class FileStorageServiceImpl implements FileStorageService {
                 long size = multipartFile.getSize();
 
                 // 使用FileStorageService上传文件
-                String fileID = uploadFile(inputStream, filename, size);
+                StoredFile storedFile = uploadFile(inputStream, filename, size);
+                String fileID = storedFile.getFileId();
                 
                 // 无论大小，上传流程成功后发送完成消息
                 uploadProgressWebSocketHandler.sendUploadComplete(filename);
@@ -97,8 +145,9 @@ public class FileStorageServiceImpl implements FileStorageService {
                         .downloadUrl(downloadUrl)
                         .fileName(filename)
                         .userId(userId)
+                        .contentType(storedFile.getContentType())
                         .build();
-                fileMapper.insertFile(fileInfo);
+                writeQueue.run(() -> fileMapper.insertFile(fileInfo));
             } catch (IOException e) {
                 log.error("文件上传失败，响应信息：{}", e.getMessage());
                 throw new RuntimeException("文件上传失败");
@@ -112,18 +161,23 @@ public class FileStorageServiceImpl implements FileStorageService {
         return uploadFile;
     }
 
-    public String uploadFile(InputStream inputStream, String filename, long size) {
-        if (size > MAX_FILE_SIZE) {
-            return uploadLargeFile(inputStream, filename, size);
-        } else {
-            return uploadSmallFile(inputStream, filename);
+    public StoredFile uploadFile(InputStream inputStream, String filename, long size) {
+        // 全局准入控制，超出并发上限时排队，队列已满则直接拒绝
+        try (UploadAdmissionController.Ticket ignored = uploadAdmissionController.admit()) {
+            // 在第一个分块的文件头上检测类型，下载时不再检测
+            BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, ContentTypeDetector.HEAD_SIZE);
+            String contentType = contentTypeDetector.detect(bufferedInputStream, filename);
+            String fileId = size > MAX_FILE_SIZE
+                    ? uploadLargeFile(bufferedInputStream, filename, size)
+                    : uploadSmallFile(bufferedInputStream, filename, size);
+            return new StoredFile(fileId, contentType);
         }
     }
 
     private String uploadLargeFile(InputStream inputStream, String filename, long size) {
         try {
-            List<String> fileIds = sendFileStreamInChunks(inputStream, filename);
-            return createRecordFile(filename, size, fileIds);
+            List<ChunkLocation> chunks = sendFileStreamInChunks(inputStream, filename, size);
+            return uploadRecordFile(filename, size, chunks);
         } catch (Exception e) {
             log.error("大文件上传失败: {}", e.getMessage(), e);
             throw new RuntimeException("大文件上传失败", e);
@@ -133,18 +187,12 @@ public class FileStorageServiceImpl implements FileStorageService {
     /**
      * 上传小文件
      */
-    private String uploadSmallFile(InputStream inputStream, String filename) {
+    private String uploadSmallFile(InputStream inputStream, String filename, long size) {
         try {
             // 发送单文件上传进度
             uploadProgressWebSocketHandler.sendUploadProgress(filename, 0, 0, 1);
 
-            // 小于10MB的GIF会被TG转换为MP4，对文件后缀进行处理
-            String uploadFilename = filename;
-            if (filename != null && filename.endsWith(".gif")) {
-                uploadFilename = filename.substring(0, filename.lastIndexOf(".gif"));
-            }
-
-            Message message = sendDocument(inputStream, uploadFilename);
+            Message message = sendDocument(telegramBotService.getPrimaryBot(), inputStream, getSmallFileUploadName(filename), size);
             String fileID = StringUtil.extractFileId(message);
             Integer messageID=message.messageId();
 
@@ -161,108 +209,211 @@ public class FileStorageServiceImpl implements FileStorageService {
         }
     }
 
+    @Override
+    public ChunkLocation uploadPart(InputStream inputStream, String filename, int partIndex, int totalParts, long size) {
+        try (UploadAdmissionController.Ticket ignored = uploadAdmissionController.admit()) {
+            // 只有一个分块时该分块就是文件本身，下载时用主bot获取，因此必须由主bot上传
+            BotEndpoint endpoint = totalParts == 1 ? telegramBotService.getPrimaryBot() : telegramBotService.nextUploadBot();
+            String partName = totalParts == 1 ? getSmallFileUploadName(filename) : filename + "_part" + partIndex;
+            Message message = sendDocument(endpoint, inputStream, partName, size);
+            String fileID = StringUtil.extractFileId(message);
+            if (fileID == null) {
+                throw new UploadFailedException("分块 " + partName + " 上传失败：无法获取文件ID");
+            }
+            log.info("分块上传成功，File ID：{}， 文件名：{}，bot：{}", fileID, partName, endpoint.getBotId());
+            return new ChunkLocation(fileID, endpoint.getBotId(), size);
+        }
+    }
+
+    @Override
+    public String createRecordFile(String filename, long size, List<ChunkLocation> chunks) {
+        try {
+            return uploadRecordFile(filename, size, chunks);
+        } catch (IOException e) {
+            log.error("记录文件生成失败: {}", e.getMessage(), e);
+            throw new UploadFailedException("记录文件生成失败");
+        }
+    }
+
+    @Override
+    public int getChunkSize() {
+        return MAX_FILE_SIZE;
+    }
+
     /**
-     * 分块上传文件
+     * 小于10MB的GIF会被TG转换为MP4，对文件后缀进行处理
+     * @param filename 原始文件名
+     * @return 上传时使用的文件名
      */
-    private List<String> sendFileStreamInChunks(InputStream inputStream, String filename) {
-        List<CompletableFuture<String>> futures = new ArrayList<>();
-        Semaphore semaphore = new Semaphore(PERMITS);
+    private String getSmallFileUploadName(String filename) {
+        if (filename != null && filename.endsWith(".gif")) {
+            return filename.substring(0, filename.lastIndexOf(".gif"));
+        }
+        return filename;
+    }
 
-        final AtomicInteger totalChunks = new AtomicInteger(0);
+    /**
+     * 分块上传文件
+     * 读取与上传流水线进行：读取下一个分块前先获取许可，同时在途的分块数不超过 PERMITS * bot数量，
+     * 所有上传在途的分块任务总数由 {@link UploadAdmissionController} 限制在上传线程池的容量内，
+     * 内存占用只与并发数有关，与文件大小无关，第一个分块读取完成后立即开始上传。
+     * 启用bot池时分块轮流分配给各个bot，每个bot有独立的限流额度
+     */
+    private List<ChunkLocation> sendFileStreamInChunks(InputStream inputStream, String filename, long size) {
+        List<CompletableFuture<ChunkLocation>> futures = new ArrayList<>();
+        Semaphore semaphore = new Semaphore(PERMITS * telegramBotService.getUploadBotCount());
+        AtomicBoolean failed = new AtomicBoolean(false);
+
+        // 分块总数根据文件大小预估，仅用于进度展示
+        final int estimatedChunks = (int) Math.max(1, (size + MAX_FILE_SIZE - 1) / MAX_FILE_SIZE);
+        final AtomicInteger totalChunks = new AtomicInteger(estimatedChunks);
         final AtomicInteger completedChunks = new AtomicInteger(0);
+        log.info("文件 {} 预计被分为 {} 个分块上传", filename, estimatedChunks);
 
         try (BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream)) {
-            byte[] buffer = new byte[MAX_FILE_SIZE];
             int partIndex = 0;
-            List<byte[]> allChunks = new ArrayList<>();
-
-            // 第一遍：读取所有分块数据
-            while (true) {
-                int offset = 0;
-                while(offset < MAX_FILE_SIZE) {
-                    int byteRead = bufferedInputStream.read(buffer, offset, MAX_FILE_SIZE - offset);
-                    if (byteRead == -1) {
-                        break;
-                    }
-                    offset += byteRead;
+            while (!failed.get()) {
+                // 先获取许可再读取，保证已读取但未上传完成的分块数不超过 PERMITS
+                semaphore.acquire();
+                try {
+                    uploadAdmissionController.acquireChunkTask();
+                } catch (InterruptedException e) {
+                    semaphore.release();
+                    throw e;
                 }
-
-                if (offset == 0) {
+                Runnable releasePermits = () -> {
+                    uploadAdmissionController.releaseChunkTask();
+                    semaphore.release();
+                };
+                if (failed.get()) {
+                    // 等待期间已有分块失败，不再读取
+                    releasePermits.run();
+                    break;
+                }
+                ChunkBuffer chunk;
+                try {
+                    chunk = readChunk(bufferedInputStream);
+                } catch (IOException | InterruptedException | RuntimeException e) {
+                    releasePermits.run();
+                    throw e;
+                }
+                if (chunk == null) {
+                    releasePermits.run();
                     break;
                 }
 
-                byte[] chunkData = Arrays.copyOf(buffer, offset);
-                allChunks.add(chunkData);
-                partIndex++;
-            }
-
-            totalChunks.set(allChunks.size());
-            log.info("文件 {} 将被分为 {} 个分块上传", filename, totalChunks.get());
-
-            // 第二遍：提交所有上传任务
-            for (int i = 0; i < allChunks.size(); i++) {
-                final int chunkIndex = i;
-                final byte[] chunkData = allChunks.get(i);
+                final int chunkIndex = partIndex++;
                 final String partName = filename + "_part" + chunkIndex;
+                final BotEndpoint endpoint = telegramBotService.nextUploadBot();
+                if (partIndex > totalChunks.get()) {
+                    totalChunks.set(partIndex);
+                }
 
-                semaphore.acquire();
-
-                CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
-                    try {
-                        Message message = sendDocument(chunkData, partName);
-                        String fileID = StringUtil.extractFileId(message);
-
-                        if (fileID != null) {
-                            log.info("分块上传成功，File ID：{}， 文件名：{}", fileID, partName);
-
-                            // 更新进度
-                            int completed = completedChunks.incrementAndGet();
-                            double percentage = (double) completed / totalChunks.get() * 100;
-                            uploadProgressWebSocketHandler.sendUploadProgress(filename, percentage, completed, totalChunks.get());
-
-                            return fileID;
-                        } else {
-                            throw new RuntimeException("分块 " + partName + " 上传失败：无法获取文件ID");
+                CompletableFuture<ChunkLocation> future;
+                try {
+                    // 任务开始执行后才会关闭分块归还缓冲区，因此提交后的任务不能cancel，
+                    // 排队中的任务看到failed后直接归还缓冲区并结束
+                    future = CompletableFuture.supplyAsync(() -> {
+                        try (chunk) {
+                            if (failed.get()) {
+                                throw new CancellationException("分块 " + partName + " 已取消：其他分块上传失败");
+                            }
+                            Message message = sendDocument(endpoint, chunk.toBytes(), partName);
+                            String fileID = StringUtil.extractFileId(message);
+
+                            if (fileID != null) {
+                                log.info("分块上传成功，File ID：{}， 文件名：{}，bot：{}", fileID, partName, endpoint.getBotId());
+
+                                // 更新进度
+                                int completed = completedChunks.incrementAndGet();
+                                double percentage = (double) completed / totalChunks.get() * 100;
+                                uploadProgressWebSocketHandler.sendUploadProgress(filename, percentage, completed, totalChunks.get());
+
+                                return new ChunkLocation(fileID, endpoint.getBotId(), chunk.length());
+                            } else {
+                                throw new RuntimeException("分块 " + partName + " 上传失败：无法获取文件ID");
+                            }
+                        } catch (CancellationException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            failed.set(true);
+                            uploadProgressWebSocketHandler.sendUploadError(filename, "分块 " + partName + " 上传失败");
+                            throw new RuntimeException("分块 " + partName + " 上传失败", e);
+                        } finally {
+                            releasePermits.run();
                         }
-                    } catch (Exception e) {
-                        uploadProgressWebSocketHandler.sendUploadError(filename, "分块 " + partName + " 上传失败");
-                        throw new RuntimeException("分块 " + partName + " 上传失败", e);
-                    } finally {
-                        semaphore.release();
-                    }
-                }, uploadTaskExecutor);
+                    }, uploadTaskExecutor);
+                } catch (RuntimeException e) {
+                    chunk.close();
+                    releasePermits.run();
+                    throw e;
+                }
                 futures.add(future);
             }
 
+            // 读取阶段结束，实际分块数以读取结果为准
+            totalChunks.set(futures.size());
+            log.info("文件 {} 读取完成，共 {} 个分块", filename, futures.size());
+
             // 等待所有任务完成并按顺序获取结果
-            List<String> fileIds = new ArrayList<>();
+            List<ChunkLocation> chunks = new ArrayList<>();
             try {
-                for (CompletableFuture<String> future : futures) {
-                    fileIds.add(future.join());
+                for (CompletableFuture<ChunkLocation> future : futures) {
+                    chunks.add(future.join());
                 }
-                return fileIds;
+                return chunks;
             } catch (CompletionException e) {
                 uploadProgressWebSocketHandler.sendUploadError(filename, "分块上传失败: " + e.getCause().getMessage());
-                for (CompletableFuture<String> future : futures) {
-                    future.cancel(true);
-                }
                 throw new RuntimeException("分块上传失败: " + e.getCause().getMessage(), e);
             }
         } catch (IOException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // 已提交的分块看到failed后自行结束并归还缓冲区
+            failed.set(true);
             log.error("文件流读取失败或上传失败：{}", e.getMessage());
             uploadProgressWebSocketHandler.sendUploadError(filename, "文件流读取失败或上传失败: " + e.getMessage());
             throw new RuntimeException("文件流读取失败或上传失败", e);
         }
     }
 
+    /**
+     * 从输入流中读取一个分块，缓冲区从共享缓冲池中借出
+     * @param inputStream 输入流
+     * @return 分块缓冲区，流已读完时返回null
+     */
+    private ChunkBuffer readChunk(InputStream inputStream) throws IOException, InterruptedException {
+        ChunkBuffer chunk = chunkBufferPool.acquire(MAX_FILE_SIZE);
+        try {
+            if (chunk.readFrom(inputStream) == 0) {
+                chunk.close();
+                return null;
+            }
+            return chunk;
+        } catch (IOException | RuntimeException e) {
+            chunk.close();
+            throw e;
+        }
+    }
+
     /**
      * 创建记录文件
+     * 分块清单写入file_chunks表，下载时直接从数据库读取；记录文件仍上传到Telegram作为数据库丢失时的备份
      */
-    private String createRecordFile(String originalFileName, long fileSize, List<String> fileIds) throws IOException {
+    private String uploadRecordFile(String originalFileName, long fileSize, List<ChunkLocation> chunks) throws IOException {
+        List<String> fileIds = new ArrayList<>(chunks.size());
+        List<String> botIds = new ArrayList<>(chunks.size());
+        for (ChunkLocation chunk : chunks) {
+            fileIds.add(chunk.getFileId());
+            botIds.add(chunk.getBotId());
+        }
+
         BigFileInfo record = new BigFileInfo();
         record.setFileName(originalFileName);
         record.setFileSize(fileSize);
         record.setFileIds(fileIds);
+        record.setBotIds(botIds);
         record.setRecordFile(true);
 
         // 创建一个系统临时文件
@@ -289,9 +440,33 @@ public class FileStorageServiceImpl implements FileStorageService {
         // 删除本地临时文件
         Files.deleteIfExists(tempFile);
 
+        saveChunkManifest(recordFileId, chunks);
         return recordFileId;
     }
 
+    /**
+     * 保存分块清单
+     * @param fileId 文件ID（记录文件ID）
+     * @param chunks 按顺序排列的分块
+     */
+    private void saveChunkManifest(String fileId, List<ChunkLocation> chunks) {
+        List<FileChunk> manifest = new ArrayList<>(chunks.size());
+        long offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            ChunkLocation chunk = chunks.get(i);
+            manifest.add(FileChunk.builder()
+                    .fileId(fileId)
+                    .chunkIndex(i)
+                    .chunkFileId(chunk.getFileId())
+                    .botId(chunk.getBotId())
+                    .chunkOffset(offset)
+                    .chunkLength(chunk.getSize())
+                    .build());
+            offset += chunk.getSize();
+        }
+        writeQueue.run(() -> fileChunkMapper.insertChunks(manifest));
+    }
+
     /**
      * 获取文件分页
      * @param page 页码
@@ -338,12 +513,56 @@ public class FileStorageServiceImpl implements FileStorageService {
          */
 
         PageHelper.startPage(page, size);
-        List<FileInfo> fileInfoList = fileMapper.getFilteredFiles(keyword, userId, role);
+        List<FileInfo> fileInfoList = fileMapper.getFilteredFiles(FileSearch.of(keyword), userId, role);
         PageInfo<FileInfo> pageInfo = new PageInfo<>(fileInfoList);
         log.info("文件分页查询");
         return new PageResult((int) pageInfo.getTotal(), pageInfo.getList());
     }
 
+    /**
+     * 游标分页查询文件列表，每一页的代价与页码无关
+     * @param cursor 上一页返回的游标，第一页为空
+     * @param size 每页数量
+     * @param withTotal 是否返回总数（缓存的近似值）
+     * @return 分页结果
+     */
+    @Override
+    public CursorPageResult getFileListByCursor(String cursor, int size, String keyword, Long userId, String role, boolean withTotal) {
+        FileSearch search = FileSearch.of(keyword);
+        int limit = Math.max(1, size);
+        // 多取一条判断是否还有下一页
+        List<FileInfo> records = fileMapper.getFilteredFilesAfter(search, userId, role, FileListCursor.decode(cursor), limit + 1);
+        String nextCursor = null;
+        if (records.size() > limit) {
+            records = records.subList(0, limit);
+            FileInfo last = records.get(limit - 1);
+            nextCursor = new FileListCursor(last.getUploadTime(), last.getId()).encode();
+        }
+        long total = withTotal ? countFiles(search, keyword, userId, role) : -1;
+        return new CursorPageResult(total, records, nextCursor);
+    }
+
+    /**
+     * 符合条件的文件数，按查询条件缓存一段时间，翻页时不重复统计
+     */
+    private long countFiles(FileSearch search, String keyword, Long userId, String role) {
+        String key = role + "/" + userId + "/" + (keyword == null ? "" : keyword.trim());
+        long now = System.nanoTime();
+        CachedCount cached = fileCounts.get(key);
+        if (cached != null && cached.expiresAt() - now > 0) {
+            return cached.count();
+        }
+        long count = fileMapper.countFilteredFiles(search, userId, role);
+        if (fileCounts.size() >= MAX_CACHED_COUNTS) {
+            fileCounts.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+            if (fileCounts.size() >= MAX_CACHED_COUNTS) {
+                fileCounts.clear();
+            }
+        }
+        fileCounts.put(key, new CachedCount(count, now + fileCountTtl.toNanos()));
+        return count;
+    }
+
     /**
      * 更新文件url
      */
@@ -366,6 +585,7 @@ public class FileStorageServiceImpl implements FileStorageService {
         if ("admin".equals(role) || (file.getUserId() != null && file.getUserId().equals(userId))) {
             try {
                 fileMapper.deleteFile(fileId);
+                fileTreeService.refreshFile(fileId);
                 log.info("文件删除成功，fileId: {}", fileId);
             } catch (Exception e) {
                 log.error("文件删除失败，fileId: {}", fileId, e);
@@ -384,6 +604,7 @@ public class FileStorageServiceImpl implements FileStorageService {
         }
         if ("admin".equals(role) || (file.getUserId() != null && file.getUserId().equals(userId))) {
             fileMapper.updateIsPublic(fileId, isPublic);
+            fileTreeService.refreshFile(fileId);
         } else {
             throw new InsufficientPermissionException("无权限更新此文件");
         }
@@ -391,7 +612,7 @@ public class FileStorageServiceImpl implements FileStorageService {
 
     /**
      * Description:
-     * 调用bot上传文件
+     * 调用主bot上传文件
      * @author SkyDev
      * @date 2025-08-01 17:36:24
      * @param fileData 文件
@@ -399,22 +620,33 @@ public class FileStorageServiceImpl implements FileStorageService {
      * @return 上传文件的返回信息
      */
     private Message sendDocument(byte[] fileData, String filename) {
-        TelegramBot bot = telegramBotService.getBot();
-        String chatId = telegramBotService.getChatId();
+        return sendDocument(telegramBotService.getPrimaryBot(), fileData, filename);
+    }
+
+    /**
+     * 调用指定bot上传文件，限流和429重试由调度器处理，这里只对网络错误等其他失败做退避重试
+     * @param endpoint 上传使用的bot
+     * @param fileData 文件
+     * @param filename 文件名
+     * @return 上传文件的返回信息
+     */
+    private Message sendDocument(BotEndpoint endpoint, byte[] fileData, String filename) {
+        String chatId = endpoint.getChatId();
         int retryCount = 3;
         int baseDelay = 1000;
 
         for (int i = 0; i < retryCount; i++) {
             try {
                 SendDocument sendDocument = new SendDocument(chatId, fileData).fileName(filename);
-                SendResponse response = bot.execute(sendDocument);
+                SendResponse response = telegramBotService.execute(endpoint, sendDocument, RequestPriority.BULK);
 
                 if (response != null && response.isOk() && response.message() != null) {
                     return response.message();
                 }
 
                 int exponentialDelay = baseDelay * (int)Math.pow(2, i);
-                log.warn("发送文档失败，正在准备第{}次重试，等待{}毫秒", (i+1), exponentialDelay);
+                log.warn("发送文档失败：{}，正在准备第{}次重试，等待{}毫秒",
+                        response == null ? null : response.description(), (i+1), exponentialDelay);
                 Thread.sleep(exponentialDelay);
             } catch (Exception e) {
                 if (i == retryCount - 1) {
@@ -435,24 +667,29 @@ public class FileStorageServiceImpl implements FileStorageService {
 
     /**
      * Description:
-     * 流上传
+     * 流上传，按文件大小从共享缓冲池借出缓冲区，避免ByteArrayOutputStream扩容和toByteArray的二次拷贝
      * @author SkyDev
      * @date 2025-08-01 17:37:53
+     * @param endpoint 上传使用的bot
      * @param inputStream 文件流
      * @param filename 文件名
+     * @param size 文件大小
      * @return 上传文件的返回信息
      */
-    private Message sendDocument(InputStream inputStream, String filename) {
-        try (ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
-            byte[] data = new byte[8192];
-            int byteRead;
-            while ((byteRead = inputStream.read(data)) != -1) {
-                buffer.write(data, 0, byteRead);
+    private Message sendDocument(BotEndpoint endpoint, InputStream inputStream, String filename, long size) {
+        int capacity = (int) Math.max(1, Math.min(size, MAX_FILE_SIZE));
+        try (ChunkBuffer buffer = chunkBufferPool.acquire(capacity)) {
+            if (buffer.readFrom(inputStream) < capacity) {
+                // 客户端中途断开时不能把残缺的数据传上去
+                throw new IOException("文件流不完整，期望 " + capacity + " 字节，实际 " + buffer.length() + " 字节");
             }
-            return sendDocument(buffer.toByteArray(), filename);
+            return sendDocument(endpoint, buffer.toBytes(), filename);
         } catch (IOException e) {
             log.error("读取输入流失败: {}", e.getMessage());
             throw new RuntimeException("读取输入流失败", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待上传缓冲区被中断", e);
         }
     }
 }
@@ -0,0 +1,254 @@
+package com.skydevs.tgdrive.service.impl;
+
+import com.skydevs.tgdrive.entity.FileInfo;
+import com.skydevs.tgdrive.mapper.FileMapper;
+import com.skydevs.tgdrive.service.FileTreeService;
+import com.skydevs.tgdrive.utils.StringUtil;
+import com.skydevs.tgdrive.webdav.WebDavPathIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.util.UriUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * WebDAV目录树服务实现类
+ */
+@Service
+@Slf4j
+public class FileTreeServiceImpl implements FileTreeService {
+
+    private static final String ROOT_PATH = "/";
+
+    private final FileMapper fileMapper;
+    private final WebDavPathIndex pathIndex;
+    private final TransactionTemplate readTransaction;
+
+    public FileTreeServiceImpl(FileMapper fileMapper, WebDavPathIndex pathIndex, PlatformTransactionManager transactionManager) {
+        this.fileMapper = fileMapper;
+        this.pathIndex = pathIndex;
+        // 事务提交后在新的只读事务中读取，读到的是已提交的数据
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public Long dirIdOf(String dirPath) {
+        if (ROOT_PATH.equals(dirPath)) {
+            return ROOT_ID;
+        }
+        // 写入前的检查，查询数据库以看到当前事务中尚未提交的目录
+        return fileMapper.getDirIdByWebdavPath(dirPath.endsWith("/") ? dirPath : dirPath + "/");
+    }
+
+    @Override
+    public Long parentIdOf(String webdavPath) {
+        return dirIdOf(StringUtil.getParentPath(webdavPath));
+    }
+
+    @Override
+    public FileInfo resolve(String path) {
+        // 首先尝试原始路径
+        FileInfo file = find(path);
+        if (file != null) {
+            return file;
+        }
+
+        // 如果找不到，尝试URL解码后的路径
+        try {
+            String decodedPath = UriUtils.decode(path, "UTF-8");
+            if (!decodedPath.equals(path)) {
+                file = find(decodedPath);
+                if (file != null) {
+                    log.debug("Found file using decoded path: {} -> {}", path, decodedPath);
+                    return file;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to decode URL: {}", path);
+        }
+
+        // 如果仍然找不到，不区分大小写地查找
+        file = pathIndex.isReady() ? pathIndex.getIgnoreCase(path) : findIgnoreCase(path);
+        if (file != null) {
+            log.debug("Found file using case-insensitive match: {}", path);
+        }
+        return file;
+    }
+
+    @Override
+    public long ensureParentDirs(String webdavPath) {
+        String parentPath = StringUtil.getParentPath(webdavPath);
+        Long parentId = dirIdOf(parentPath);
+        if (parentId != null) {
+            return parentId;
+        }
+        // 从上往下补建
+        long grandParentId = ensureParentDirs(parentPath);
+        FileInfo dirInfo = FileInfo.builder().fileId("dir")
+                .fileName(StringUtil.getDisplayName(parentPath, true))
+                .downloadUrl("dir")
+                .uploadTime(LocalDateTime.now(ZoneOffset.UTC).toEpochSecond(ZoneOffset.UTC))
+                .size("0")
+                .fullSize(0L)
+                .webdavPath(parentPath)
+                .parentId(grandParentId)
+                .dir(true)
+                .userId(null) // WebDAV目录不关联用户
+                .isPublic(true) // WebDAV目录默认公开
+                .build();
+        fileMapper.insertFile(dirInfo);
+        refresh(parentPath);
+        log.info("新增文件夹路径{}", parentPath);
+        return dirInfo.getId();
+    }
+
+    @Override
+    public void forEachChild(String dirPath, Consumer<FileInfo> action) {
+        if (pathIndex.isReady()) {
+            pathIndex.forEachChild(dirPath, action);
+            return;
+        }
+        Long dirId = dirIdOf(dirPath);
+        if (dirId != null) {
+            fileMapper.getChildren(dirId, context -> action.accept(context.getResultObject()));
+        }
+    }
+
+    @Override
+    public void forEachDescendant(String dirPath, Consumer<FileInfo> action) {
+        if (pathIndex.isReady()) {
+            pathIndex.forEachDescendant(dirPath, action);
+            return;
+        }
+        fileMapper.scanSubtree(dirPath, StringUtil.getSubtreeUpperBound(dirPath), context -> {
+            FileInfo file = context.getResultObject();
+            // 范围中包含目录本身
+            if (!dirPath.equals(file.getWebdavPath())) {
+                action.accept(file);
+            }
+        });
+    }
+
+    @Override
+    public void relink(String webdavPath) {
+        fileMapper.relinkParents(webdavPath, StringUtil.getSubtreeUpperBound(webdavPath));
+    }
+
+    @Override
+    public synchronized int repair() {
+        List<FileInfo> orphans = fileMapper.getOrphans();
+        if (orphans.isEmpty()) {
+            return 0;
+        }
+        for (FileInfo orphan : orphans) {
+            ensureParentDirs(orphan.getWebdavPath());
+        }
+        int repaired = fileMapper.relinkOrphans();
+        // 修复的条目可能遍布整棵树，整体重新加载
+        refresh(ROOT_PATH);
+        return repaired;
+    }
+
+    @Override
+    public void loadIndex() {
+        if (!pathIndex.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        reload(ROOT_PATH);
+        log.info("WebDAV路径索引加载完成，共 {} 个条目，耗时 {} ms", pathIndex.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void refresh(String webdavPath) {
+        if (!pathIndex.isReady()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 事务回滚时索引保持不变
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadQuietly(webdavPath);
+                }
+            });
+        } else {
+            reloadQuietly(webdavPath);
+        }
+    }
+
+    @Override
+    public void refreshFile(String fileId) {
+        if (!pathIndex.isReady()) {
+            return;
+        }
+        for (String path : pathIndex.pathsOf(fileId)) {
+            refresh(path);
+        }
+    }
+
+    /**
+     * 查询数据库中的子树并替换索引中的子树
+     * 读取和替换在同一把锁内完成，后提交的修改不会被先读到的旧数据覆盖
+     */
+    private void reload(String webdavPath) {
+        synchronized (pathIndex) {
+            List<FileInfo> files = readTransaction.execute(status ->
+                    fileMapper.getSubtree(webdavPath, StringUtil.getSubtreeUpperBound(webdavPath)));
+            if (ROOT_PATH.equals(webdavPath)) {
+                pathIndex.load(files);
+            } else {
+                pathIndex.replaceSubtree(webdavPath, files);
+            }
+        }
+    }
+
+    /**
+     * 同步索引失败时不影响已经提交的写入，改为整体重新加载
+     */
+    private void reloadQuietly(String webdavPath) {
+        try {
+            reload(webdavPath);
+        } catch (Exception e) {
+            log.error("同步WebDAV路径索引失败: {}，重新加载整个索引", webdavPath, e);
+            try {
+                reload(ROOT_PATH);
+            } catch (Exception ex) {
+                log.error("重新加载WebDAV路径索引失败，暂时改为查询数据库", ex);
+                pathIndex.invalidate();
+            }
+        }
+    }
+
+    private FileInfo find(String path) {
+        return pathIndex.isReady() ? pathIndex.get(path) : fileMapper.getFileByWebdavPath(path);
+    }
+
+    /**
+     * 索引不可用时，在父目录的直接子项中不区分大小写地查找
+     */
+    private FileInfo findIgnoreCase(String path) {
+        try {
+            Long parentId = parentIdOf(path);
+            if (parentId == null) {
+                // 父目录的大小写也可能不同，逐级向上查找
+                FileInfo parent = resolve(StringUtil.getParentPath(path));
+                parentId = parent != null && parent.isDir() ? parent.getId() : null;
+            }
+            return parentId == null ? null : fileMapper.getChildByPathIgnoreCase(parentId, path);
+        } catch (Exception e) {
+            log.warn("Failed to perform case-insensitive search for: {}", path);
+            return null;
+        }
+    }
+}
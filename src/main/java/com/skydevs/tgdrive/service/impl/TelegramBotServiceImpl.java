@@ -4,6 +4,7 @@ import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.File;
 import com.pengrad.telegrambot.model.request.ParseMode;
 import com.pengrad.telegrambot.model.request.ReplyKeyboardRemove;
+import com.pengrad.telegrambot.request.BaseRequest;
 import com.pengrad.telegrambot.request.DeleteMessage;
 import com.pengrad.telegrambot.request.EditMessageText;
 import com.pengrad.telegrambot.request.GetFile;
@@ -16,10 +17,24 @@ import com.skydevs.tgdrive.exception.config.ConfigFileNotFoundException;
 import com.skydevs.tgdrive.exception.config.NoConfigException;
 import com.skydevs.tgdrive.service.ConfigService;
 import com.skydevs.tgdrive.service.TelegramBotService;
+import com.skydevs.tgdrive.entity.ChunkLocation;
+import com.skydevs.tgdrive.telegram.BotEndpoint;
+import com.skydevs.tgdrive.telegram.FilePathCache;
+import com.skydevs.tgdrive.telegram.RequestPriority;
+import com.skydevs.tgdrive.telegram.TelegramRequestScheduler;
+import com.skydevs.tgdrive.telegram.TelegramTransport;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Telegram Bot服务实现类
  */
@@ -28,12 +43,25 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class TelegramBotServiceImpl implements TelegramBotService {
     private final ConfigService configService;
+    private final TelegramRequestScheduler requestScheduler;
+    private final FilePathCache filePathCache;
+    private final TelegramTransport telegramTransport;
+
+    // 启用后大文件的分块轮流由所有配置中的bot上传
+    @Value("${app.telegram.bot-pool.enabled:false}")
+    private boolean botPoolEnabled;
 
     private String botToken;
     private String chatId;
     private String customUrl;
     private TelegramBot bot;
 
+    private volatile BotEndpoint primaryBot;
+    private volatile List<BotEndpoint> uploadBots = List.of();
+    private final AtomicInteger nextUploadBot = new AtomicInteger();
+    // 下载时按bot id查找bot，包括未参与上传的bot
+    private final Map<String, BotEndpoint> knownBots = new ConcurrentHashMap<>();
+
     @Override
     public TelegramBot getBot() {
         return this.bot;
@@ -44,6 +72,35 @@ public class TelegramBotServiceImpl implements TelegramBotService {
         return this.chatId;
     }
 
+    @Override
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> R execute(T request, RequestPriority priority) {
+        checkBotInitialized();
+        return execute(primaryBot, request, priority);
+    }
+
+    @Override
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> R execute(BotEndpoint endpoint, T request, RequestPriority priority) {
+        return requestScheduler.execute(endpoint.getBot(), endpoint.getBotId(), request, priority);
+    }
+
+    @Override
+    public BotEndpoint nextUploadBot() {
+        checkBotInitialized();
+        List<BotEndpoint> bots = uploadBots;
+        return bots.get(Math.floorMod(nextUploadBot.getAndIncrement(), bots.size()));
+    }
+
+    @Override
+    public int getUploadBotCount() {
+        return Math.max(1, uploadBots.size());
+    }
+
+    @Override
+    public BotEndpoint getPrimaryBot() {
+        checkBotInitialized();
+        return primaryBot;
+    }
+
     @Override
     public void initializeBot(String name) {
         ConfigForm config = configService.get(name);
@@ -54,8 +111,54 @@ public class TelegramBotServiceImpl implements TelegramBotService {
         this.botToken = config.getToken();
         this.chatId = config.getTarget();
         this.customUrl = config.getUrl();
-        this.bot = new TelegramBot(botToken);
-        log.info("Telegram Bot 初始化成功");
+        this.bot = telegramTransport.newBot(botToken);
+        this.primaryBot = new BotEndpoint(BotEndpoint.botIdOf(botToken), bot, chatId, config.getName());
+        knownBots.put(primaryBot.getBotId(), primaryBot);
+        this.uploadBots = buildUploadBots();
+        log.info("Telegram Bot 初始化成功，参与上传的bot数量：{}", uploadBots.size());
+    }
+
+    /**
+     * 构建上传用的bot池，主bot在第一位；同一个bot的多个配置只取一个
+     */
+    private List<BotEndpoint> buildUploadBots() {
+        List<BotEndpoint> bots = new ArrayList<>();
+        bots.add(primaryBot);
+        if (!botPoolEnabled) {
+            return bots;
+        }
+        for (ConfigForm form : configService.getForms()) {
+            String id = BotEndpoint.botIdOf(form.getToken());
+            if (bots.stream().anyMatch(b -> b.getBotId().equals(id))) {
+                continue;
+            }
+            BotEndpoint endpoint = new BotEndpoint(id, telegramTransport.newBot(form.getToken()), form.getTarget(), form.getName());
+            knownBots.put(id, endpoint);
+            bots.add(endpoint);
+        }
+        return List.copyOf(bots);
+    }
+
+    /**
+     * 按bot id查找bot，不在池中时从配置中查找
+     */
+    private BotEndpoint resolveBot(String botId) {
+        checkBotInitialized();
+        if (botId == null || botId.equals(primaryBot.getBotId())) {
+            return primaryBot;
+        }
+        BotEndpoint endpoint = knownBots.get(botId);
+        if (endpoint != null) {
+            return endpoint;
+        }
+        for (ConfigForm form : configService.getForms()) {
+            if (BotEndpoint.botIdOf(form.getToken()).equals(botId)) {
+                return knownBots.computeIfAbsent(botId,
+                        id -> new BotEndpoint(id, telegramTransport.newBot(form.getToken()), form.getTarget(), form.getName()));
+            }
+        }
+        log.error("找不到bot {} 的配置，无法获取其上传的文件", botId);
+        throw new BotNotSetException("找不到上传该文件的bot配置");
     }
 
     @Override
@@ -65,22 +168,69 @@ public class TelegramBotServiceImpl implements TelegramBotService {
 
     @Override
     public File getFile(String fileId) {
+        return getFile(fileId, null);
+    }
+
+    @Override
+    public File getFile(String fileId, String botId) {
+        return getFile(fileId, botId, RequestPriority.INTERACTIVE);
+    }
+
+    /**
+     * 获取文件信息，file_path有效期内直接使用缓存
+     */
+    private File getFile(String fileId, String botId, RequestPriority priority) {
         checkBotInitialized();
-        
+
+        BotEndpoint endpoint = resolveBot(botId);
+        File cached = filePathCache.get(endpoint.getBotId(), fileId);
+        if (cached != null) {
+            return cached;
+        }
+
         GetFile getFile = new GetFile(fileId);
         try {
-            GetFileResponse getFileResponse = bot.execute(getFile);
-            return getFileResponse.file();
+            GetFileResponse getFileResponse = execute(endpoint, getFile, priority);
+            File file = getFileResponse.file();
+            filePathCache.put(endpoint.getBotId(), fileId, file);
+            return file;
         } catch (NullPointerException e) {
             log.error("当前未加载配置文件！{}", e.getMessage());
             throw new NoConfigException("当前未加载配置文件！");
         }
     }
 
+    @Override
+    public void invalidateFile(String fileId, String botId) {
+        checkBotInitialized();
+        filePathCache.invalidate(resolveBot(botId).getBotId(), fileId);
+    }
+
+    /**
+     * 按顺序用低优先级预先获取文件信息，不和正在下载的请求抢占限流配额
+     */
+    @Override
+    @Async("downloadTaskExecutor")
+    public void warmUpFiles(List<ChunkLocation> files) {
+        for (ChunkLocation location : files) {
+            try {
+                getFile(location.getFileId(), location.getBotId(), RequestPriority.BULK);
+            } catch (Exception e) {
+                log.warn("预取文件信息失败，停止预取：{}", e.getMessage());
+                return;
+            }
+        }
+    }
+
     @Override
     public String getFullFilePath(File file) {
+        return getFullFilePath(file, null);
+    }
+
+    @Override
+    public String getFullFilePath(File file, String botId) {
         checkBotInitialized();
-        return bot.getFullFilePath(file);
+        return resolveBot(botId).getBot().getFullFilePath(file);
     }
 
     @Override
@@ -88,7 +238,7 @@ public class TelegramBotServiceImpl implements TelegramBotService {
         checkBotInitialized();
         
         try {
-            bot.execute(new SendMessage(chatId, message));
+            execute(new SendMessage(chatId, message), RequestPriority.INTERACTIVE);
             log.info("消息发送成功");
             return true;
         } catch (Exception e) {
@@ -114,10 +264,10 @@ public class TelegramBotServiceImpl implements TelegramBotService {
     @Override
     public void deleteFile(Integer fileId) {
         DeleteMessage deleteMessage = new DeleteMessage(chatId, fileId);
-        BaseResponse response = bot.execute(deleteMessage);
+        BaseResponse response = execute(deleteMessage, RequestPriority.BULK);
 
         if (!response.isOk()){
             log.error("删除原文件失败: {}， messageId: {}", response.description(), fileId);
         }
     }
-}
\ No newline at end of file
+}
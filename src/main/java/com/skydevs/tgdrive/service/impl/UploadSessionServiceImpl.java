@@ -0,0 +1,323 @@
+package com.skydevs.tgdrive.service.impl;
+
+import com.skydevs.tgdrive.datasource.WriteQueue;
+import com.skydevs.tgdrive.dto.UploadFile;
+import com.skydevs.tgdrive.dto.UploadSessionRequest;
+import com.skydevs.tgdrive.dto.UploadSessionStatus;
+import com.skydevs.tgdrive.entity.ChunkLocation;
+import com.skydevs.tgdrive.entity.FileInfo;
+import com.skydevs.tgdrive.entity.UploadSession;
+import com.skydevs.tgdrive.entity.UploadSessionChunk;
+import com.skydevs.tgdrive.exception.file.UploadFailedException;
+import com.skydevs.tgdrive.exception.file.UploadSessionNotFoundException;
+import com.skydevs.tgdrive.exception.user.InsufficientPermissionException;
+import com.skydevs.tgdrive.mapper.FileMapper;
+import com.skydevs.tgdrive.mapper.UploadSessionMapper;
+import com.skydevs.tgdrive.service.FileStorageService;
+import com.skydevs.tgdrive.service.UploadSessionService;
+import com.skydevs.tgdrive.upload.ContentTypeDetector;
+import com.skydevs.tgdrive.utils.StringUtil;
+import com.skydevs.tgdrive.utils.UserFriendly;
+import com.skydevs.tgdrive.websocket.UploadProgressWebSocketHandler;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    private final UploadSessionMapper uploadSessionMapper;
+    private final FileMapper fileMapper;
+    private final FileStorageService fileStorageService;
+    private final ContentTypeDetector contentTypeDetector;
+    private final UploadProgressWebSocketHandler uploadProgressWebSocketHandler;
+    private final WriteQueue writeQueue;
+    // 会话锁，同一会话的完成、取消、清理和分块记录互斥，不同会话互不影响
+    private final Map<String, Object> sessionLocks = new ConcurrentHashMap<>();
+
+    // 未完成的会话超过该时间没有活动则清理
+    @Value("${app.upload.session.expire:7d}")
+    private Duration sessionExpire;
+
+    @Override
+    public UploadSessionStatus createSession(UploadSessionRequest request, Long userId) {
+        int chunkSize = fileStorageService.getChunkSize();
+        long fileSize = request.getFileSize();
+        int totalChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+        long now = now();
+
+        UploadSession session = UploadSession.builder()
+                .id(UUID.randomUUID().toString().replace("-", ""))
+                .fileName(request.getFileName().trim())
+                .fileSize(fileSize)
+                .chunkSize(chunkSize)
+                .totalChunks(totalChunks)
+                .userId(userId)
+                .status(UploadSession.STATUS_UPLOADING)
+                .createTime(now)
+                .updateTime(now)
+                .build();
+        uploadSessionMapper.insertSession(session);
+        log.info("创建上传会话：{}，文件名：{}，共 {} 个分块", session.getId(), session.getFileName(), totalChunks);
+        return toStatus(session, missingChunks(session));
+    }
+
+    @Override
+    public void uploadChunk(String uploadId, int chunkIndex, InputStream inputStream, long size, Long userId, String role) {
+        UploadSession session = getOwnedSession(uploadId, userId, role);
+        if (!UploadSession.STATUS_UPLOADING.equals(session.getStatus())) {
+            throw new UploadFailedException("上传会话已完成，不能继续上传分块");
+        }
+        if (chunkIndex < 0 || chunkIndex >= session.getTotalChunks()) {
+            throw new UploadFailedException("分块序号超出范围：" + chunkIndex);
+        }
+        long expectedSize = expectedChunkSize(session, chunkIndex);
+        if (size != expectedSize) {
+            throw new UploadFailedException("分块 " + chunkIndex + " 大小错误，期望 " + expectedSize + " 字节，实际 " + size + " 字节");
+        }
+
+        if (chunkIndex == 0) {
+            // 在第一个分块的文件头上检测类型，完成时写入files表
+            BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, ContentTypeDetector.HEAD_SIZE);
+            String contentType = contentTypeDetector.detect(bufferedInputStream, session.getFileName());
+            writeQueue.run(() -> uploadSessionMapper.updateContentType(uploadId, contentType));
+            inputStream = bufferedInputStream;
+        }
+        ChunkLocation location = fileStorageService.uploadPart(inputStream, session.getFileName(), chunkIndex, session.getTotalChunks(), size);
+        UploadSessionChunk chunk = UploadSessionChunk.builder()
+                .sessionId(uploadId)
+                .chunkIndex(chunkIndex)
+                .fileId(location.getFileId())
+                .botId(location.getBotId())
+                .size(size)
+                .build();
+        // 上传分块期间会话可能已被取消、清理或完成，检查和写入在同一个事务中进行，不会留下孤立的分块记录
+        boolean recorded = withSessionLock(uploadId, () -> writeQueue.execute(() -> {
+            UploadSession current = uploadSessionMapper.getSession(uploadId);
+            if (current == null || !UploadSession.STATUS_UPLOADING.equals(current.getStatus())) {
+                return false;
+            }
+            uploadSessionMapper.upsertChunk(chunk);
+            uploadSessionMapper.touchSession(uploadId, now());
+            return true;
+        }));
+        if (!recorded) {
+            throw new UploadFailedException("上传会话已结束，分块 " + chunkIndex + " 未记录");
+        }
+
+        int completed = uploadSessionMapper.getUploadedChunkIndexes(uploadId).size();
+        double percentage = (double) completed / session.getTotalChunks() * 100;
+        uploadProgressWebSocketHandler.sendUploadProgress(session.getFileName(), percentage, completed, session.getTotalChunks());
+    }
+
+    @Override
+    public UploadSessionStatus getStatus(String uploadId, Long userId, String role) {
+        UploadSession session = getOwnedSession(uploadId, userId, role);
+        return toStatus(session, missingChunks(session));
+    }
+
+    @Override
+    public UploadFile complete(String uploadId, HttpServletRequest request, Long userId, String role) {
+        getOwnedSession(uploadId, userId, role);
+        // 只锁当前会话，生成记录文件期间不影响其他会话完成
+        return withSessionLock(uploadId, () -> doComplete(uploadId, request));
+    }
+
+    /**
+     * 持有会话锁执行操作
+     * @param uploadId 会话ID
+     * @param action 操作
+     * @return 操作的返回值
+     */
+    private <T> T withSessionLock(String uploadId, Supplier<T> action) {
+        Object lock = sessionLocks.computeIfAbsent(uploadId, id -> new Object());
+        try {
+            synchronized (lock) {
+                return action.get();
+            }
+        } finally {
+            sessionLocks.remove(uploadId, lock);
+        }
+    }
+
+    private UploadFile doComplete(String uploadId, HttpServletRequest request) {
+        UploadSession session = uploadSessionMapper.getSession(uploadId);
+        if (session == null) {
+            throw new UploadSessionNotFoundException();
+        }
+        if (UploadSession.STATUS_COMPLETED.equals(session.getStatus())) {
+            // 重复提交时直接返回上次的结果
+            return completedResult(session);
+        }
+
+        List<UploadSessionChunk> chunks = uploadSessionMapper.getChunks(uploadId);
+        List<Integer> missing = missingChunks(session, chunks);
+        if (!missing.isEmpty()) {
+            throw new UploadFailedException("还有 " + missing.size() + " 个分块未上传");
+        }
+
+        List<ChunkLocation> locations = new ArrayList<>(chunks.size());
+        for (UploadSessionChunk chunk : chunks) {
+            locations.add(new ChunkLocation(chunk.getFileId(), chunk.getBotId(), chunk.getSize()));
+        }
+        String fileId = locations.size() == 1
+                ? locations.get(0).getFileId()
+                : fileStorageService.createRecordFile(session.getFileName(), session.getFileSize(), locations);
+        String downloadUrl = StringUtil.getPrefix(request) + "/d/" + fileId;
+
+        FileInfo fileInfo = FileInfo.builder()
+                .fileId(fileId)
+                .size(UserFriendly.humanReadableFileSize(session.getFileSize()))
+                .fullSize(session.getFileSize())
+                .uploadTime(now())
+                .downloadUrl(downloadUrl)
+                .fileName(session.getFileName())
+                .userId(session.getUserId())
+                .contentType(session.getContentType())
+                .build();
+
+        session.setStatus(UploadSession.STATUS_COMPLETED);
+        session.setFileId(fileId);
+        session.setDownloadUrl(downloadUrl);
+        session.setUpdateTime(now());
+        // 文件记录和会话状态在同一个事务中提交；会话已被其他请求完成或已取消时不再插入文件记录
+        boolean completed = writeQueue.execute(() -> {
+            if (uploadSessionMapper.completeSession(session) == 0) {
+                return false;
+            }
+            fileMapper.insertFile(fileInfo);
+            uploadSessionMapper.deleteChunks(uploadId);
+            return true;
+        });
+        if (!completed) {
+            UploadSession current = uploadSessionMapper.getSession(uploadId);
+            if (current == null) {
+                throw new UploadSessionNotFoundException();
+            }
+            log.warn("上传会话 {} 已由其他请求完成，丢弃本次生成的 File ID：{}", uploadId, fileId);
+            return completedResult(current);
+        }
+        uploadProgressWebSocketHandler.sendUploadComplete(session.getFileName());
+        log.info("上传会话 {} 完成，File ID：{}", uploadId, fileId);
+
+        return UploadFile.builder().fileName(session.getFileName()).downloadLink(downloadUrl).build();
+    }
+
+    private UploadFile completedResult(UploadSession session) {
+        return UploadFile.builder().fileName(session.getFileName()).downloadLink(session.getDownloadUrl()).build();
+    }
+
+    @Override
+    public void abort(String uploadId, Long userId, String role) {
+        getOwnedSession(uploadId, userId, role);
+        // 会话和分块记录在同一个事务中删除
+        withSessionLock(uploadId, () -> writeQueue.execute(() -> {
+            uploadSessionMapper.deleteChunks(uploadId);
+            uploadSessionMapper.deleteSession(uploadId);
+            return null;
+        }));
+        log.info("上传会话 {} 已取消", uploadId);
+    }
+
+    /**
+     * 每天凌晨3点清理长时间没有活动的未完成会话
+     */
+    @Scheduled(cron = "0 0 3 * * ?")
+    public void cleanExpiredSessions() {
+        long before = now() - sessionExpire.toSeconds();
+        List<String> expired = uploadSessionMapper.getExpiredSessionIds(before);
+        int removed = 0;
+        for (String id : expired) {
+            boolean deleted = withSessionLock(id, () -> writeQueue.execute(() -> {
+                // 查询之后刚有分块上传的会话不再清理
+                UploadSession current = uploadSessionMapper.getSession(id);
+                if (current == null || !UploadSession.STATUS_UPLOADING.equals(current.getStatus())
+                        || (current.getUpdateTime() != null && current.getUpdateTime() >= before)) {
+                    return false;
+                }
+                uploadSessionMapper.deleteChunks(id);
+                uploadSessionMapper.deleteSession(id);
+                return true;
+            }));
+            if (deleted) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.info("清理过期上传会话 {} 个", removed);
+        }
+    }
+
+    private UploadSession getOwnedSession(String uploadId, Long userId, String role) {
+        UploadSession session = uploadSessionMapper.getSession(uploadId);
+        if (session == null) {
+            throw new UploadSessionNotFoundException();
+        }
+        if (!"admin".equals(role) && (session.getUserId() == null || !session.getUserId().equals(userId))) {
+            throw new InsufficientPermissionException("无权限访问此上传会话");
+        }
+        return session;
+    }
+
+    private long expectedChunkSize(UploadSession session, int chunkIndex) {
+        long offset = (long) chunkIndex * session.getChunkSize();
+        return Math.min(session.getChunkSize(), session.getFileSize() - offset);
+    }
+
+    private List<Integer> missingChunks(UploadSession session) {
+        if (UploadSession.STATUS_COMPLETED.equals(session.getStatus())) {
+            return new ArrayList<>();
+        }
+        return missingChunks(session, uploadSessionMapper.getChunks(session.getId()));
+    }
+
+    private List<Integer> missingChunks(UploadSession session, List<UploadSessionChunk> chunks) {
+        Set<Integer> uploaded = new HashSet<>();
+        for (UploadSessionChunk chunk : chunks) {
+            uploaded.add(chunk.getChunkIndex());
+        }
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < session.getTotalChunks(); i++) {
+            if (!uploaded.contains(i)) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    private UploadSessionStatus toStatus(UploadSession session, List<Integer> missing) {
+        return UploadSessionStatus.builder()
+                .uploadId(session.getId())
+                .fileName(session.getFileName())
+                .fileSize(session.getFileSize())
+                .chunkSize(session.getChunkSize())
+                .totalChunks(session.getTotalChunks())
+                .status(session.getStatus())
+                .missingChunks(missing)
+                .downloadLink(session.getDownloadUrl())
+                .build();
+    }
+
+    private long now() {
+        return LocalDateTime.now(ZoneOffset.UTC).toEpochSecond(ZoneOffset.UTC);
+    }
+}
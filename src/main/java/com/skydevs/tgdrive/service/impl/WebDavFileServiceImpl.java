@@ -1,10 +1,14 @@
 package com.skydevs.tgdrive.service.impl;
 
+import com.skydevs.tgdrive.datasource.WriteQueue;
 import com.skydevs.tgdrive.entity.FileInfo;
+import com.skydevs.tgdrive.entity.StoredFile;
 import com.skydevs.tgdrive.exception.file.FailedToGetSizeException;
+import com.skydevs.tgdrive.exception.file.UploadRejectedException;
 import com.skydevs.tgdrive.mapper.FileMapper;
 import com.skydevs.tgdrive.service.DownloadService;
 import com.skydevs.tgdrive.service.FileStorageService;
+import com.skydevs.tgdrive.service.FileTreeService;
 import com.skydevs.tgdrive.service.TelegramBotService;
 import com.skydevs.tgdrive.service.WebDavFileService;
 import com.skydevs.tgdrive.utils.StringUtil;
@@ -12,15 +16,14 @@ import com.skydevs.tgdrive.utils.UserFriendly;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
-import org.springframework.web.util.UriUtils;
 
 import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -31,6 +34,8 @@ public class WebDavFileServiceImpl implements WebDavFileService {
     private final FileStorageService fileStorageService;
     private final TelegramBotService telegramBotService;
     private final DownloadService downloadService;
+    private final FileTreeService fileTreeService;
+    private final WriteQueue writeQueue;
 
     @Override
     public String uploadByWebDav(InputStream inputStream, HttpServletRequest request) {
@@ -44,34 +49,8 @@ public class WebDavFileServiceImpl implements WebDavFileService {
             }
             String fileName = path.substring(path.lastIndexOf('/') + 1);
 
-            String fileId = fileStorageService.uploadFile(inputStream, fileName, size);
-            List<FileInfo> fileInfos = fileMapper.getFilesByPathPrefix(path);
-            for (FileInfo fileInfo : fileInfos) {
-                fileMapper.deleteFile(fileInfo.getFileId());
-                telegramBotService.deleteFile(fileInfo.getMessageId());
-            }
-            // 提取文件夹名字（如果有文件夹的话）
-            List<String> dirPaths = StringUtil.getDirsPathFromPath(path);
-            for (String dirPath : dirPaths) {
-                FileInfo dirInfo = fileMapper.getFileByWebdavPath(dirPath);
-                if (dirInfo != null) {
-                    continue;
-                }
-                dirInfo = FileInfo.builder().fileId("dir")
-                        .fileName(StringUtil.getDisplayName(dirPath, true))
-                        .downloadUrl("dir")
-                        .uploadTime(LocalDateTime.now(ZoneOffset.UTC).toEpochSecond(ZoneOffset.UTC))
-                        .size("0")
-                        .fullSize(0L)
-                        .webdavPath(dirPath)
-                        .dir(true)
-                        .userId(null) // WebDAV目录不关联用户
-                        .isPublic(true) // WebDAV目录默认公开
-                        .build();
-                fileMapper.insertFile(dirInfo);
-                log.info("新增文件夹路径{}", dirPath);
-            }
-
+            StoredFile storedFile = fileStorageService.uploadFile(inputStream, fileName, size);
+            String fileId = storedFile.getFileId();
             // 优先使用自定义URL，如果没有配置则使用请求中的URL
             String customUrl = telegramBotService.getCustomUrl();
             String prefix = (customUrl != null && !customUrl.trim().isEmpty()) ? customUrl.trim() : StringUtil.getPrefix(request);
@@ -87,28 +66,61 @@ public class WebDavFileServiceImpl implements WebDavFileService {
                     .webdavPath(path)
                     .userId(null) // WebDAV上传暂时不关联用户
                     .isPublic(true) // WebDAV文件默认公开
+                    .contentType(storedFile.getContentType())
                     .build();
-            fileMapper.insertFile(fileInfo);
+            // 覆盖旧文件、补建文件夹和插入记录在同一个写入中完成，同一路径的并发上传不会重复建目录
+            List<FileInfo> replaced = writeQueue.execute(() -> {
+                List<FileInfo> fileInfos = fileMapper.getFilesByWebdavPath(path);
+                for (FileInfo old : fileInfos) {
+                    fileMapper.deleteFile(old.getFileId());
+                }
+                fileInfo.setParentId(fileTreeService.ensureParentDirs(path));
+                fileMapper.insertFile(fileInfo);
+                fileTreeService.refresh(path);
+                return fileInfos;
+            });
+            // 提交后再删除Telegram上的旧消息
+            for (FileInfo old : replaced) {
+                telegramBotService.deleteFile(old.getMessageId());
+            }
             return fileId;
+        } catch (UploadRejectedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("文件上传失败", e);
             throw new RuntimeException("文件上传失败", e);
         }
     }
 
+    /**
+     * WebDAV HEAD请求
+     * @param path 文件路径
+     * @param requestHeaders 请求头
+     * @return
+     */
+    @Override
+    public ResponseEntity<Void> headByWebDav(String path, HttpHeaders requestHeaders) {
+        FileInfo fileInfo = fileTreeService.resolve(path);
+        if (fileInfo == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return downloadService.headFile(fileInfo, requestHeaders);
+    }
+
     /**
      * WebDAV下载
      * @param path 文件路径
+     * @param requestHeaders 请求头
      * @return
      */
     @Override
-    public ResponseEntity<StreamingResponseBody> downloadByWebDav(String path) {
+    public ResponseEntity<StreamingResponseBody> downloadByWebDav(String path, HttpHeaders requestHeaders) {
         try {
-            FileInfo fileInfo = getFileByWebdavPathWithFallback(path);
+            FileInfo fileInfo = fileTreeService.resolve(path);
             if (fileInfo == null) {
                 return ResponseEntity.notFound().build();
             }
-            return downloadService.downloadFile(fileInfo.getFileId());
+            return downloadService.downloadFile(fileInfo.getFileId(), requestHeaders);
         } catch (Exception e) {
             log.error("文件下载失败", e);
             return ResponseEntity.status(500).build();
@@ -118,97 +130,21 @@ public class WebDavFileServiceImpl implements WebDavFileService {
     @Override
     public void deleteByWebDav(String path) {
         try {
-            // 尝试删除文件，如果找不到则尝试解码后的路径
-            FileInfo file = getFileByWebdavPathWithFallback(path);
-            if (file != null) {
-                fileMapper.deleteFileByWebDav(file.getWebdavPath());
-            } else {
+            writeQueue.run(() -> {
+                // 尝试删除文件，如果找不到则尝试解码后的路径
+                FileInfo file = fileTreeService.resolve(path);
+                if (file == null && !path.endsWith("/")) {
+                    // 列目录返回的目录href不以/结尾
+                    file = fileTreeService.resolve(path + "/");
+                }
                 // 如果还是找不到，尝试原始路径
-                fileMapper.deleteFileByWebDav(path);
-            }
+                String webdavPath = file != null ? file.getWebdavPath() : path;
+                fileMapper.deleteFileByWebDav(webdavPath, StringUtil.getSubtreeUpperBound(webdavPath));
+                fileTreeService.refresh(webdavPath);
+            });
         } catch (Exception e) {
             log.error("文件删除失败", e);
             throw new RuntimeException("文件删除失败", e);
         }
     }
-
-    /**
-     * 列出WebDAV文件
-     *
-     * @param path 路径
-     * @return
-     */
-    @Override
-    public List<FileInfo> listFiles(String path) {
-        List<FileInfo> files = fileMapper.getFilesByPathPrefix(path);
-        if (files == null) {
-            log.error("文件查询失败");
-            return null;
-        }
-        List<FileInfo> res = new ArrayList<>();
-        for (FileInfo file : files) {
-            String str = file.getWebdavPath().substring(path.length());
-            if (str.indexOf('/') != -1 && !file.isDir()) {
-                continue;
-            }
-            if (str.indexOf('/') != -1 && str.substring(str.indexOf('/')).length() > 1) {
-                continue;
-            }
-            if (file.getWebdavPath().equals(path)) {
-                continue;
-            }
-            res.add(file);
-        }
-        return res;
-    }
-
-    /**
-     * Description:
-     * 尝试通过WebDAV路径查找文件，支持URL编码和大小写不敏感
-     * @author SkyDev
-     * @date 2025-09-01 10:00:49
-     * @param path WebDAV路径
-     * @return 文件信息，如果找不到则返回null
-     */
-    private FileInfo getFileByWebdavPathWithFallback(String path) {
-        // 首先尝试原始路径
-        FileInfo file = fileMapper.getFileByWebdavPath(path);
-        if (file != null) {
-            return file;
-        }
-        
-        // 如果找不到，尝试URL解码后的路径
-        try {
-            String decodedPath = UriUtils.decode(path, "UTF-8");
-            if (!decodedPath.equals(path)) {
-                file = fileMapper.getFileByWebdavPath(decodedPath);
-                if (file != null) {
-                    log.info("Found file using decoded path: {} -> {}", path, decodedPath);
-                    return file;
-                }
-            }
-        } catch (Exception e) {
-            log.warn("Failed to decode URL: {}", path);
-        }
-        
-        // 如果仍然找不到，尝试不区分大小写的查找
-        try {
-            // 获取父目录路径
-            String parentPath = path.substring(0, path.lastIndexOf('/') + 1);
-            String fileName = path.substring(path.lastIndexOf('/') + 1);
-            
-            // 获取父目录下的所有文件
-            List<FileInfo> filesInDir = fileMapper.getFilesByPathPrefix(parentPath);
-            for (FileInfo f : filesInDir) {
-                if (f.getWebdavPath().equalsIgnoreCase(path)) {
-                    log.info("Found file using case-insensitive match: {}", path);
-                    return f;
-                }
-            }
-        } catch (Exception e) {
-            log.warn("Failed to perform case-insensitive search for: {}", path);
-        }
-        
-        return null;
-    }
 }
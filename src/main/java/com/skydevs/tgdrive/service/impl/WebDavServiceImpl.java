@@ -1,34 +1,49 @@
 package com.skydevs.tgdrive.service.impl;
 
+import com.skydevs.tgdrive.datasource.WriteQueue;
 import com.skydevs.tgdrive.entity.FileInfo;
 import com.skydevs.tgdrive.mapper.FileMapper;
-import com.skydevs.tgdrive.service.WebDavFileService;
+import com.skydevs.tgdrive.service.FileTreeService;
 import com.skydevs.tgdrive.service.WebDavService;
 import com.skydevs.tgdrive.utils.StringUtil;
+import com.skydevs.tgdrive.webdav.MultiStatusWriter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.util.UriUtils;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * WebDAV方法处理
+ * 修改目录树的方法（MKCOL/MOVE/COPY）提交到写入队列，检查和修改在同一个事务中完成；
+ * PROPFIND不开启事务，查询走只读连接池，向慢客户端流式输出时不会占用唯一的写连接
+ */
 @Service
 @Slf4j
-@Transactional
 @RequiredArgsConstructor
 public class WebDavServiceImpl implements WebDavService {
 
-    private final WebDavFileService webDavFileService;
+    private static final String CONTEXT_PATH = "/webdav";
+    private static final String ROOT_PATH = "/";
+    private static final String DEPTH_INFINITY = "infinity";
+
     private final FileMapper fileMapper;
+    private final FileTreeService fileTreeService;
+    private final WriteQueue writeQueue;
+
+    // 是否允许Depth: infinity的PROPFIND，关闭后返回403
+    @Value("${app.webdav.propfind.infinite-depth:true}")
+    private boolean infiniteDepthEnabled;
 
     @Override
     public void switchMethod(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -46,13 +61,13 @@ public class WebDavServiceImpl implements WebDavService {
                 handlePropFind(request, response, realURI);
                 break;
             case "MKCOL":
-                handleMkCol(request, response, realURI);
+                writeQueue.run(() -> handleMkCol(request, response, realURI));
                 break;
             case "MOVE":
-                handleMove(request, response, realURI);
+                writeQueue.run(() -> handleMove(request, response, realURI));
                 break;
             case "COPY":
-                handleCopy(request, response, realURI);
+                writeQueue.run(() -> handleCopy(request, response, realURI));
                 break;
             case "PROPPATCH":
                 handlePropPatch(request, response, realURI);
@@ -80,22 +95,14 @@ public class WebDavServiceImpl implements WebDavService {
         response.setContentType("application/xml;charset=UTF-8");
 
         // 构建一个最简单的“成功”XML回复
-        String xmlResponse = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
-                "<D:multistatus xmlns:D=\"DAV:\">" +
-                "  <D:response>" +
-                "    <D:href>" + escapeXml("/webdav" + realURI) + "</D:href>" +
-                "    <D:propstat>" +
-                "      <D:status>HTTP/1.1 200 OK</D:status>" +
-                "    </D:propstat>" +
-                "  </D:response>" +
-                "</D:multistatus>";
-
-        response.getWriter().write(xmlResponse);
+        try (MultiStatusWriter writer = new MultiStatusWriter(response.getOutputStream())) {
+            writer.writeStatus(CONTEXT_PATH + realURI);
+        }
     }
 
     /**
      * Description:
-     * WebDAV文件移动
+     * WebDAV文件移动，整个子树用一条UPDATE改写路径
      * @author SkyDev
      * @date 2025-09-01 10:00:00
      * @param request WebDAV请求
@@ -104,84 +111,85 @@ public class WebDavServiceImpl implements WebDavService {
      */
     private void handleMove(HttpServletRequest request, HttpServletResponse response, String realURI) {
         String target = request.getHeader("Destination");
-        String overwrite = request.getHeader("Overwrite");
-        FileInfo sourceFile = getFileByWebdavPathWithFallback(realURI);
+        FileInfo sourceFile = fileTreeService.resolve(realURI);
         if (target == null || realURI == null || sourceFile == null) {
             response.setStatus(400);
             return;
         }
-        target = getTargetPath(request, target, sourceFile.isDir());
+        target = getTargetPath(target, sourceFile.isDir());
+        // 以数据库中的路径为准，请求路径可能是URL编码或大小写不同的
+        String source = sourceFile.getWebdavPath();
         // 如果移动后和移动前路径相同，直接返回
-        if (target.equals(realURI)) {
+        if (source.equals(target)) {
             response.setStatus(204);
             return;
         }
-        FileInfo targetFile = getFileByWebdavPathWithFallback(target);
-        List<FileInfo> subFiles = getSubFiles(realURI);
-        sourceFile.setFileName(StringUtil.getDisplayName(target, sourceFile.isDir()));
-        if (targetFile != null && overwrite.equalsIgnoreCase("F")) {
-            response.setStatus(409);
-        } else if (overwrite.equalsIgnoreCase("T") && targetFile != null) {
-            // 允许覆盖且目标路径有该文件名，删除原文件路径，更新目标文件路径的属性
-            fileMapper.deleteFileByWebDav(realURI);
-            fileMapper.updateFileAttributeByWebDav(sourceFile, target);
-            handleMoveSubFiles(subFiles, target, realURI);
-            response.setStatus(204);
-            log.info("{} 移动到 {}", realURI, target);
-        } else {
-            // 目标路径没有该文件名
-            fileMapper.deleteFileByWebDav(realURI);
-            fileMapper.moveFile(sourceFile, target);
-            handleMoveSubFiles(subFiles, target, realURI);
-            response.setStatus(204);
-            log.info("{} 移动到 {}", realURI, target);
+        boolean targetExists = targetExists(target, sourceFile);
+        int status = checkTransfer(request, source, target, sourceFile, targetExists);
+        if (status != 0) {
+            response.setStatus(status);
+            return;
+        }
+        String sourceEnd = StringUtil.getSubtreeUpperBound(source);
+        int overwritten = fileMapper.deleteSubtreeCollisions(source, sourceEnd, target);
+        int moved = fileMapper.moveSubtree(source, sourceEnd, target,
+                StringUtil.getDisplayName(target, sourceFile.isDir()), fileTreeService.parentIdOf(target));
+        if (overwritten > 0) {
+            // 被覆盖的目录换成了源目录，目标中原有的其他子项需要指向新的父目录
+            fileTreeService.relink(target);
         }
+        fileTreeService.refresh(source);
+        fileTreeService.refresh(target);
+        // RFC 4918 9.9.4：新建目标返回201，覆盖已有目标返回204
+        response.setStatus(targetExists ? 204 : 201);
+        log.info("{} 移动到 {}，共{}项，覆盖{}项", source, target, moved, overwritten);
     }
 
     /**
      * Description:
-     * 获取指定路径下的所有子文件
-     * @author SkyDev
-     * @date 2025-09-01 10:00:00
-     * @param realURI 文件路径
-     * @return 子文件列表
+     * 检查移动、复制能否进行
+     * @param request WebDAV请求
+     * @param source 源路径
+     * @param target 目标路径
+     * @param sourceFile 源文件信息
+     * @param targetExists 目标是否已存在
+     * @return 需要直接返回的状态码，可以进行时返回0
      */
-    private List<FileInfo> getSubFiles(String realURI) {
-        List<FileInfo> files =  fileMapper.getFilesByPathPrefix(realURI);
-        files.removeIf(file -> file.getWebdavPath().equals(realURI));
-        return files;
+    private int checkTransfer(HttpServletRequest request, String source, String target, FileInfo sourceFile, boolean targetExists) {
+        if (target == null) {
+            // 目标不在本服务的WebDAV路径下
+            return 502;
+        }
+        if (ROOT_PATH.equals(target)) {
+            return 403;
+        }
+        if (sourceFile.isDir() && target.startsWith(source)) {
+            // 不能移动、复制到自己的子目录中
+            return 409;
+        }
+        if (fileTreeService.parentIdOf(target) == null) {
+            // RFC 4918 9.8.5/9.9.4：目标的父目录不存在时返回409，不自动创建
+            return 409;
+        }
+        // Overwrite头缺省为T
+        if (targetExists && "F".equalsIgnoreCase(request.getHeader("Overwrite"))) {
+            return 412;
+        }
+        return 0;
     }
 
     /**
-     * Description:
-     * 移动子文件
-     * @author SkyDev
-     * @date 2025-09-01 10:00:00
-     * @param subFiles 子文件列表
-     * @param target 目标路径
-     * @param realURI 源路径
+     * 目标路径上是否已有其他条目
+     * 只改大小写时，不区分大小写的查找会找到源文件本身
      */
-    private void handleMoveSubFiles(List<FileInfo> subFiles, String target, String realURI) {
-        if (subFiles == null) {
-            return;
+    private boolean targetExists(String target, FileInfo sourceFile) {
+        if (target == null) {
+            return false;
         }
-        log.info("开始移动子文件");
-        for (FileInfo file : subFiles) {
-            String targetPath = target;
-            String sourcePath = file.getWebdavPath();
-            targetPath = targetPath + sourcePath.substring(realURI.length());
-            FileInfo targetFile = getFileByWebdavPathWithFallback(targetPath);
-            fileMapper.deleteFileByWebDav(sourcePath);
-            if (targetFile != null) {
-                fileMapper.updateFileAttributeByWebDav(file, targetPath);
-            } else {
-                fileMapper.moveFile(file, targetPath);
-            }
-        }
-        log.info("子文件移动完成");
+        FileInfo targetFile = fileTreeService.resolve(target);
+        return targetFile != null && !targetFile.getId().equals(sourceFile.getId());
     }
 
-
     /**
      * Description:
      * 处理新建文件夹
@@ -192,7 +200,7 @@ public class WebDavServiceImpl implements WebDavService {
      * @param realURI 请求路径
      */
     private void handleMkCol(HttpServletRequest request, HttpServletResponse response, String realURI) {
-        FileInfo fileInfo = getFileByWebdavPathWithFallback(realURI);
+        FileInfo fileInfo = fileTreeService.resolve(realURI);
         if (fileInfo != null) {
             response.setStatus(405);
             return;
@@ -204,16 +212,18 @@ public class WebDavServiceImpl implements WebDavService {
                 .size("0")
                 .fullSize(0L)
                 .webdavPath(realURI)
+                .parentId(fileTreeService.ensureParentDirs(realURI))
                 .dir(true)
                 .build();
         fileMapper.insertFile(fileInfo);
+        fileTreeService.refresh(realURI);
         log.info("新增文件夹路径{}", realURI);
         response.setStatus(201);
     }
 
     /**
      * Description:
-     * 处理文件复制
+     * 处理文件复制，整个子树用一条INSERT ... SELECT复制
      * @author SkyDev
      * @date 2025-09-01 10:00:00
      * @param request WebDAV请求
@@ -222,73 +232,39 @@ public class WebDavServiceImpl implements WebDavService {
      */
     private void handleCopy(HttpServletRequest request, HttpServletResponse response, String realURI) {
         String target = request.getHeader("Destination");
-        String overwrite = request.getHeader("Overwrite");
-        FileInfo sourceFile = getFileByWebdavPathWithFallback(realURI);
+        FileInfo sourceFile = fileTreeService.resolve(realURI);
         if (target == null || realURI == null || sourceFile == null) {
             response.setStatus(400);
             return;
         }
-        target = getTargetPath(request, target, sourceFile.isDir());
-        // 如果移动后和移动前路径相同，直接返回
-        if (target.equals(realURI)) {
+        target = getTargetPath(target, sourceFile.isDir());
+        String source = sourceFile.getWebdavPath();
+        // 如果复制后和复制前路径相同，直接返回
+        if (source.equals(target)) {
             response.setStatus(204);
             return;
         }
-        FileInfo targetFile = getFileByWebdavPathWithFallback(target);
-        List<FileInfo> subFiles = getSubFiles(realURI);
-        sourceFile.setFileName(StringUtil.getDisplayName(target, sourceFile.isDir()));
-        if (targetFile != null && overwrite.equalsIgnoreCase("F")) {
-            response.setStatus(409);
-        } else if (overwrite.equalsIgnoreCase("T") && targetFile != null) {
-            // 允许覆盖且目标路径有该文件名，更新目标文件路径的属性
-            fileMapper.updateFileAttributeByWebDav(sourceFile, target);
-            handleCopySubFiles(subFiles, target, realURI);
-            response.setStatus(204);
-            log.info("{} 移动到 {}", realURI, target);
-        } else {
-            // 目标路径没有该文件名
-            fileMapper.moveFile(sourceFile, target);
-            handleCopySubFiles(subFiles, target, realURI);
-            response.setStatus(204);
-            log.info("{} 移动到 {}", realURI, target);
-        }
-    }
-
-    /**
-     * Description:
-     * 复制子文件
-     * @author SkyDev
-     * @date 2025-09-01 10:00:00
-     * @param subFiles 子文件列表
-     * @param target 目标路径
-     * @param realURI 源路径
-     */
-    private void handleCopySubFiles(List<FileInfo> subFiles, String target, String realURI) {
-        if (subFiles == null) {
+        boolean targetExists = targetExists(target, sourceFile);
+        int status = checkTransfer(request, source, target, sourceFile, targetExists);
+        if (status != 0) {
+            response.setStatus(status);
             return;
         }
-        log.info("开始复制子文件");
-        for (FileInfo file : subFiles) {
-            String targetPath = target;
-            String sourcePath = file.getWebdavPath();
-            targetPath = targetPath + sourcePath.substring(realURI.length());
-            FileInfo targetFile = getFileByWebdavPathWithFallback(targetPath);
-            if (targetFile != null) {
-                fileMapper.updateFileAttributeByWebDav(file, targetPath);
-            } else {
-                fileMapper.moveFile(file, targetPath);
-            }
-        }
-        log.info("子文件复制完成");
+        String sourceEnd = StringUtil.getSubtreeUpperBound(source);
+        int overwritten = fileMapper.deleteSubtreeCollisions(source, sourceEnd, target);
+        int copied = fileMapper.copySubtree(source, sourceEnd, target, StringUtil.getDisplayName(target, sourceFile.isDir()));
+        // 新条目的parent_id统一计算
+        fileTreeService.relink(target);
+        fileTreeService.refresh(target);
+        // RFC 4918 9.8.5：新建目标返回201，覆盖已有目标返回204
+        response.setStatus(targetExists ? 204 : 201);
+        log.info("{} 复制到 {}，共{}项，覆盖{}项", source, target, copied, overwritten);
     }
 
 
-    private static final DateTimeFormatter RFC1123_FORMATTER =
-            DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneId.of("GMT"));
-
     /**
      * Description:
-     * 处理目录探测
+     * 处理目录探测，按Depth头返回条目本身、直接子项或整个子树，边遍历边写入响应
      * @author SkyDev
      * @date 2025-09-01 10:00:00
      * @param request WebDAV请求
@@ -297,196 +273,99 @@ public class WebDavServiceImpl implements WebDavService {
      * @throws IOException IO异常
      */
     private void handlePropFind(HttpServletRequest request, HttpServletResponse response, String realURI) throws IOException {
+        // Depth头缺省为infinity
+        String depth = request.getHeader("Depth");
+        depth = depth == null ? DEPTH_INFINITY : depth.trim().toLowerCase();
+        if (!"0".equals(depth) && !"1".equals(depth) && !DEPTH_INFINITY.equals(depth)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid Depth header");
+            return;
+        }
+
         // 步骤1：存在性检查
         // 客户端可能会请求一个不存在的路径，我们必须先告诉它"找不到"
-        FileInfo currentItem = getFileByWebdavPathWithFallback(realURI);
-        if (!realURI.equals("/") && currentItem == null) {
+        boolean root = realURI.equals("/");
+        FileInfo currentItem = root ? null : fileTreeService.resolve(realURI);
+        if (currentItem == null && !root && !realURI.endsWith("/")) {
+            // 目录的href可能不以/结尾
+            currentItem = fileTreeService.resolve(realURI + "/");
+        }
+        if (!root && currentItem == null) {
             log.info("PROPFIND请求的资源不存在: {}", realURI);
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
-
-        try {
-            final String CONTEXT_PATH = "/webdav";
-            response.setStatus(207); // 207 Multi-Status
+        boolean collection = root || currentItem.isDir();
+        if (collection && DEPTH_INFINITY.equals(depth) && !infiniteDepthEnabled) {
+            // RFC 4918 9.1：不支持无限深度时返回403和propfind-finite-depth
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
             response.setContentType("application/xml;charset=UTF-8");
+            response.getWriter().write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<D:error xmlns:D=\"DAV:\"><D:propfind-finite-depth/></D:error>");
+            return;
+        }
 
-            // 如果当前是文件夹，就去获取它下面的子文件；如果是文件，这个列表就是空的
-            List<FileInfo> childFiles;
-            if (realURI.equals("/") || (currentItem.isDir())) {
-                childFiles = webDavFileService.listFiles(realURI);
+        response.setStatus(207); // 207 Multi-Status
+        response.setContentType("application/xml;charset=UTF-8");
+        try (MultiStatusWriter writer = new MultiStatusWriter(response.getOutputStream())) {
+            if (root) {
+                writer.writeEntry(CONTEXT_PATH + realURI, "/", true, Instant.now().getEpochSecond(), null);
             } else {
-                childFiles = java.util.Collections.emptyList(); // 如果是文件，就没有子项
+                writer.writeEntry(CONTEXT_PATH + realURI, currentItem.getFileName(), collection,
+                        currentItem.getUploadTime(), currentItem.getFullSize());
             }
-
-            StringBuilder xmlBuilder = new StringBuilder();
-            xmlBuilder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
-                    .append("<D:multistatus xmlns:D=\"DAV:\">\n");
-
-            String currentHref = CONTEXT_PATH + realURI;
-            xmlBuilder.append("<D:response>\n")
-                    .append("<D:href>").append(escapeXml(currentHref)).append("</D:href>\n")
-                    .append("<D:propstat>\n")
-                    .append("<D:prop>\n")
-                    .append("<D:displayname>").append(escapeXml(getDisplayName(realURI))).append("</D:displayname>\n");
-
-            // 如果是根目录，或者是一个存在的对象，我们才添加更多属性
-            if (realURI.equals("/") || currentItem != null) {
-                long modifiedTime = realURI.equals("/") ? Instant.now().getEpochSecond() : currentItem.getUploadTime();
-                String lastModifiedStr = RFC1123_FORMATTER.format(Instant.ofEpochSecond(modifiedTime));
-                xmlBuilder.append("<D:getlastmodified>").append(lastModifiedStr).append("</D:getlastmodified>\n");
-
-                // 根据它是文件还是文件夹，返回正确的 resourcetype！
-                if (realURI.equals("/") || currentItem.isDir()) {
-                    xmlBuilder.append("<D:resourcetype><D:collection/></D:resourcetype>\n");
-                } else {
-                    xmlBuilder.append("<D:resourcetype/>\n");
-                    xmlBuilder.append("<D:getcontentlength>").append(currentItem.getFullSize()).append("</D:getcontentlength>\n");
-                }
+            if (!collection || "0".equals(depth)) {
+                return;
             }
-
-            xmlBuilder.append("</D:prop>\n")
-                    .append("<D:status>HTTP/1.1 200 OK</D:status>\n")
-                    .append("</D:propstat>\n")
-                    .append("</D:response>\n");
-
-            // 遍历子文件列表，为每个子项构建回复
-            for (FileInfo file : childFiles) {
-                String fileName = file.getFileName();
-                boolean isDir = file.isDir();
-                long size = file.getFullSize();
-                long modifiedTime = file.getUploadTime();
-
-                // 构造子项的相对路径
-                String relativeFilePath = realURI.endsWith("/") ? realURI + fileName : realURI + "/" + fileName;
-                String fileHref = CONTEXT_PATH + relativeFilePath;
-                String lastModifiedStr = RFC1123_FORMATTER.format(Instant.ofEpochSecond(modifiedTime));
-
-                xmlBuilder.append("<D:response>\n")
-                        .append("<D:href>").append(escapeXml(fileHref)).append("</D:href>\n")
-                        .append("<D:propstat>\n")
-                        .append("<D:prop>\n")
-                        .append("<D:displayname>").append(escapeXml(fileName)).append("</D:displayname>\n")
-                        .append("<D:getlastmodified>").append(lastModifiedStr).append("</D:getlastmodified>\n");
-
-                if (isDir) {
-                    xmlBuilder.append("<D:resourcetype><D:collection/></D:resourcetype>\n");
-                } else {
-                    xmlBuilder.append("<D:resourcetype/>\n");
-                    xmlBuilder.append("<D:getcontentlength>").append(size).append("</D:getcontentlength>\n");
+            // 子项的href由数据库中的路径编码得到，目录以/结尾
+            String dirPath = root ? "/" : currentItem.getWebdavPath();
+            Consumer<FileInfo> writeEntry = file -> {
+                try {
+                    writer.writeEntry(CONTEXT_PATH + UriUtils.encodePath(file.getWebdavPath(), StandardCharsets.UTF_8),
+                            file.getFileName(), file.isDir(), file.getUploadTime(), file.getFullSize());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-
-                xmlBuilder.append("</D:prop>\n")
-                        .append("<D:status>HTTP/1.1 200 OK</D:status>\n")
-                        .append("</D:propstat>\n")
-                        .append("</D:response>\n");
+            };
+            if ("1".equals(depth)) {
+                fileTreeService.forEachChild(dirPath, writeEntry);
+            } else {
+                fileTreeService.forEachDescendant(dirPath, writeEntry);
             }
-
-            xmlBuilder.append("</D:multistatus>");
-            response.getWriter().write(xmlBuilder.toString());
-        } catch (Exception e) {
-            log.error("PROPFIND请求处理失败: {}", e.getMessage(), e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        } catch (UncheckedIOException e) {
+            // 响应已经开始发送，只能中断，通常是客户端断开了连接
+            log.warn("PROPFIND响应写入中断: {}", e.getMessage());
         }
     }
 
-    /**
-     * Description:
-     * XML转义方法
-     * @author SkyDev
-     * @date 2025-09-01 10:00:00
-     * @param input 输入字符串
-     * @return 转义后的字符串
-     */
-    private String escapeXml(String input) {
-        if (input == null) {
-            return "";
-        }
-        return input.replace("&", "&amp;")
-                   .replace("<", "&lt;")
-                   .replace(">", "&gt;")
-                   .replace("\"", "&quot;")
-                   .replace("'", "&#39;");
-    }
-
-    /**
-     * Description:
-     * 获取显示名称
-     * @author SkyDev
-     * @date 2025-09-01 10:00:00
-     * @param path 路径
-     * @return 显示名称
-     */
-    private String getDisplayName(String path) {
-        return path.substring(path.lastIndexOf('/'));
-    }
-
     /**
      * Description:
      * 获取目标路径
+     * Destination可以是完整URL或绝对路径，目录可能带也可能不带结尾的/，路径是URL编码的
      * @author SkyDev
      * @date 2025-09-01 10:00:00
-     * @param request HTTP请求
-     * @param target 目标路径
+     * @param target Destination请求头
      * @param dir 是否为目录
-     * @return 处理后的目标路径
+     * @return 解码后的目标路径，目录以/结尾；不在WebDAV路径下时返回null
      */
-    private String getTargetPath(HttpServletRequest request, String target, boolean dir) {
-        String prefix = StringUtil.getPrefix(request);
-        target =  target.substring((prefix + "/webdav").length());
-        if (dir) {
-            target = target + "/";
+    static String getTargetPath(String target, boolean dir) {
+        // 去掉协议和主机，经过反向代理时主机可能与请求中的不同
+        int scheme = target.indexOf("://");
+        if (scheme >= 0) {
+            int pathStart = target.indexOf('/', scheme + 3);
+            target = pathStart < 0 ? "/" : target.substring(pathStart);
         }
-        return target;
-    }
-
-    /**
-     * Description:
-     * 尝试通过WebDAV路径查找文件，支持URL编码和大小写不敏感
-     * @author SkyDev
-     * @date 2025-09-01 10:05:04
-     * @param path WebDAV路径
-     * @return 文件信息，如果找不到则返回null
-     */
-    private FileInfo getFileByWebdavPathWithFallback(String path) {
-        // 首先尝试原始路径
-        FileInfo file = fileMapper.getFileByWebdavPath(path);
-        if (file != null) {
-            return file;
+        if (!target.equals(CONTEXT_PATH) && !target.startsWith(CONTEXT_PATH + "/")) {
+            return null;
         }
-        
-        // 如果找不到，尝试URL解码后的路径
-        try {
-            String decodedPath = UriUtils.decode(path, "UTF-8");
-            if (!decodedPath.equals(path)) {
-                file = fileMapper.getFileByWebdavPath(decodedPath);
-                if (file != null) {
-                    log.debug("Found file using decoded path: {} -> {}", path, decodedPath);
-                    return file;
-                }
-            }
-        } catch (Exception e) {
-            log.warn("Failed to decode URL: {}", path);
+        target = target.substring(CONTEXT_PATH.length());
+        int end = target.length();
+        while (end > 0 && target.charAt(end - 1) == '/') {
+            end--;
         }
-        
-        // 如果仍然找不到，尝试不区分大小写的查找
-        try {
-            // 获取父目录路径
-            String parentPath = path.substring(0, path.lastIndexOf('/') + 1);
-            String fileName = path.substring(path.lastIndexOf('/') + 1);
-            
-            // 获取父目录下的所有文件
-            List<FileInfo> filesInDir = fileMapper.getFilesByPathPrefix(parentPath);
-            for (FileInfo f : filesInDir) {
-                if (f.getWebdavPath().equalsIgnoreCase(path)) {
-                    log.debug("Found file using case-insensitive match: {}", path);
-                    return f;
-                }
-            }
-        } catch (Exception e) {
-            log.warn("Failed to perform case-insensitive search for: {}", path);
+        target = UriUtils.decode(target.substring(0, end), StandardCharsets.UTF_8);
+        if (target.isEmpty()) {
+            return ROOT_PATH;
         }
-        
-        return null;
+        return dir ? target + "/" : target;
     }
 }
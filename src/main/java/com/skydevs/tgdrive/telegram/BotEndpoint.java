@@ -0,0 +1,36 @@
+package com.skydevs.tgdrive.telegram;
+
+import com.pengrad.telegrambot.TelegramBot;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * bot池中的一个bot及其上传目标chat
+ */
+@Getter
+@AllArgsConstructor
+public class BotEndpoint {
+    /**
+     * bot id，即token中冒号前的部分
+     */
+    private final String botId;
+
+    private final TelegramBot bot;
+
+    private final String chatId;
+
+    /**
+     * 来源配置名
+     */
+    private final String configName;
+
+    /**
+     * 从token中取出bot id，避免token出现在数据库、日志和指标中
+     * @param token bot token
+     * @return bot id
+     */
+    public static String botIdOf(String token) {
+        int index = token.indexOf(':');
+        return index > 0 ? token.substring(0, index) : token;
+    }
+}
@@ -0,0 +1,103 @@
+package com.skydevs.tgdrive.telegram;
+
+import com.pengrad.telegrambot.model.File;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * getFile结果缓存
+ * Telegram保证getFile返回的file_path至少一小时内有效，有效期内同一文件的下载不需要再请求Bot API。
+ * Telegram文件ID只对上传它的bot有效，key中包含bot id
+ */
+@Component
+@Slf4j
+public class FilePathCache {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private record Entry(File file, long expiresAt) {
+    }
+
+    public FilePathCache(@Value("${app.telegram.file-path-cache.ttl:50m}") Duration ttl,
+                         @Value("${app.telegram.file-path-cache.max-entries:10000}") int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 查找未过期的文件信息
+     * @param botId bot id
+     * @param fileId Telegram文件ID
+     * @return 文件信息，未命中或已过期返回null
+     */
+    public File get(String botId, String fileId) {
+        String key = keyOf(botId, fileId);
+        Entry entry = entries.get(key);
+        if (entry == null || entry.expiresAt() - System.nanoTime() <= 0) {
+            if (entry != null) {
+                entries.remove(key, entry);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.file();
+    }
+
+    /**
+     * 缓存getFile结果，没有file_path的结果不缓存
+     * @param botId bot id
+     * @param fileId Telegram文件ID
+     * @param file 文件信息
+     */
+    public void put(String botId, String fileId, File file) {
+        if (ttlNanos <= 0 || file == null || file.filePath() == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (entries.size() >= maxEntries) {
+            entries.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+            if (entries.size() >= maxEntries) {
+                // 缓存已满且都未过期，放弃缓存，不影响正确性
+                log.debug("getFile缓存已满，跳过缓存 {}", fileId);
+                return;
+            }
+        }
+        entries.put(keyOf(botId, fileId), new Entry(file, now + ttlNanos));
+    }
+
+    /**
+     * 删除缓存，下载返回404（file_path已失效）时调用
+     * @param botId bot id
+     * @param fileId Telegram文件ID
+     */
+    public void invalidate(String botId, String fileId) {
+        entries.remove(keyOf(botId, fileId));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String keyOf(String botId, String fileId) {
+        return botId + "/" + fileId;
+    }
+}
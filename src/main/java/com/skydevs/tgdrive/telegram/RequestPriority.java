@@ -0,0 +1,16 @@
+package com.skydevs.tgdrive.telegram;
+
+/**
+ * Telegram请求优先级
+ */
+public enum RequestPriority {
+    /**
+     * 用户正在等待的请求（下载时的getFile、发送消息等），优先放行
+     */
+    INTERACTIVE,
+
+    /**
+     * 后台批量请求（分块上传、删除消息等），有交互请求排队时让路
+     */
+    BULK
+}
@@ -0,0 +1,207 @@
+package com.skydevs.tgdrive.telegram;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+import com.skydevs.tgdrive.dto.TelegramSchedulerStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Telegram Bot API请求调度器
+ * 所有Bot API调用都经过这里：每个bot、每个chat各有一个令牌桶；
+ * 收到429时按retry_after暂停对应的桶后重试，而不是固定退避；
+ * 有交互请求排队时批量请求让路，批量请求等待过久后不再让路，避免饿死
+ */
+@Component
+@Slf4j
+public class TelegramRequestScheduler {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final double botPermitsPerSecond;
+    private final double botBurst;
+    private final double chatPermitsPerSecond;
+    private final double chatBurst;
+    private final int maxFloodRetries;
+    private final long bulkMaxYieldNanos;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition changed = lock.newCondition();
+    private final Map<String, TokenBucket> botBuckets = new HashMap<>();
+    private final Map<String, TokenBucket> chatBuckets = new HashMap<>();
+    private final Map<RequestPriority, Integer> waiting = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, WaitStats> waitStats = new EnumMap<>(RequestPriority.class);
+    private final AtomicLong floodWaitCount = new AtomicLong();
+    private volatile int lastRetryAfterSeconds;
+
+    public TelegramRequestScheduler(@Value("${app.telegram.rate-limit.bot-per-second:30}") double botPermitsPerSecond,
+                                    @Value("${app.telegram.rate-limit.bot-burst:30}") double botBurst,
+                                    @Value("${app.telegram.rate-limit.chat-per-second:1}") double chatPermitsPerSecond,
+                                    @Value("${app.telegram.rate-limit.chat-burst:5}") double chatBurst,
+                                    @Value("${app.telegram.rate-limit.max-flood-retries:5}") int maxFloodRetries,
+                                    @Value("${app.telegram.rate-limit.bulk-max-yield:10s}") Duration bulkMaxYield) {
+        this.botPermitsPerSecond = botPermitsPerSecond;
+        this.botBurst = botBurst;
+        this.chatPermitsPerSecond = chatPermitsPerSecond;
+        this.chatBurst = chatBurst;
+        this.maxFloodRetries = Math.max(0, maxFloodRetries);
+        this.bulkMaxYieldNanos = bulkMaxYield.toNanos();
+        for (RequestPriority priority : RequestPriority.values()) {
+            waiting.put(priority, 0);
+            waitStats.put(priority, new WaitStats());
+        }
+    }
+
+    /**
+     * 限流后执行请求，遇到429按retry_after等待后重试
+     * @param bot 发送请求的bot
+     * @param botKey bot标识（token冒号前的bot id）
+     * @param request 请求
+     * @param priority 优先级
+     * @return 响应，超过重试次数时返回最后一次429响应
+     */
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> R execute(TelegramBot bot, String botKey,
+                                                                          T request, RequestPriority priority) {
+        Object chatId = request.getParameters().get("chat_id");
+        String chatKey = chatId == null ? null : botKey + "/" + chatId;
+
+        for (int attempt = 0; ; attempt++) {
+            acquire(botKey, chatKey, priority);
+            R response = bot.execute(request);
+            if (response == null || response.isOk() || response.errorCode() != TOO_MANY_REQUESTS) {
+                return response;
+            }
+
+            int retryAfter = retryAfterSeconds(response);
+            floodWaitCount.incrementAndGet();
+            lastRetryAfterSeconds = retryAfter;
+            pause(botKey, chatKey, retryAfter);
+            if (attempt >= maxFloodRetries) {
+                log.error("Telegram请求 {} 多次触发限流，放弃重试", request.getMethod());
+                return response;
+            }
+            log.warn("Telegram请求 {} 触发限流，{}秒后重试（第{}次）", request.getMethod(), retryAfter, attempt + 1);
+        }
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public TelegramSchedulerStats getStats() {
+        WaitStats interactive = waitStats.get(RequestPriority.INTERACTIVE);
+        WaitStats bulk = waitStats.get(RequestPriority.BULK);
+        lock.lock();
+        int waitingInteractive;
+        int waitingBulk;
+        try {
+            waitingInteractive = waiting.get(RequestPriority.INTERACTIVE);
+            waitingBulk = waiting.get(RequestPriority.BULK);
+        } finally {
+            lock.unlock();
+        }
+        return TelegramSchedulerStats.builder()
+                .interactiveRequests(interactive.count.get())
+                .bulkRequests(bulk.count.get())
+                .waitingInteractive(waitingInteractive)
+                .waitingBulk(waitingBulk)
+                .interactiveAvgWaitMillis(interactive.avgMillis())
+                .interactiveMaxWaitMillis(TimeUnit.NANOSECONDS.toMillis(interactive.maxNanos.get()))
+                .bulkAvgWaitMillis(bulk.avgMillis())
+                .bulkMaxWaitMillis(TimeUnit.NANOSECONDS.toMillis(bulk.maxNanos.get()))
+                .floodWaitCount(floodWaitCount.get())
+                .lastRetryAfterSeconds(lastRetryAfterSeconds)
+                .build();
+    }
+
+    /**
+     * 等待bot和chat的令牌桶都有令牌
+     */
+    private void acquire(String botKey, String chatKey, RequestPriority priority) {
+        long start = System.nanoTime();
+        lock.lock();
+        waiting.merge(priority, 1, Integer::sum);
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                TokenBucket botBucket = botBuckets.computeIfAbsent(botKey,
+                        k -> new TokenBucket(botPermitsPerSecond, botBurst, now));
+                TokenBucket chatBucket = chatKey == null ? null : chatBuckets.computeIfAbsent(chatKey,
+                        k -> new TokenBucket(chatPermitsPerSecond, chatBurst, now));
+
+                long waitNanos = Math.max(botBucket.nanosUntilAvailable(now),
+                        chatBucket == null ? 0 : chatBucket.nanosUntilAvailable(now));
+                boolean yield = priority == RequestPriority.BULK
+                        && waiting.get(RequestPriority.INTERACTIVE) > 0
+                        && now - start < bulkMaxYieldNanos;
+
+                if (waitNanos == 0 && !yield) {
+                    botBucket.tryConsume(now);
+                    if (chatBucket != null) {
+                        chatBucket.tryConsume(now);
+                    }
+                    return;
+                }
+                long timeout = waitNanos > 0 ? waitNanos : bulkMaxYieldNanos - (now - start);
+                changed.awaitNanos(timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待Telegram限流令牌时被中断", e);
+        } finally {
+            waiting.merge(priority, -1, Integer::sum);
+            // 交互请求离开队列后唤醒让路中的批量请求
+            changed.signalAll();
+            lock.unlock();
+            waitStats.get(priority).record(System.nanoTime() - start);
+        }
+    }
+
+    private void pause(String botKey, String chatKey, int retryAfterSeconds) {
+        lock.lock();
+        try {
+            long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+            // 无法区分是bot级还是chat级限流，chat请求只暂停该chat，其余暂停整个bot
+            TokenBucket bucket = chatKey == null ? botBuckets.get(botKey) : chatBuckets.get(chatKey);
+            if (bucket != null) {
+                bucket.pauseUntil(until);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int retryAfterSeconds(BaseResponse response) {
+        if (response.parameters() != null && response.parameters().retryAfter() != null) {
+            return Math.max(1, response.parameters().retryAfter());
+        }
+        return 1;
+    }
+
+    private static class WaitStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private double avgMillis() {
+            long n = count.get();
+            return n == 0 ? 0 : totalNanos.get() / 1_000_000.0 / n;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.skydevs.tgdrive.telegram;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.skydevs.tgdrive.dto.TelegramTransportStats;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.time.Duration;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 与Telegram通信的共享HTTP客户端
+ * Bot API请求（所有bot）和文件下载共用同一个连接池和调度器，到api.telegram.org的连接可以互相复用；
+ * 支持HTTP/2时同一个连接上多路复用。通过EventListener统计连接复用和请求耗时
+ * <p>
+ * Dispatcher的并发限制只对异步请求生效，而Bot API请求和文件下载都是同步执行的，
+ * 因此由拦截器按总数和主机限制并发：请求在发出前获取许可，响应体关闭后归还
+ */
+@Component
+@Slf4j
+public class TelegramTransport {
+
+    private final OkHttpClient client;
+    private final ConnectionPool connectionPool;
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final long permitTimeoutNanos;
+    private final Semaphore requestPermits;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong connectsStarted = new AtomicLong();
+    private final AtomicLong connectionsAcquired = new AtomicLong();
+    private final AtomicLong http2Acquisitions = new AtomicLong();
+    private final AtomicLong headersNanos = new AtomicLong();
+    private final AtomicLong maxHeadersNanos = new AtomicLong();
+    private final AtomicLong headersCount = new AtomicLong();
+
+    public TelegramTransport(@Value("${app.telegram.http.max-requests:64}") int maxRequests,
+                             @Value("${app.telegram.http.max-requests-per-host:32}") int maxRequestsPerHost,
+                             @Value("${app.telegram.http.max-idle-connections:16}") int maxIdleConnections,
+                             @Value("${app.telegram.http.keep-alive:5m}") Duration keepAlive,
+                             @Value("${app.telegram.http.http2:true}") boolean http2,
+                             @Value("${app.telegram.http.connect-timeout:30s}") Duration connectTimeout,
+                             @Value("${app.telegram.http.read-timeout:60s}") Duration readTimeout,
+                             @Value("${app.telegram.http.write-timeout:60s}") Duration writeTimeout) {
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        // 等待许可相当于等待连接，超时时间与建立连接一致
+        this.permitTimeoutNanos = connectTimeout.toNanos();
+        this.requestPermits = new Semaphore(maxRequests, true);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        this.connectionPool = new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .addInterceptor(this::limitConcurrency)
+                // HTTP/2通过TLS ALPN协商，服务端不支持时自动使用HTTP/1.1
+                .protocols(http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .writeTimeout(writeTimeout)
+                .retryOnConnectionFailure(true)
+                .eventListenerFactory(call -> new MetricsListener())
+                .build();
+        log.info("Telegram HTTP客户端初始化完成，最大并发请求：{}，每个主机：{}，HTTP/2：{}", maxRequests, maxRequestsPerHost, http2);
+    }
+
+    /**
+     * 共享的HTTP客户端，用于下载Telegram文件，调用方必须关闭响应体以归还并发许可
+     */
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * 创建使用共享HTTP客户端的bot
+     * @param token bot token
+     */
+    public TelegramBot newBot(String token) {
+        return new TelegramBot.Builder(token).okHttpClient(client).build();
+    }
+
+    /**
+     * 获取HTTP客户端统计信息
+     */
+    public TelegramTransportStats getStats() {
+        long headers = headersCount.get();
+        return TelegramTransportStats.builder()
+                .calls(calls.get())
+                .failedCalls(failedCalls.get())
+                .runningCalls(maxRequests - requestPermits.availablePermits())
+                .queuedCalls(requestPermits.getQueueLength())
+                .connectionCount(connectionPool.connectionCount())
+                .idleConnectionCount(connectionPool.idleConnectionCount())
+                .connectionsAcquired(connectionsAcquired.get())
+                .newConnections(connectsStarted.get())
+                .http2Acquisitions(http2Acquisitions.get())
+                .avgHeadersMillis(headers == 0 ? 0 : headersNanos.get() / 1_000_000.0 / headers)
+                .maxHeadersMillis(maxHeadersNanos.get() / 1_000_000.0)
+                .build();
+    }
+
+    /**
+     * 限制同时进行的请求数，响应体关闭（或请求失败）后才归还许可，
+     * 文件下载在读完数据之前一直占用许可
+     */
+    private Response limitConcurrency(Interceptor.Chain chain) throws IOException {
+        String host = chain.request().url().host();
+        Semaphore hostLimit = hostPermits.computeIfAbsent(host, key -> new Semaphore(maxRequestsPerHost, true));
+        long deadline = System.nanoTime() + permitTimeoutNanos;
+        acquire(hostLimit, deadline, host);
+        try {
+            acquire(requestPermits, deadline, host);
+        } catch (IOException e) {
+            hostLimit.release();
+            throw e;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                requestPermits.release();
+                hostLimit.release();
+            }
+        };
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            release.run();
+            return response;
+        }
+        return response.newBuilder()
+                .body(ResponseBody.create(Okio.buffer(new ForwardingSource(body.source()) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            release.run();
+                        }
+                    }
+                }), body.contentType(), body.contentLength()))
+                .build();
+    }
+
+    private void acquire(Semaphore semaphore, long deadline, String host) throws IOException {
+        try {
+            if (!semaphore.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                log.warn("等待Telegram请求许可超时，主机：{}", host);
+                throw new IOException("Telegram请求过多，等待许可超时：" + host);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待Telegram请求许可时被中断");
+        }
+    }
+
+    /**
+     * 每个请求一个实例，记录从发出请求到收到响应头的时间
+     */
+    private class MetricsListener extends EventListener {
+        private long startNanos;
+
+        @Override
+        public void callStart(Call call) {
+            startNanos = System.nanoTime();
+            calls.incrementAndGet();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectsStarted.incrementAndGet();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            connectionsAcquired.incrementAndGet();
+            if (connection.protocol() == Protocol.HTTP_2) {
+                http2Acquisitions.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            long elapsed = System.nanoTime() - startNanos;
+            headersCount.incrementAndGet();
+            headersNanos.addAndGet(elapsed);
+            maxHeadersNanos.accumulateAndGet(elapsed, Math::max);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            failedCalls.incrementAndGet();
+        }
+    }
+}
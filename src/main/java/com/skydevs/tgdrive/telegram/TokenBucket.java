@@ -0,0 +1,76 @@
+package com.skydevs.tgdrive.telegram;
+
+/**
+ * 令牌桶
+ * 按固定速率补充令牌，最多积攒capacity个；支持按Telegram返回的retry_after整体暂停。
+ * 非线程安全，由 {@link TelegramRequestScheduler} 在锁内调用，时间由调用方传入（System.nanoTime()）
+ */
+public class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param capacity 桶容量，即允许的突发请求数
+     * @param nowNanos 当前时间
+     */
+    public TokenBucket(double permitsPerSecond, double capacity, long nowNanos) {
+        if (permitsPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("令牌桶速率必须大于0，容量不能小于1");
+        }
+        this.permitsPerNano = permitsPerSecond / 1_000_000_000.0;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+        this.pausedUntilNanos = nowNanos;
+    }
+
+    /**
+     * 距离下一个令牌可用还需要等待的时间
+     * @param nowNanos 当前时间
+     * @return 等待纳秒数，0表示可以立即获取
+     */
+    public long nanosUntilAvailable(long nowNanos) {
+        refill(nowNanos);
+        long pauseWait = Math.max(0, pausedUntilNanos - nowNanos);
+        long tokenWait = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+        return Math.max(pauseWait, tokenWait);
+    }
+
+    /**
+     * 尝试获取一个令牌
+     * @param nowNanos 当前时间
+     * @return 是否获取成功
+     */
+    public boolean tryConsume(long nowNanos) {
+        if (nanosUntilAvailable(nowNanos) > 0) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * 暂停到指定时间，期间不发放令牌，并清空已积攒的令牌避免恢复后立即突发
+     * @param untilNanos 恢复时间
+     */
+    public void pauseUntil(long untilNanos) {
+        if (untilNanos > pausedUntilNanos) {
+            pausedUntilNanos = untilNanos;
+            tokens = 0;
+            lastRefillNanos = Math.max(lastRefillNanos, untilNanos);
+        }
+    }
+
+    private void refill(long nowNanos) {
+        if (nowNanos > lastRefillNanos) {
+            tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * permitsPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
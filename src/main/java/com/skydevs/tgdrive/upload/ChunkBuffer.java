@@ -0,0 +1,67 @@
+package com.skydevs.tgdrive.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 从缓冲池借出的分块缓冲区
+ */
+public class ChunkBuffer implements AutoCloseable {
+
+    private final ChunkBufferPool pool;
+    private final byte[] data;
+    private final int permits;
+    private int length;
+    private boolean released;
+
+    ChunkBuffer(ChunkBufferPool pool, byte[] data, int permits) {
+        this.pool = pool;
+        this.data = data;
+        this.permits = permits;
+    }
+
+    /**
+     * 从输入流读满缓冲区，流结束时提前返回
+     * @param inputStream 输入流
+     * @return 实际读取的字节数
+     */
+    public int readFrom(InputStream inputStream) throws IOException {
+        length = 0;
+        while (length < data.length) {
+            int byteRead = inputStream.read(data, length, data.length - length);
+            if (byteRead == -1) {
+                break;
+            }
+            length += byteRead;
+        }
+        return length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 获取有效数据，缓冲区读满时直接返回底层数组，不做拷贝
+     */
+    public byte[] toBytes() {
+        return length == data.length ? data : Arrays.copyOf(data, length);
+    }
+
+    byte[] array() {
+        return data;
+    }
+
+    int permits() {
+        return permits;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!released) {
+            released = true;
+            pool.release(this);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.skydevs.tgdrive.upload;
+
+import com.skydevs.tgdrive.exception.file.UploadRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 上传分块缓冲池
+ * 普通上传和WebDAV PUT共享同一个内存预算，满分块大小的缓冲区会被复用，
+ * 避免每个分块都分配新的10MB大数组造成GC压力。
+ * 空闲的缓冲区继续占用预算，借出和空闲的缓冲区合计不超过max-memory；预算不足时先释放空闲的缓冲区
+ */
+@Component
+@Slf4j
+public class ChunkBufferPool {
+
+    // tg bot接口限制20MB，传10MB是最佳实践
+    public static final int CHUNK_SIZE = 10 * 1024 * 1024;
+
+    // 预算按KB计数，避免Semaphore许可数溢出
+    private static final int PERMIT_UNIT = 1024;
+    // 等待预算期间定期释放空闲缓冲区，避免刚归还的缓冲区占着预算
+    private static final long TRIM_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final int slabPermits;
+    private final Duration acquireTimeout;
+    // 空闲的满分块缓冲区，每个仍持有slabPermits个许可
+    private final ConcurrentLinkedQueue<byte[]> idleSlabs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public ChunkBufferPool(@Value("${app.upload.buffer-pool.max-memory:100MB}") DataSize maxMemory,
+                           @Value("${app.upload.buffer-pool.acquire-timeout:2m}") Duration acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+        long budget = Math.max(maxMemory.toBytes(), CHUNK_SIZE);
+        this.maxPermits = (int) Math.min(Integer.MAX_VALUE, budget / PERMIT_UNIT);
+        // 公平模式，先到的上传先拿到缓冲区
+        this.permits = new Semaphore(maxPermits, true);
+        this.slabPermits = toPermits(CHUNK_SIZE);
+        log.info("上传缓冲池初始化完成，内存预算：{} MB", budget / 1024 / 1024);
+    }
+
+    /**
+     * 获取缓冲区，内存预算不足时阻塞等待，超过acquire-timeout仍未等到则拒绝
+     * @param capacity 缓冲区大小
+     * @return 缓冲区，使用完毕后必须close归还
+     * @throws UploadRejectedException 等待缓冲区超时
+     */
+    public ChunkBuffer acquire(int capacity) throws InterruptedException {
+        if (capacity == CHUNK_SIZE) {
+            // 空闲缓冲区的许可直接转给借用方
+            byte[] slab = pollIdle();
+            if (slab != null) {
+                return new ChunkBuffer(this, slab, slabPermits);
+            }
+        }
+        int required = toPermits(capacity);
+        awaitPermits(required);
+        try {
+            return new ChunkBuffer(this, new byte[capacity], required);
+        } catch (Throwable t) {
+            permits.release(required);
+            throw t;
+        }
+    }
+
+    /**
+     * 等待预算，预算不足时释放空闲缓冲区；带超时的tryAcquire遵守公平性
+     */
+    private void awaitPermits(int required) throws InterruptedException {
+        if (permits.tryAcquire(required, 0, TimeUnit.NANOSECONDS)) {
+            return;
+        }
+        long deadline = System.nanoTime() + acquireTimeout.toNanos();
+        while (true) {
+            trimIdle();
+            long remaining = deadline - System.nanoTime();
+            if (permits.tryAcquire(required, Math.max(0, Math.min(remaining, TRIM_INTERVAL_NANOS)), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+            if (deadline - System.nanoTime() <= 0) {
+                log.warn("等待上传缓冲区超时（{}秒），当前占用 {} MB", acquireTimeout.toSeconds(), getUsedBytes() / 1024 / 1024);
+                throw new UploadRejectedException("服务器繁忙，等待上传缓冲区超时", acquireTimeout.toSeconds());
+            }
+        }
+    }
+
+    /**
+     * 归还缓冲区
+     * 满分块缓冲区在没有等待者时保留复用，连同许可一起放回空闲列表
+     */
+    void release(ChunkBuffer buffer) {
+        byte[] data = buffer.array();
+        if (data.length == CHUNK_SIZE && buffer.permits() == slabPermits && !permits.hasQueuedThreads()) {
+            idleCount.incrementAndGet();
+            idleSlabs.offer(data);
+            return;
+        }
+        permits.release(buffer.permits());
+    }
+
+    private byte[] pollIdle() {
+        byte[] slab = idleSlabs.poll();
+        if (slab != null) {
+            idleCount.decrementAndGet();
+        }
+        return slab;
+    }
+
+    /**
+     * 释放所有空闲缓冲区，归还它们占用的预算
+     */
+    private void trimIdle() {
+        while (pollIdle() != null) {
+            permits.release(slabPermits);
+        }
+    }
+
+    /**
+     * 当前借出的缓冲区占用的内存（字节），不含空闲的缓冲区
+     */
+    public long getUsedBytes() {
+        return Math.max(0, getResidentBytes() - getIdleBytes());
+    }
+
+    /**
+     * 空闲等待复用的缓冲区占用的内存（字节）
+     */
+    public long getIdleBytes() {
+        return (long) idleCount.get() * slabPermits * PERMIT_UNIT;
+    }
+
+    /**
+     * 借出和空闲的缓冲区合计占用的内存（字节），不超过内存预算
+     */
+    public long getResidentBytes() {
+        return (long) (maxPermits - permits.availablePermits()) * PERMIT_UNIT;
+    }
+
+    /**
+     * 内存预算（字节）
+     */
+    public long getMaxBytes() {
+        return (long) maxPermits * PERMIT_UNIT;
+    }
+
+    private int toPermits(int capacity) {
+        int required = (capacity + PERMIT_UNIT - 1) / PERMIT_UNIT;
+        return Math.max(1, Math.min(required, maxPermits));
+    }
+}
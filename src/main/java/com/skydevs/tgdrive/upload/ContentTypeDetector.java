@@ -0,0 +1,86 @@
+package com.skydevs.tgdrive.upload;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.Tika;
+import org.apache.tika.mime.MimeTypes;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 文件类型检测
+ * 根据文件头和文件名检测MIME类型，只在上传时执行一次，结果保存到files表
+ */
+@Component
+@Slf4j
+public class ContentTypeDetector {
+
+    /**
+     * 检测时读取的文件头长度
+     */
+    public static final int HEAD_SIZE = 64 * 1024;
+
+    public static final String DEFAULT_TYPE = "application/octet-stream";
+
+    // Tika实例线程安全，全局共享
+    private final Tika tika = new Tika();
+
+    /**
+     * 检测流的类型，读取文件头后reset，不消耗流
+     * @param inputStream 支持mark的输入流
+     * @param filename 文件名
+     * @return MIME类型
+     */
+    public String detect(InputStream inputStream, String filename) {
+        try {
+            inputStream.mark(HEAD_SIZE);
+            byte[] head = inputStream.readNBytes(HEAD_SIZE);
+            inputStream.reset();
+            return detect(head, filename);
+        } catch (IOException e) {
+            log.warn("读取文件头失败，只根据文件名检测类型：{}", e.getMessage());
+            return detect(new byte[0], filename);
+        }
+    }
+
+    /**
+     * 根据文件头检测类型
+     * @param head 文件开头的数据，超过HEAD_SIZE的部分不使用
+     * @param filename 文件名，可以为空
+     * @return MIME类型
+     */
+    public String detect(byte[] head, String filename) {
+        byte[] prefix = head.length > HEAD_SIZE ? Arrays.copyOf(head, HEAD_SIZE) : head;
+        try {
+            return tika.detect(prefix, filename);
+        } catch (RuntimeException e) {
+            log.warn("文件类型检测失败：{}", e.getMessage());
+            return DEFAULT_TYPE;
+        }
+    }
+
+    /**
+     * 只根据文件名检测类型
+     * @param filename 文件名
+     * @return MIME类型，无法识别时为application/octet-stream
+     */
+    public String detectByName(String filename) {
+        return tika.detect(filename);
+    }
+
+    /**
+     * 获取MIME类型对应的扩展名
+     * @param mimeType MIME类型
+     * @return 扩展名（带点），未知时返回空字符串
+     */
+    public String extensionOf(String mimeType) {
+        try {
+            return MimeTypes.getDefaultMimeTypes().forName(mimeType).getExtension();
+        } catch (Exception e) {
+            log.error("无法获取扩展名");
+            return "";
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.skydevs.tgdrive.upload;
+
+import com.skydevs.tgdrive.dto.UploadAdmissionStats;
+import com.skydevs.tgdrive.exception.file.UploadRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全局上传准入控制
+ * 限制整个进程同时进行的上传数，超出后公平排队，队列已满或排队超时则快速拒绝（503 + Retry-After）。
+ * 在途分块的内存由 {@link ChunkBufferPool} 的预算控制；在途分块任务数不超过上传线程池的线程数+队列容量，
+ * 分块任务不会因线程池饱和而落到调用线程上执行
+ */
+@Component
+@Slf4j
+public class UploadAdmissionController {
+
+    private final ChunkBufferPool chunkBufferPool;
+    private final int maxConcurrentUploads;
+    private final int maxQueueSize;
+    private final Duration queueTimeout;
+    private final long retryAfterSeconds;
+
+    private final Semaphore uploadPermits;
+    private final Semaphore chunkTaskPermits;
+    private final int maxChunkTasks;
+    private final AtomicLong admittedTotal = new AtomicLong();
+    private final AtomicLong rejectedTotal = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public UploadAdmissionController(ChunkBufferPool chunkBufferPool,
+                                     @Value("${app.upload.admission.max-concurrent-uploads:10}") int maxConcurrentUploads,
+                                     @Value("${app.upload.admission.max-queue-size:20}") int maxQueueSize,
+                                     @Value("${app.upload.admission.queue-timeout:30s}") Duration queueTimeout,
+                                     @Value("${app.upload.admission.retry-after:30}") long retryAfterSeconds,
+                                     @Value("${app.upload.executor.max-threads:20}") int uploadThreads,
+                                     @Value("${app.upload.executor.queue-capacity:100}") int uploadQueueCapacity) {
+        this.chunkBufferPool = chunkBufferPool;
+        this.maxConcurrentUploads = Math.max(1, maxConcurrentUploads);
+        this.maxQueueSize = Math.max(0, maxQueueSize);
+        this.queueTimeout = queueTimeout;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.uploadPermits = new Semaphore(this.maxConcurrentUploads, true);
+        this.maxChunkTasks = Math.max(1, uploadThreads + uploadQueueCapacity);
+        this.chunkTaskPermits = new Semaphore(maxChunkTasks, true);
+    }
+
+    /**
+     * 申请上传名额，必要时排队等待
+     * @return 上传凭证，上传结束后必须close归还
+     * @throws UploadRejectedException 队列已满或排队超时
+     */
+    public Ticket admit() {
+        long start = System.nanoTime();
+        try {
+            // 无参的tryAcquire会插队，带超时的tryAcquire遵守公平性，有上传在排队时新请求排到后面
+            if (!uploadPermits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                if (uploadPermits.getQueueLength() >= maxQueueSize) {
+                    rejectedTotal.incrementAndGet();
+                    log.warn("上传队列已满（{}），拒绝新的上传请求", maxQueueSize);
+                    throw new UploadRejectedException(retryAfterSeconds);
+                }
+                if (!uploadPermits.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                    rejectedTotal.incrementAndGet();
+                    log.warn("上传排队超时（{}秒），拒绝上传请求", queueTimeout.toSeconds());
+                    throw new UploadRejectedException(retryAfterSeconds);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedTotal.incrementAndGet();
+            throw new UploadRejectedException(retryAfterSeconds);
+        }
+        recordWait(System.nanoTime() - start);
+        admittedTotal.incrementAndGet();
+        return new Ticket();
+    }
+
+    /**
+     * 提交分块任务前获取名额，所有上传共享，名额用完时公平排队
+     * @throws InterruptedException 等待时被中断
+     */
+    public void acquireChunkTask() throws InterruptedException {
+        chunkTaskPermits.acquire();
+    }
+
+    /**
+     * 分块任务结束或未能提交时归还名额
+     */
+    public void releaseChunkTask() {
+        chunkTaskPermits.release();
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public UploadAdmissionStats getStats() {
+        long admitted = admittedTotal.get();
+        return UploadAdmissionStats.builder()
+                .maxConcurrentUploads(maxConcurrentUploads)
+                .activeUploads(maxConcurrentUploads - uploadPermits.availablePermits())
+                .queuedUploads(uploadPermits.getQueueLength())
+                .admittedTotal(admitted)
+                .rejectedTotal(rejectedTotal.get())
+                .avgWaitMillis(admitted == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / admitted)
+                .maxWaitMillis(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()))
+                .inFlightChunkBytes(chunkBufferPool.getUsedBytes())
+                .maxInFlightChunkBytes(chunkBufferPool.getMaxBytes())
+                .inFlightChunkTasks(maxChunkTasks - chunkTaskPermits.availablePermits())
+                .maxInFlightChunkTasks(maxChunkTasks)
+                .build();
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * 上传凭证
+     */
+    public class Ticket implements AutoCloseable {
+        private boolean released;
+
+        private Ticket() {
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                uploadPermits.release();
+            }
+        }
+    }
+}
@@ -49,6 +49,29 @@ public class StringUtil {
         }
     }
 
+    /**
+     * 获取父目录路径
+     * @param path 路径，目录以/结尾
+     * @return 以/结尾的父目录路径，根目录下的条目和根目录本身返回/
+     */
+    public static String getParentPath(String path) {
+        String trimmed = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        int index = trimmed.lastIndexOf('/');
+        return index <= 0 ? "/" : trimmed.substring(0, index + 1);
+    }
+
+    /**
+     * 获取子树范围的上界，子树中的路径都在 [path, 上界) 内，可以走webdav_path索引
+     * @param path 路径，目录以/结尾
+     * @return 目录返回把结尾的/换成0的路径（'0'是'/'的下一个字符）；文件没有子项，返回路径本身
+     */
+    public static String getSubtreeUpperBound(String path) {
+        if (!path.endsWith("/")) {
+            return path;
+        }
+        return path.substring(0, path.length() - 1) + "0";
+    }
+
     /**
      * 获取路径中的文件夹名字
      * @param path 路径
@@ -0,0 +1,112 @@
+package com.skydevs.tgdrive.webdav;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * WebDAV multistatus响应写入器
+ * 每个条目写完即进入输出流，不在内存中拼接整个XML文档，响应大小不影响内存占用；转义由StAX完成
+ */
+public class MultiStatusWriter implements AutoCloseable {
+
+    private static final String DAV_NAMESPACE = "DAV:";
+    private static final String STATUS_OK = "HTTP/1.1 200 OK";
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+    private static final DateTimeFormatter RFC1123_FORMATTER =
+            DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneId.of("GMT"));
+
+    private final OutputStream out;
+    private final XMLStreamWriter xml;
+
+    /**
+     * 写入文档开头和multistatus根元素
+     * @param out 响应输出流，关闭写入器时不会关闭
+     */
+    public MultiStatusWriter(OutputStream out) throws IOException {
+        this.out = out;
+        try {
+            this.xml = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeStartElement("D", "multistatus", DAV_NAMESPACE);
+            xml.writeNamespace("D", DAV_NAMESPACE);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * 写入一个条目的属性
+     * @param href 条目的href，调用方负责URL编码
+     * @param displayName 显示名称
+     * @param collection 是否为目录
+     * @param lastModified 修改时间，UNIX时间戳（秒）
+     * @param contentLength 文件大小，目录或大小未知时为null
+     */
+    public void writeEntry(String href, String displayName, boolean collection, long lastModified, Long contentLength) throws IOException {
+        try {
+            xml.writeStartElement("D", "response", DAV_NAMESPACE);
+            writeElement("href", href);
+            xml.writeStartElement("D", "propstat", DAV_NAMESPACE);
+            xml.writeStartElement("D", "prop", DAV_NAMESPACE);
+            writeElement("displayname", displayName);
+            writeElement("getlastmodified", RFC1123_FORMATTER.format(Instant.ofEpochSecond(lastModified)));
+            xml.writeStartElement("D", "resourcetype", DAV_NAMESPACE);
+            if (collection) {
+                xml.writeEmptyElement("D", "collection", DAV_NAMESPACE);
+            }
+            xml.writeEndElement();
+            if (!collection && contentLength != null) {
+                writeElement("getcontentlength", contentLength.toString());
+            }
+            xml.writeEndElement();
+            writeElement("status", STATUS_OK);
+            xml.writeEndElement();
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * 写入只有状态、没有属性的条目，用于PROPPATCH
+     * @param href 条目的href
+     */
+    public void writeStatus(String href) throws IOException {
+        try {
+            xml.writeStartElement("D", "response", DAV_NAMESPACE);
+            writeElement("href", href);
+            xml.writeStartElement("D", "propstat", DAV_NAMESPACE);
+            writeElement("status", STATUS_OK);
+            xml.writeEndElement();
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * 结束multistatus根元素并刷新输出流
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        out.flush();
+    }
+
+    private void writeElement(String name, String text) throws XMLStreamException {
+        xml.writeStartElement("D", name, DAV_NAMESPACE);
+        xml.writeCharacters(text == null ? "" : text);
+        xml.writeEndElement();
+    }
+}
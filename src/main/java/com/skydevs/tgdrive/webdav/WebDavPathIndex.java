@@ -0,0 +1,349 @@
+package com.skydevs.tgdrive.webdav;
+
+import com.skydevs.tgdrive.entity.FileInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * WebDAV路径索引
+ * 所有WebDAV条目按路径分段保存在内存中的前缀树里，按路径查找和列目录不需要查询数据库。
+ * 目录的分段带结尾的/，所以同名的文件和目录是两个节点；每个目录节点同时按小写分段索引子项，用于不区分大小写的查找。
+ * 查找不加锁，修改时先在树外构建好新的子树再整体替换，读到的总是替换前或替换后的完整子树。
+ * 另外按Telegram文件ID记录条目路径，按文件ID同步索引时不需要遍历整棵树
+ */
+@Component
+public class WebDavPathIndex {
+
+    private static final String ROOT_PATH = "/";
+
+    private final boolean enabled;
+    private volatile Node root = new Node(true);
+    // Telegram文件ID -> 使用它的条目路径，只在持有锁时修改
+    private volatile Map<String, Set<String>> pathsByFileId = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    private static final class Node {
+        private volatile FileInfo file;
+        // 文件节点没有子项，不分配map
+        private final Map<String, Node> children;
+        private final Map<String, Node> foldedChildren;
+
+        private Node(boolean dir) {
+            this.children = dir ? new ConcurrentHashMap<>() : null;
+            this.foldedChildren = dir ? new ConcurrentHashMap<>() : null;
+        }
+    }
+
+    public WebDavPathIndex(@Value("${app.webdav.path-index.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 索引是否可用，未启用或还没有加载时调用方查询数据库
+     */
+    public boolean isReady() {
+        return enabled && loaded;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 用全部WebDAV条目重建索引
+     * @param files 所有webdav_path以/开头的条目，按id升序
+     */
+    public synchronized void load(List<FileInfo> files) {
+        Node newRoot = new Node(true);
+        Map<String, Set<String>> newPaths = new ConcurrentHashMap<>();
+        for (FileInfo file : files) {
+            if (insert(newRoot, segments(file.getWebdavPath()), 0, file)) {
+                addPath(newPaths, file);
+            }
+        }
+        root = newRoot;
+        pathsByFileId = newPaths;
+        loaded = true;
+    }
+
+    /**
+     * 停用索引，同步失败、索引可能与数据库不一致时调用，再次load后恢复
+     */
+    public void invalidate() {
+        loaded = false;
+    }
+
+    /**
+     * 用数据库中的最新条目替换路径及其子树
+     * @param path 文件或目录路径，目录以/结尾
+     * @param files 数据库中 [path, StringUtil.getSubtreeUpperBound(path)) 范围内的条目，按id升序，为空表示已删除
+     */
+    public synchronized void replaceSubtree(String path, List<FileInfo> files) {
+        if (ROOT_PATH.equals(path)) {
+            load(files);
+            return;
+        }
+        List<String> segments = segments(path);
+        if (segments.isEmpty()) {
+            return;
+        }
+        String last = segments.get(segments.size() - 1);
+        Node subtree = new Node(isDirSegment(last));
+        List<FileInfo> inserted = new ArrayList<>(files.size());
+        for (FileInfo file : files) {
+            List<String> fileSegments = segments(file.getWebdavPath());
+            if (fileSegments.size() >= segments.size() && insert(subtree, fileSegments, segments.size(), file)) {
+                inserted.add(file);
+            }
+        }
+        Node parent = root;
+        List<Node> ancestors = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size() - 1; i++) {
+            ancestors.add(parent);
+            parent = child(parent, segments.get(i));
+        }
+        Node old = parent.children.get(last);
+        if (old != null) {
+            removePath(pathsByFileId, old.file);
+            visitDescendants(old, file -> removePath(pathsByFileId, file));
+        }
+        inserted.forEach(file -> addPath(pathsByFileId, file));
+        if (subtree.file == null && (subtree.children == null || subtree.children.isEmpty())) {
+            unlink(parent, last);
+            prune(ancestors, segments, parent);
+        } else {
+            Node previous = parent.children.put(last, subtree);
+            // 只有大小写不同的同名子项时保留已有的一个
+            parent.foldedChildren.compute(fold(last), (key, current) -> current == null || current == previous ? subtree : current);
+        }
+    }
+
+    /**
+     * 按路径精确查找
+     * @param path 文件或目录路径，目录以/结尾
+     * @return 条目，不存在时返回null
+     */
+    public FileInfo get(String path) {
+        Node node = find(path);
+        return node == null ? null : node.file;
+    }
+
+    /**
+     * 按路径不区分大小写地查找，每一级都先精确匹配
+     * @param path 文件或目录路径，目录以/结尾
+     * @return 条目，不存在时返回null
+     */
+    public FileInfo getIgnoreCase(String path) {
+        Node node = root;
+        for (String segment : segments(path)) {
+            if (node.children == null) {
+                return null;
+            }
+            Node child = node.children.get(segment);
+            if (child == null || child.file == null) {
+                Node folded = node.foldedChildren.get(fold(segment));
+                child = folded != null ? folded : child;
+            }
+            if (child == null) {
+                return null;
+            }
+            node = child;
+        }
+        return node.file;
+    }
+
+    /**
+     * 遍历目录的直接子项，直接遍历索引节点，不复制子项列表
+     * @param dirPath 目录路径，以/结尾，根目录为/
+     * @param action 对每个子项执行的操作
+     */
+    public void forEachChild(String dirPath, Consumer<FileInfo> action) {
+        Node node = find(dirPath);
+        if (node == null || node.children == null) {
+            return;
+        }
+        for (Node child : node.children.values()) {
+            FileInfo file = child.file;
+            if (file != null) {
+                action.accept(file);
+            }
+        }
+    }
+
+    /**
+     * 遍历目录下的所有条目（不含目录本身），深度优先
+     * @param dirPath 目录路径，以/结尾，根目录为/
+     * @param action 对每个条目执行的操作
+     */
+    public void forEachDescendant(String dirPath, Consumer<FileInfo> action) {
+        Node node = find(dirPath);
+        if (node != null) {
+            visitDescendants(node, action);
+        }
+    }
+
+    /**
+     * 查找使用某个Telegram文件ID的所有路径，按文件ID修改、删除条目后用于同步索引
+     * @param fileId Telegram文件ID
+     * @return 路径列表
+     */
+    public List<String> pathsOf(String fileId) {
+        Set<String> paths = pathsByFileId.get(fileId);
+        return paths == null ? List.of() : new ArrayList<>(paths);
+    }
+
+    /**
+     * 索引中的条目数
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * 把路径拆分为分段，目录分段保留结尾的/
+     * 例如 /a/b/c.txt 拆分为 a/、b/、c.txt，根目录没有分段
+     */
+    static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = path.startsWith("/") ? 1 : 0;
+        while (start < path.length()) {
+            int slash = path.indexOf('/', start);
+            if (slash < 0) {
+                segments.add(path.substring(start));
+                break;
+            }
+            segments.add(path.substring(start, slash + 1));
+            start = slash + 1;
+        }
+        return segments;
+    }
+
+    private Node find(String path) {
+        Node node = root;
+        for (String segment : segments(path)) {
+            node = node.children == null ? null : node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private static void visitDescendants(Node node, Consumer<FileInfo> action) {
+        if (node.children == null) {
+            return;
+        }
+        for (Node child : node.children.values()) {
+            FileInfo file = child.file;
+            if (file != null) {
+                action.accept(file);
+            }
+            visitDescendants(child, action);
+        }
+    }
+
+    /**
+     * @return 条目是否进入索引
+     */
+    private static boolean insert(Node base, List<String> segments, int from, FileInfo file) {
+        Node node = base;
+        for (int i = from; i < segments.size(); i++) {
+            if (node.children == null) {
+                // 文件下不会有子项，路径异常的条目不进入索引
+                return false;
+            }
+            node = child(node, segments.get(i));
+        }
+        // 同一路径有多条记录时保留id最小的，与数据库查询一致
+        if (node.file != null) {
+            return false;
+        }
+        node.file = file;
+        return true;
+    }
+
+    private static void addPath(Map<String, Set<String>> paths, FileInfo file) {
+        if (file.getFileId() != null) {
+            paths.computeIfAbsent(file.getFileId(), key -> ConcurrentHashMap.newKeySet()).add(file.getWebdavPath());
+        }
+    }
+
+    private static void removePath(Map<String, Set<String>> paths, FileInfo file) {
+        if (file == null || file.getFileId() == null) {
+            return;
+        }
+        Set<String> set = paths.get(file.getFileId());
+        if (set != null && set.remove(file.getWebdavPath()) && set.isEmpty()) {
+            paths.remove(file.getFileId(), set);
+        }
+    }
+
+    /**
+     * 获取子节点，不存在时创建，只在持有锁或构建新子树时调用
+     */
+    private static Node child(Node parent, String segment) {
+        Node node = parent.children.get(segment);
+        if (node == null) {
+            node = new Node(isDirSegment(segment));
+            parent.children.put(segment, node);
+            parent.foldedChildren.putIfAbsent(fold(segment), node);
+        }
+        return node;
+    }
+
+    private static boolean isDirSegment(String segment) {
+        return segment.endsWith("/");
+    }
+
+    private static String fold(String segment) {
+        return segment.toLowerCase(Locale.ROOT);
+    }
+
+    private static void unlink(Node parent, String segment) {
+        Node removed = parent.children.remove(segment);
+        if (removed == null) {
+            return;
+        }
+        String folded = fold(segment);
+        if (parent.foldedChildren.remove(folded, removed)) {
+            // 还有大小写不同的同名子项时改为指向它
+            for (Map.Entry<String, Node> entry : parent.children.entrySet()) {
+                if (fold(entry.getKey()).equals(folded)) {
+                    parent.foldedChildren.putIfAbsent(folded, entry.getValue());
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 删除子树后，去掉没有条目也没有子项的中间节点
+     */
+    private static void prune(List<Node> ancestors, List<String> segments, Node node) {
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            if (node.file != null || !node.children.isEmpty()) {
+                return;
+            }
+            unlink(ancestors.get(i), segments.get(i));
+            node = ancestors.get(i);
+        }
+    }
+
+    private static int size(Node node) {
+        int size = node.file != null ? 1 : 0;
+        if (node.children != null) {
+            for (Node child : node.children.values()) {
+                size += size(child);
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,25 @@
+-- 断点续传上传会话
+CREATE TABLE IF NOT EXISTS upload_sessions (
+    id TEXT PRIMARY KEY,
+    file_name TEXT NOT NULL,
+    file_size INTEGER NOT NULL,
+    chunk_size INTEGER NOT NULL,
+    total_chunks INTEGER NOT NULL,
+    user_id INTEGER,
+    status TEXT NOT NULL DEFAULT 'uploading',
+    file_id TEXT,
+    download_url TEXT,
+    create_time INTEGER NOT NULL,
+    update_time INTEGER NOT NULL
+);
+
+CREATE INDEX idx_upload_sessions_update_time ON upload_sessions(update_time);
+
+-- 已上传的分块及其Telegram文件ID
+CREATE TABLE IF NOT EXISTS upload_session_chunks (
+    session_id TEXT NOT NULL,
+    chunk_index INTEGER NOT NULL,
+    file_id TEXT NOT NULL,
+    size INTEGER NOT NULL,
+    PRIMARY KEY (session_id, chunk_index)
+);
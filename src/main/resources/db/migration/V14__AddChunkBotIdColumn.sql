@@ -0,0 +1,2 @@
+-- 断点续传分块所属的bot，为空表示主bot
+ALTER TABLE upload_session_chunks ADD COLUMN bot_id TEXT;
@@ -0,0 +1,10 @@
+-- 大文件的分块清单，file_id为files表中的文件ID（即记录文件ID）
+CREATE TABLE IF NOT EXISTS file_chunks (
+    file_id TEXT NOT NULL,
+    chunk_index INTEGER NOT NULL,
+    chunk_file_id TEXT NOT NULL,
+    bot_id TEXT,
+    chunk_offset INTEGER NOT NULL,
+    chunk_length INTEGER NOT NULL,
+    PRIMARY KEY (file_id, chunk_index)
+);
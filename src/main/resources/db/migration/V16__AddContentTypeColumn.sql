@@ -0,0 +1,5 @@
+-- 上传时根据文件头检测的MIME类型，下载时直接使用
+ALTER TABLE files ADD COLUMN content_type TEXT;
+
+-- 断点续传会话在第一个分块上传时检测MIME类型，完成时写入files表
+ALTER TABLE upload_sessions ADD COLUMN content_type TEXT;
@@ -0,0 +1,17 @@
+-- WebDAV目录树：parent_id为父目录在files表中的id，根目录下的条目为0，不在WebDAV中的文件为NULL
+ALTER TABLE files ADD COLUMN parent_id INTEGER;
+CREATE INDEX idx_files_parent_id ON files(parent_id);
+
+-- 根据已有的webdav_path回填：目录路径以/结尾，先去掉结尾的/，rtrim再去掉最后一个/之后的字符即为父目录路径
+-- 父目录记录不存在的条目保持NULL，启动时由FileTreeService补建目录
+UPDATE files SET parent_id = CASE
+    WHEN (CASE WHEN files.webdav_path LIKE '%/'
+               THEN rtrim(substr(files.webdav_path, 1, length(files.webdav_path) - 1), replace(substr(files.webdav_path, 1, length(files.webdav_path) - 1), '/', ''))
+               ELSE rtrim(files.webdav_path, replace(files.webdav_path, '/', '')) END) = '/' THEN 0
+    ELSE (SELECT p.id FROM files p WHERE p.dir = 1 AND p.webdav_path =
+            (CASE WHEN files.webdav_path LIKE '%/'
+                  THEN rtrim(substr(files.webdav_path, 1, length(files.webdav_path) - 1), replace(substr(files.webdav_path, 1, length(files.webdav_path) - 1), '/', ''))
+                  ELSE rtrim(files.webdav_path, replace(files.webdav_path, '/', '')) END)
+          ORDER BY p.id LIMIT 1)
+END
+WHERE webdav_path LIKE '/%' AND webdav_path != '/';
@@ -0,0 +1,24 @@
+-- 文件名全文索引：trigram分词按3个字符的片段建索引，MATCH可以匹配文件名中任意位置的子串（包括中文），不区分大小写
+-- 外部内容表，不重复存储文件名，由触发器与files表同步
+CREATE VIRTUAL TABLE IF NOT EXISTS files_fts USING fts5(
+    file_name,
+    content = 'files',
+    content_rowid = 'id',
+    tokenize = 'trigram'
+);
+
+CREATE TRIGGER IF NOT EXISTS files_fts_insert AFTER INSERT ON files BEGIN
+    INSERT INTO files_fts (rowid, file_name) VALUES (new.id, new.file_name);
+END;
+
+CREATE TRIGGER IF NOT EXISTS files_fts_delete AFTER DELETE ON files BEGIN
+    INSERT INTO files_fts (files_fts, rowid, file_name) VALUES ('delete', old.id, old.file_name);
+END;
+
+CREATE TRIGGER IF NOT EXISTS files_fts_update AFTER UPDATE OF file_name ON files BEGIN
+    INSERT INTO files_fts (files_fts, rowid, file_name) VALUES ('delete', old.id, old.file_name);
+    INSERT INTO files_fts (rowid, file_name) VALUES (new.id, new.file_name);
+END;
+
+-- 为已有的文件建立索引
+INSERT INTO files_fts (files_fts) VALUES ('rebuild');
@@ -0,0 +1,8 @@
+-- 文件列表按 (upload_time, id) 倒序分页，游标分页时直接从索引中上一页结束的位置继续读
+CREATE INDEX IF NOT EXISTS idx_files_upload_time_id ON files(upload_time DESC, id DESC);
+-- 按用户筛选和只看公开文件时同样按索引顺序读取，不需要排序
+CREATE INDEX IF NOT EXISTS idx_files_user_upload_time ON files(user_id, upload_time DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_files_public_upload_time ON files(is_public, upload_time DESC, id DESC);
+-- 被上面的组合索引覆盖
+DROP INDEX IF EXISTS idx_user_id;
+DROP INDEX IF EXISTS idx_is_public;
@@ -0,0 +1,88 @@
+package com.skydevs.tgdrive.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 比较平台线程池和虚拟线程同时能进行的传输数
+ * 每个传输用一次阻塞等待模拟一次Telegram请求，不访问网络。
+ * 类名不以Test结尾，mvn test不会执行，需要时手动运行：
+ * mvn test -Dtest=TransferConcurrencyBenchmark（虚拟线程部分需要Java 21）
+ */
+public class TransferConcurrencyBenchmark {
+
+    private static final int TRANSFERS = 200;
+    private static final long TRANSFER_MILLIS = 200;
+
+    @Test
+    public void commonPool() {
+        // 改动前 FileController 使用的公共ForkJoinPool，线程数等于CPU核数
+        report("commonPool", run(ForkJoinPool.commonPool()));
+    }
+
+    @Test
+    public void platformThreadPool() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolConfig().downloadTaskExecutor();
+        try {
+            Result result = run(executor);
+            report("platform downloadTaskExecutor", result);
+            // 最大线程数 + CallerRunsPolicy 下的提交线程
+            assertTrue(result.peak <= executor.getMaxPoolSize() + 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    public void virtualThreads() {
+        SimpleAsyncTaskExecutor executor = new VirtualThreadConfig().downloadTaskExecutor();
+        try {
+            Result result = run(executor);
+            report("virtual downloadTaskExecutor", result);
+            assertEquals(TRANSFERS, result.peak);
+        } finally {
+            executor.close();
+        }
+    }
+
+    private Result run(Executor executor) {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < TRANSFERS; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(TRANSFER_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+            }, executor));
+        }
+        futures.forEach(CompletableFuture::join);
+        return new Result(peak.get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void report(String name, Result result) {
+        System.out.printf("%-32s %d 个传输，最多同时进行 %d 个，耗时 %d ms%n", name, TRANSFERS, result.peak, result.millis);
+    }
+
+    private record Result(int peak, long millis) {
+    }
+}
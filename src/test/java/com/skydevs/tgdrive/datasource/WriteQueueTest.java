@@ -0,0 +1,111 @@
+package com.skydevs.tgdrive.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteQueueTest {
+
+    @TempDir
+    Path dir;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private WriteQueue writeQueue;
+
+    @BeforeEach
+    public void setUp() {
+        // 单连接数据源，相当于WAL模式下的写连接
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + dir.resolve("test.db"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE t (v INTEGER NOT NULL)");
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        writeQueue = new WriteQueue(transactionManager, 100, 64);
+        writeQueue.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        writeQueue.stop();
+        dataSource.destroy();
+    }
+
+    @Test
+    public void concurrentWritesAreBatchedAndFailuresIsolated() throws Exception {
+        int threads = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        // 先占住写线程，让其余写入在队列中积压
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> blocker = CompletableFuture.runAsync(() -> writeQueue.run(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }), executor);
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < threads - 1; i++) {
+            int value = i;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                // 违反NOT NULL约束的写入只回滚自己的保存点
+                return writeQueue.execute(() -> jdbcTemplate.update("INSERT INTO t (v) VALUES (?)", value == 7 ? null : value));
+            }, executor));
+        }
+        start.countDown();
+        while (writeQueue.getQueueDepth() < threads - 1) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        blocker.join();
+
+        int failed = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            try {
+                assertEquals(1, future.join());
+            } catch (RuntimeException e) {
+                failed++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, failed);
+        assertEquals(threads - 2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM t", Integer.class));
+        assertEquals(threads, writeQueue.getWrites());
+        assertEquals(1, writeQueue.getFailedWrites());
+        // 一个批次给占位的写入，积压的写入合并到一个批次
+        assertEquals(2, writeQueue.getBatches());
+        assertEquals(threads - 1, writeQueue.getMaxQueueDepth());
+    }
+
+    @Test
+    public void runsInlineInsideTransaction() {
+        // 调用方已经持有写连接时在当前事务中直接执行，不经过队列
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                writeQueue.run(() -> jdbcTemplate.update("INSERT INTO t (v) VALUES (1)")));
+        assertEquals(0, writeQueue.getWrites());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM t", Integer.class));
+    }
+}
@@ -0,0 +1,85 @@
+package com.skydevs.tgdrive.download;
+
+import com.skydevs.tgdrive.entity.FileChunk;
+import com.skydevs.tgdrive.exception.file.RangeNotSatisfiableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteRangeTest {
+
+    private static final String TAG = "\"file-1\"";
+
+    private HttpHeaders range(String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, value);
+        return headers;
+    }
+
+    @Test
+    public void parseSingleRange() {
+        ByteRange range = ByteRange.parse(range("bytes=100-199"), 1000, TAG);
+        assertEquals(100, range.getStart());
+        assertEquals(199, range.getEnd());
+        assertEquals(100, range.length());
+        assertEquals("bytes 100-199/1000", range.toContentRange());
+
+        ByteRange suffix = ByteRange.parse(range("bytes=-10"), 1000, TAG);
+        assertEquals(990, suffix.getStart());
+        assertEquals(999, suffix.getEnd());
+
+        ByteRange open = ByteRange.parse(range("bytes=900-"), 1000, TAG);
+        assertEquals(999, open.getEnd());
+    }
+
+    @Test
+    public void fullContentWhenRangeIgnored() {
+        assertNull(ByteRange.parse(new HttpHeaders(), 1000, TAG));
+        assertNull(ByteRange.parse(range("bytes=0-1,5-6"), 1000, TAG));
+        assertNull(ByteRange.parse(range("items=0-1"), 1000, TAG));
+
+        HttpHeaders stale = range("bytes=0-1");
+        stale.set(HttpHeaders.IF_RANGE, "\"other\"");
+        assertNull(ByteRange.parse(stale, 1000, TAG));
+
+        HttpHeaders fresh = range("bytes=0-1");
+        fresh.set(HttpHeaders.IF_RANGE, TAG);
+        assertNotNull(ByteRange.parse(fresh, 1000, TAG));
+    }
+
+    @Test
+    public void unsatisfiableRange() {
+        RangeNotSatisfiableException e = assertThrows(RangeNotSatisfiableException.class,
+                () -> ByteRange.parse(range("bytes=1000-"), 1000, TAG));
+        assertEquals(1000, e.getTotal());
+    }
+
+    @Test
+    public void mapRangeToOverlappingChunks() {
+        // 3个10字节分块 + 1个5字节分块
+        List<FileChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            chunks.add(FileChunk.builder().chunkIndex(i).chunkFileId("c" + i)
+                    .chunkOffset(i * 10L).chunkLength(i == 3 ? 5L : 10L).build());
+        }
+
+        List<ChunkSlice> slices = ChunkSlice.overlapping(chunks, 15, 24);
+        assertEquals(2, slices.size());
+        assertEquals("c1", slices.get(0).getChunk().getChunkFileId());
+        assertEquals(5, slices.get(0).getOffsetInChunk());
+        assertEquals(5, slices.get(0).getLength());
+        assertEquals("c2", slices.get(1).getChunk().getChunkFileId());
+        assertEquals(0, slices.get(1).getOffsetInChunk());
+        assertEquals(5, slices.get(1).getLength());
+
+        List<ChunkSlice> tail = ChunkSlice.overlapping(chunks, 30, 34);
+        assertEquals(1, tail.size());
+        assertTrue(tail.get(0).isWholeChunk());
+
+        assertEquals(4, ChunkSlice.overlapping(chunks, 0, 34).size());
+    }
+}
@@ -0,0 +1,174 @@
+package com.skydevs.tgdrive.download;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkDiskCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private ChunkDiskCache newCache(long maxBytes) {
+        return new ChunkDiskCache(true, dir.toString(), DataSize.ofBytes(maxBytes));
+    }
+
+    private static ByteArrayInputStream bytes(int length) {
+        return new ByteArrayInputStream(new byte[length]);
+    }
+
+    @Test
+    public void putThenOpenReturnsCachedFile() throws IOException {
+        ChunkDiskCache cache = newCache(100);
+        assertNull(cache.open("a"));
+
+        assertTrue(cache.put("a", new ByteArrayInputStream("hello".getBytes()), 5));
+        try (CachedFile file = cache.open("a"); InputStream inputStream = file.newInputStream(0)) {
+            assertEquals(5, file.getSize());
+            assertEquals("hello", new String(inputStream.readAllBytes()));
+        }
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        ChunkDiskCache cache = newCache(100);
+        cache.put("a", bytes(40), 40);
+        cache.put("b", bytes(40), 40);
+        cache.open("a").close();
+        cache.put("c", bytes(40), 40);
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(80, cache.getStats().getUsedBytes());
+    }
+
+    @Test
+    public void rejectsEntryLargerThanBudget() throws IOException {
+        ChunkDiskCache cache = newCache(10);
+        assertFalse(cache.canCache(11));
+        assertFalse(cache.put("a", bytes(11), 11));
+        assertEquals(0, cache.getStats().getEntryCount());
+    }
+
+    @Test
+    public void incompleteWriteLeavesNoFile() throws IOException {
+        ChunkDiskCache cache = newCache(100);
+        assertThrows(EOFException.class, () -> cache.put("a", bytes(5), 10));
+        assertNull(cache.open("a"));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void restoresEntriesOnRestart() throws IOException {
+        newCache(100).put("a", bytes(30), 30);
+        Files.writeString(dir.resolve("leftover.tmp"), "partial");
+
+        ChunkDiskCache cache = newCache(100);
+        assertTrue(cache.contains("a"));
+        assertEquals(30, cache.getStats().getUsedBytes());
+        assertFalse(Files.exists(dir.resolve("leftover.tmp")));
+    }
+
+    @Test
+    public void openedFileSurvivesEviction() throws IOException {
+        ChunkDiskCache cache = newCache(100);
+        cache.put("a", new ByteArrayInputStream("0123456789".getBytes()), 10);
+
+        try (CachedFile file = cache.open("a")) {
+            // 打开后被淘汰，文件已从目录中删除
+            cache.put("b", bytes(95), 95);
+            assertFalse(cache.contains("a"));
+            assertFalse(Files.exists(file.getPath()));
+
+            try (InputStream inputStream = file.newInputStream(3)) {
+                assertEquals("3456789", new String(inputStream.readAllBytes()));
+            }
+        }
+    }
+
+    @Test
+    public void leasedEntryIsNotEvicted() throws IOException {
+        ChunkDiskCache cache = newCache(100);
+        cache.put("a", bytes(40), 40);
+        cache.put("b", bytes(40), 40);
+
+        try (CachedFile a = cache.open("a"); CachedFile b = cache.open("b")) {
+            assertTrue(cache.lease(a, Duration.ofMinutes(1)));
+            // a最久未使用，但在租期内，改为淘汰b
+            cache.open("b").close();
+            cache.put("c", bytes(40), 40);
+
+            assertTrue(Files.exists(a.getPath()));
+            assertFalse(cache.contains("b"));
+            // 已被淘汰的文件不能再租用
+            assertFalse(cache.lease(b, Duration.ofMinutes(1)));
+        }
+    }
+
+    @Test
+    public void fillCachesAfterFullRead() throws IOException {
+        ChunkDiskCache cache = newCache(100);
+
+        InputStream filling = cache.fill("a", new ByteArrayInputStream("hello".getBytes()), 5);
+        assertFalse(filling instanceof ByteArrayInputStream);
+        // 写入期间其他请求直接读取上游
+        ByteArrayInputStream other = bytes(5);
+        assertSame(other, cache.fill("a", other, 5));
+        // 读的过程中就能拿到数据，关闭前缓存还不可见
+        assertEquals('h', filling.read());
+        assertNull(cache.open("a"));
+        assertEquals("ello", new String(filling.readNBytes(4)));
+        filling.close();
+
+        try (CachedFile file = cache.open("a"); InputStream inputStream = file.newInputStream(0)) {
+            assertEquals("hello", new String(inputStream.readAllBytes()));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void abortedFillLeavesNoFile() throws IOException {
+        ChunkDiskCache cache = newCache(100);
+
+        InputStream filling = cache.fill("a", bytes(10), 10);
+        filling.readNBytes(4);
+        filling.close();
+        assertNull(cache.open("a"));
+
+        // 跳过的数据没有写入，也不会缓存
+        filling = cache.fill("a", bytes(10), 10);
+        filling.skip(4);
+        filling.readAllBytes();
+        filling.close();
+        assertNull(cache.open("a"));
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+        // 放弃后可以重新写入
+        filling = cache.fill("a", bytes(10), 10);
+        filling.readAllBytes();
+        filling.close();
+        try (CachedFile file = cache.open("a")) {
+            assertNotNull(file);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.skydevs.tgdrive.download;
+
+import com.skydevs.tgdrive.entity.FileChunk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkPrefetcherTest {
+
+    private ThreadPoolTaskExecutor executor;
+
+    @BeforeEach
+    public void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.initialize();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    private List<ChunkSlice> slices(int count) {
+        List<ChunkSlice> slices = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            FileChunk chunk = FileChunk.builder().chunkIndex(i).chunkFileId("c" + i).chunkOffset((long) i).chunkLength(1L).build();
+            slices.add(new ChunkSlice(chunk, 0, 1));
+        }
+        return slices;
+    }
+
+    @Test
+    public void deliversInOrderWithinWindow() throws IOException {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ChunkFetcher fetcher = slice -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                // 后面的分块先完成，检验输出顺序
+                Thread.sleep(20 - slice.getChunk().getChunkIndex());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return new ByteArrayInputStream(new byte[]{(byte) (int) slice.getChunk().getChunkIndex()});
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ChunkPrefetcher(executor, 3, DataSize.ofMegabytes(200)).stream(slices(10), fetcher, out);
+
+        assertArrayEquals(new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, out.toByteArray());
+        assertTrue(maxInFlight.get() <= 3);
+    }
+
+    @Test
+    public void stopsFetchingWhenClientDisconnects() {
+        AtomicInteger opened = new AtomicInteger();
+        ChunkFetcher fetcher = slice -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(new byte[]{1});
+        };
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class, () -> new ChunkPrefetcher(executor, 2, DataSize.ofMegabytes(200)).stream(slices(100), fetcher, broken));
+        assertTrue(opened.get() <= 2);
+    }
+
+    @Test
+    public void concurrentDownloadsShareFetch() throws Exception {
+        AtomicInteger opened = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ChunkFetcher fetcher = slice -> {
+            opened.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ByteArrayInputStream(new byte[]{(byte) (int) slice.getChunk().getChunkIndex()});
+        };
+        ChunkPrefetcher prefetcher = new ChunkPrefetcher(executor, 1, DataSize.ofMegabytes(200));
+        List<ChunkSlice> slices = slices(1);
+
+        ExecutorService clients = Executors.newFixedThreadPool(5);
+        List<Future<byte[]>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(clients.submit(() -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                prefetcher.stream(slices, fetcher, out);
+                return out.toByteArray();
+            }));
+        }
+        // 等所有下载都订阅后再放行
+        while (prefetcher.getCoalescedFetches() < 4) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        for (Future<byte[]> result : results) {
+            assertArrayEquals(new byte[]{0}, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, opened.get());
+        clients.shutdown();
+    }
+
+    @Test
+    public void streamsDirectlyWhenMemoryBudgetExhausted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ChunkFetcher fetcher = slice -> {
+            if ("held".equals(slice.getChunk().getChunkFileId())) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new ByteArrayInputStream(new byte[]{(byte) (int) slice.getChunk().getChunkIndex()});
+        };
+        // 预算只够一个片段
+        ChunkPrefetcher prefetcher = new ChunkPrefetcher(executor, 3, DataSize.ofBytes(1024));
+
+        // 另一个下载占住全部预算
+        FileChunk held = FileChunk.builder().chunkIndex(9).chunkFileId("held").chunkOffset(0L).chunkLength(1L).build();
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        Future<?> holder = client.submit(() -> {
+            prefetcher.stream(List.of(new ChunkSlice(held, 0, 1)), fetcher, new ByteArrayOutputStream());
+            return null;
+        });
+        while (prefetcher.getUsedBytes() == 0) {
+            Thread.sleep(5);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        prefetcher.stream(slices(6), fetcher, out);
+        assertArrayEquals(new byte[]{0, 1, 2, 3, 4, 5}, out.toByteArray());
+        assertEquals(6, prefetcher.getDirectFetches());
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals(0, prefetcher.getUsedBytes());
+        client.shutdown();
+    }
+
+    @Test
+    public void writesBeforeSliceIsComplete() throws Exception {
+        CountDownLatch firstByteWritten = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ChunkFetcher fetcher = slice -> new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                if (position == 1) {
+                    // 第一个字节写出后才返回剩余数据
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                return position < 2 ? position++ : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                // 每次只返回一个字节
+                int value = read();
+                if (value == -1) {
+                    return -1;
+                }
+                b[off] = (byte) value;
+                return 1;
+            }
+        };
+        FileChunk chunk = FileChunk.builder().chunkIndex(0).chunkFileId("c0").chunkOffset(0L).chunkLength(2L).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                super.write(b, off, len);
+                firstByteWritten.countDown();
+            }
+        };
+
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        Future<?> result = client.submit(() -> {
+            new ChunkPrefetcher(executor, 1, DataSize.ofMegabytes(1)).stream(List.of(new ChunkSlice(chunk, 0, 2)), fetcher, out);
+            return null;
+        });
+        assertTrue(firstByteWritten.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        result.get(5, TimeUnit.SECONDS);
+        assertArrayEquals(new byte[]{0, 1}, out.toByteArray());
+        client.shutdown();
+    }
+}
@@ -0,0 +1,72 @@
+package com.skydevs.tgdrive.download;
+
+import com.skydevs.tgdrive.entity.FileInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DownloadCachePolicyTest {
+
+    private static final long UPLOAD_TIME = 1700000000L;
+
+    private final DownloadCachePolicy policy = new DownloadCachePolicy(Duration.ofDays(365));
+
+    private FileInfo stored(boolean isPublic) {
+        return FileInfo.builder().fileId("file-1").uploadTime(UPLOAD_TIME).isPublic(isPublic).build();
+    }
+
+    @Test
+    public void ifNoneMatch() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("\"other\", \"file-1\"");
+        assertTrue(policy.isNotModified(headers, "file-1", stored(true)));
+
+        HttpHeaders weak = new HttpHeaders();
+        weak.setIfNoneMatch("W/\"file-1\"");
+        assertTrue(policy.isNotModified(weak, "file-1", null));
+
+        HttpHeaders any = new HttpHeaders();
+        any.setIfNoneMatch("*");
+        assertTrue(policy.isNotModified(any, "file-1", null));
+
+        // If-None-Match不匹配时忽略If-Modified-Since
+        HttpHeaders mismatch = new HttpHeaders();
+        mismatch.setIfNoneMatch("\"other\"");
+        mismatch.setIfModifiedSince(UPLOAD_TIME * 1000);
+        assertFalse(policy.isNotModified(mismatch, "file-1", stored(true)));
+    }
+
+    @Test
+    public void ifModifiedSince() {
+        HttpHeaders same = new HttpHeaders();
+        same.setIfModifiedSince(UPLOAD_TIME * 1000);
+        assertTrue(policy.isNotModified(same, "file-1", stored(false)));
+
+        HttpHeaders earlier = new HttpHeaders();
+        earlier.setIfModifiedSince((UPLOAD_TIME - 60) * 1000);
+        assertFalse(policy.isNotModified(earlier, "file-1", stored(false)));
+
+        // 没有上传时间无法比较
+        assertFalse(policy.isNotModified(same, "file-1", null));
+        assertFalse(policy.isNotModified(new HttpHeaders(), "file-1", stored(false)));
+        assertFalse(policy.isNotModified(null, "file-1", stored(false)));
+    }
+
+    @Test
+    public void responseHeaders() {
+        HttpHeaders publicHeaders = new HttpHeaders();
+        policy.apply(publicHeaders, "file-1", stored(true));
+        assertEquals("\"file-1\"", publicHeaders.getETag());
+        assertEquals(UPLOAD_TIME * 1000, publicHeaders.getLastModified());
+        assertEquals("max-age=31536000, public, immutable", publicHeaders.getCacheControl());
+
+        HttpHeaders privateHeaders = new HttpHeaders();
+        policy.apply(privateHeaders, "file-1", null);
+        assertEquals("\"file-1\"", privateHeaders.getETag());
+        assertEquals(-1, privateHeaders.getLastModified());
+        assertEquals("no-cache, private", privateHeaders.getCacheControl());
+    }
+}
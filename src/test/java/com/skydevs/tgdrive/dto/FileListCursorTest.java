@@ -0,0 +1,24 @@
+package com.skydevs.tgdrive.dto;
+
+import com.skydevs.tgdrive.exception.file.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileListCursorTest {
+
+    @Test
+    public void roundTrip() {
+        FileListCursor cursor = new FileListCursor(1700000000L, 42L);
+        assertEquals(cursor, FileListCursor.decode(cursor.encode()));
+        assertNull(FileListCursor.decode(null));
+        assertNull(FileListCursor.decode(""));
+    }
+
+    @Test
+    public void rejectsMalformedCursor() {
+        assertThrows(InvalidCursorException.class, () -> FileListCursor.decode("not base64!"));
+        assertThrows(InvalidCursorException.class, () -> FileListCursor.decode("MTIz"));
+        assertThrows(InvalidCursorException.class, () -> FileListCursor.decode("YTpi"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.skydevs.tgdrive.dto;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileSearchTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE files (id INTEGER PRIMARY KEY AUTOINCREMENT, file_name TEXT NOT NULL)");
+            stmt.execute("CREATE VIRTUAL TABLE files_fts USING fts5(file_name, content = 'files', content_rowid = 'id', tokenize = 'trigram')");
+            stmt.execute("INSERT INTO files (file_name) VALUES ('我的文档.pdf'), ('Holiday Photo.JPG'), ('report_2024.xlsx'), ('100%_done.txt'), ('say \"hi\".md')");
+            stmt.execute("INSERT INTO files_fts (files_fts) VALUES ('rebuild')");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void parse() {
+        assertNull(FileSearch.of(null));
+        assertNull(FileSearch.of("  "));
+
+        FileSearch search = FileSearch.of(" report  文档 x_ ");
+        assertEquals("file_name : (\"report\")", search.getMatch());
+        assertEquals(List.of("文档", "x\\_"), search.getLikeTerms());
+
+        assertNull(FileSearch.of("ab").getMatch());
+    }
+
+    @Test
+    public void matchesSubstringsCaseInsensitively() throws SQLException {
+        assertEquals(List.of("Holiday Photo.JPG"), search("PHOTO"));
+        assertEquals(List.of("我的文档.pdf"), search("的文档"));
+        assertEquals(List.of("我的文档.pdf"), search("文档"));
+        assertEquals(List.of("report_2024.xlsx"), search("xls 2024"));
+        assertEquals(List.of("report_2024.xlsx"), search("t_"));
+        assertEquals(List.of("100%_done.txt"), search("0%"));
+        assertEquals(List.of("say \"hi\".md"), search("\"hi\""));
+        assertEquals(List.of(), search("report photo"));
+        // FTS5语法字符作为普通字符匹配
+        assertEquals(List.of(), search("NOT report*"));
+    }
+
+    private List<String> search(String keyword) throws SQLException {
+        FileSearch search = FileSearch.of(keyword);
+        StringBuilder sql = new StringBuilder("SELECT file_name FROM files f WHERE 1=1");
+        List<String> params = new ArrayList<>();
+        if (search.getMatch() != null) {
+            sql.append(" AND f.id IN (SELECT rowid FROM files_fts WHERE files_fts MATCH ?)");
+            params.add(search.getMatch());
+        }
+        for (String term : search.getLikeTerms()) {
+            sql.append(" AND f.file_name LIKE '%' || ? || '%' ESCAPE '\\'");
+            params.add(term);
+        }
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql.append(" ORDER BY f.id").toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setString(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                }
+            }
+        }
+        return names;
+    }
+}
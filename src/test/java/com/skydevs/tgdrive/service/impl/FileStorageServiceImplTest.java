@@ -0,0 +1,147 @@
+package com.skydevs.tgdrive.service.impl;
+
+import com.pengrad.telegrambot.model.Document;
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.request.SendDocument;
+import com.pengrad.telegrambot.response.SendResponse;
+import com.skydevs.tgdrive.service.TelegramBotService;
+import com.skydevs.tgdrive.telegram.BotEndpoint;
+import com.skydevs.tgdrive.telegram.RequestPriority;
+import com.skydevs.tgdrive.upload.ChunkBufferPool;
+import com.skydevs.tgdrive.upload.UploadAdmissionController;
+import com.skydevs.tgdrive.websocket.UploadProgressWebSocketHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class FileStorageServiceImplTest {
+
+    private static final int CHUNK = ChunkBufferPool.CHUNK_SIZE;
+
+    private ThreadPoolTaskExecutor executor;
+    private ChunkBufferPool pool;
+    private TelegramBotService telegramBotService;
+    private UploadAdmissionController admission;
+    private FileStorageServiceImpl service;
+
+    @BeforeEach
+    public void setUp() {
+        // 单线程，第一个分块上传时其余分块都在队列中；分块任务名额为 线程数1 + 队列容量3
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.initialize();
+        pool = new ChunkBufferPool(DataSize.ofMegabytes(100), Duration.ofSeconds(5));
+        telegramBotService = mock(TelegramBotService.class);
+        when(telegramBotService.getUploadBotCount()).thenReturn(1);
+        when(telegramBotService.nextUploadBot()).thenReturn(mock(BotEndpoint.class));
+
+        service = new FileStorageServiceImpl();
+        ReflectionTestUtils.setField(service, "telegramBotService", telegramBotService);
+        ReflectionTestUtils.setField(service, "uploadProgressWebSocketHandler", mock(UploadProgressWebSocketHandler.class));
+        ReflectionTestUtils.setField(service, "uploadTaskExecutor", executor);
+        ReflectionTestUtils.setField(service, "chunkBufferPool", pool);
+        admission = new UploadAdmissionController(pool, 10, 20, Duration.ofSeconds(30), 30, 1, 3);
+        ReflectionTestUtils.setField(service, "uploadAdmissionController", admission);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 不占内存的输入流
+     */
+    private static InputStream zeros(long size) {
+        return new InputStream() {
+            private long remaining = size;
+
+            @Override
+            public int read() {
+                return remaining-- > 0 ? 0 : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = (int) Math.min(len, remaining);
+                remaining -= n;
+                return n;
+            }
+        };
+    }
+
+    @Test
+    public void failedChunkReleasesQueuedBuffers() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        doAnswer(invocation -> {
+            sent.incrementAndGet();
+            // 等读取端读满并发上限，其余分块都已排队后再失败
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (pool.getUsedBytes() < 4L * CHUNK && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // 没有文件ID，分块上传失败
+            SendResponse response = mock(SendResponse.class);
+            when(response.isOk()).thenReturn(true);
+            when(response.message()).thenReturn(mock(Message.class));
+            return response;
+        }).when(telegramBotService).execute(any(BotEndpoint.class), any(SendDocument.class), any(RequestPriority.class));
+
+        assertThrows(RuntimeException.class, () -> ReflectionTestUtils.invokeMethod(service,
+                "sendFileStreamInChunks", zeros(8L * CHUNK), "big.bin", 8L * CHUNK));
+
+        // 排队中的分块执行时归还缓冲区，且不再发送
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (pool.getUsedBytes() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.getUsedBytes());
+        assertEquals(1, sent.get());
+        assertEquals(0, admission.getStats().getInFlightChunkTasks());
+    }
+
+    @Test
+    public void chunkTasksStayWithinExecutorCapacity() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        doAnswer(invocation -> {
+            sent.incrementAndGet();
+            maxInFlight.accumulateAndGet((int) (pool.getUsedBytes() / CHUNK), Math::max);
+            Thread.sleep(20);
+            Document document = mock(Document.class);
+            when(document.fileId()).thenReturn("part" + sent.get());
+            Message message = mock(Message.class);
+            when(message.document()).thenReturn(document);
+            SendResponse response = mock(SendResponse.class);
+            when(response.isOk()).thenReturn(true);
+            when(response.message()).thenReturn(message);
+            return response;
+        }).when(telegramBotService).execute(any(BotEndpoint.class), any(SendDocument.class), any(RequestPriority.class));
+        // 5个bot时单个上传最多25个在途分块，全局名额只有4个
+        when(telegramBotService.getUploadBotCount()).thenReturn(5);
+
+        List<?> chunks = ReflectionTestUtils.invokeMethod(service,
+                "sendFileStreamInChunks", zeros(8L * CHUNK), "big.bin", 8L * CHUNK);
+
+        assertEquals(8, chunks.size());
+        assertEquals(8, sent.get());
+        assertTrue(maxInFlight.get() <= 4, "在途分块数：" + maxInFlight.get());
+        assertEquals(0, admission.getStats().getInFlightChunkTasks());
+    }
+}
@@ -0,0 +1,147 @@
+package com.skydevs.tgdrive.service.impl;
+
+import com.skydevs.tgdrive.datasource.WriteQueue;
+import com.skydevs.tgdrive.dto.UploadFile;
+import com.skydevs.tgdrive.entity.ChunkLocation;
+import com.skydevs.tgdrive.entity.FileInfo;
+import com.skydevs.tgdrive.entity.UploadSession;
+import com.skydevs.tgdrive.entity.UploadSessionChunk;
+import com.skydevs.tgdrive.exception.file.UploadFailedException;
+import com.skydevs.tgdrive.mapper.FileMapper;
+import com.skydevs.tgdrive.mapper.UploadSessionMapper;
+import com.skydevs.tgdrive.service.FileStorageService;
+import com.skydevs.tgdrive.upload.ContentTypeDetector;
+import com.skydevs.tgdrive.websocket.UploadProgressWebSocketHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class UploadSessionServiceImplTest {
+
+    private UploadSessionMapper uploadSessionMapper;
+    private FileMapper fileMapper;
+    private FileStorageService fileStorageService;
+    private UploadSessionServiceImpl service;
+    // 数据库中的会话
+    private final AtomicReference<UploadSession> stored = new AtomicReference<>();
+
+    @BeforeEach
+    public void setUp() {
+        uploadSessionMapper = mock(UploadSessionMapper.class);
+        fileMapper = mock(FileMapper.class);
+        fileStorageService = mock(FileStorageService.class);
+        WriteQueue writeQueue = mock(WriteQueue.class);
+        when(writeQueue.execute(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+
+        stored.set(UploadSession.builder().id("u1").fileName("a.bin").fileSize(20L).chunkSize(10).totalChunks(2)
+                .userId(1L).status(UploadSession.STATUS_UPLOADING).build());
+        when(uploadSessionMapper.getSession("u1")).thenAnswer(invocation -> copy(stored.get()));
+        when(uploadSessionMapper.getChunks("u1")).thenReturn(List.of(
+                UploadSessionChunk.builder().sessionId("u1").chunkIndex(0).fileId("c0").size(10L).build(),
+                UploadSessionChunk.builder().sessionId("u1").chunkIndex(1).fileId("c1").size(10L).build()));
+        when(uploadSessionMapper.completeSession(any())).thenAnswer(invocation -> {
+            synchronized (stored) {
+                if (!UploadSession.STATUS_UPLOADING.equals(stored.get().getStatus())) {
+                    return 0;
+                }
+                stored.set(copy(invocation.getArgument(0)));
+                return 1;
+            }
+        });
+
+        service = new UploadSessionServiceImpl(uploadSessionMapper, fileMapper, fileStorageService,
+                mock(ContentTypeDetector.class), mock(UploadProgressWebSocketHandler.class), writeQueue);
+    }
+
+    private static UploadSession copy(UploadSession session) {
+        return UploadSession.builder().id(session.getId()).fileName(session.getFileName()).fileSize(session.getFileSize())
+                .chunkSize(session.getChunkSize()).totalChunks(session.getTotalChunks()).userId(session.getUserId())
+                .status(session.getStatus()).fileId(session.getFileId()).downloadUrl(session.getDownloadUrl())
+                .updateTime(session.getUpdateTime()).build();
+    }
+
+    @Test
+    public void concurrentCompleteCreatesOneFile() throws Exception {
+        when(fileStorageService.createRecordFile(anyString(), anyLong(), anyList())).thenAnswer(invocation -> {
+            // 模拟发送记录文件的耗时
+            Thread.sleep(200);
+            return "record";
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<UploadFile> first = executor.submit(() -> service.complete("u1", new MockHttpServletRequest(), 1L, "user"));
+            Future<UploadFile> second = executor.submit(() -> service.complete("u1", new MockHttpServletRequest(), 1L, "user"));
+            assertEquals(first.get().getDownloadLink(), second.get().getDownloadLink());
+        } finally {
+            executor.shutdown();
+        }
+
+        verify(fileStorageService, times(1)).createRecordFile(anyString(), anyLong(), anyList());
+        verify(fileMapper, times(1)).insertFile(any(FileInfo.class));
+    }
+
+    @Test
+    public void lostCompletionDoesNotInsertFile() {
+        // 生成记录文件期间会话已被其他实例完成
+        when(fileStorageService.createRecordFile(anyString(), anyLong(), anyList())).thenAnswer(invocation -> {
+            UploadSession other = copy(stored.get());
+            other.setStatus(UploadSession.STATUS_COMPLETED);
+            other.setFileId("other");
+            other.setDownloadUrl("http://localhost/d/other");
+            stored.set(other);
+            return "record";
+        });
+
+        UploadFile result = service.complete("u1", new MockHttpServletRequest(), 1L, "user");
+
+        assertEquals("http://localhost/d/other", result.getDownloadLink());
+        verify(fileMapper, never()).insertFile(any(FileInfo.class));
+    }
+
+    @Test
+    public void chunkOfAbortedSessionIsNotRecorded() {
+        // 分块上传到Telegram期间会话被取消
+        when(fileStorageService.uploadPart(any(), anyString(), anyInt(), anyInt(), anyLong())).thenAnswer(invocation -> {
+            service.abort("u1", 1L, "user");
+            return new ChunkLocation("c0", null, 10L);
+        });
+        doAnswer(invocation -> {
+            stored.set(null);
+            return null;
+        }).when(uploadSessionMapper).deleteSession("u1");
+        when(uploadSessionMapper.getSession("u1")).thenAnswer(invocation -> stored.get() == null ? null : copy(stored.get()));
+
+        assertThrows(UploadFailedException.class,
+                () -> service.uploadChunk("u1", 0, new ByteArrayInputStream(new byte[10]), 10, 1L, "user"));
+
+        verify(uploadSessionMapper).deleteChunks("u1");
+        verify(uploadSessionMapper, never()).upsertChunk(any());
+    }
+
+    @Test
+    public void cleanupSkipsSessionTouchedAfterListing() {
+        when(uploadSessionMapper.getExpiredSessionIds(anyLong())).thenReturn(List.of("u1"));
+        ReflectionTestUtils.setField(service, "sessionExpire", Duration.ofDays(7));
+        stored.get().setUpdateTime(System.currentTimeMillis() / 1000);
+
+        service.cleanExpiredSessions();
+
+        verify(uploadSessionMapper, never()).deleteSession(anyString());
+        verify(uploadSessionMapper, never()).deleteChunks(anyString());
+    }
+}
@@ -0,0 +1,95 @@
+package com.skydevs.tgdrive.service.impl;
+
+import com.skydevs.tgdrive.datasource.WriteQueue;
+import com.skydevs.tgdrive.entity.FileInfo;
+import com.skydevs.tgdrive.mapper.FileMapper;
+import com.skydevs.tgdrive.service.FileTreeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class WebDavServiceImplTest {
+
+    private FileMapper fileMapper;
+    private FileTreeService fileTreeService;
+    private WebDavServiceImpl service;
+
+    @BeforeEach
+    public void setUp() {
+        fileMapper = mock(FileMapper.class);
+        fileTreeService = mock(FileTreeService.class);
+        WriteQueue writeQueue = mock(WriteQueue.class);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(writeQueue).run(any());
+        service = new WebDavServiceImpl(fileMapper, fileTreeService, writeQueue);
+
+        when(fileTreeService.resolve("/a/")).thenReturn(FileInfo.builder().id(1L).webdavPath("/a/").dir(true).build());
+        when(fileTreeService.parentIdOf(anyString())).thenReturn(FileTreeService.ROOT_ID);
+    }
+
+    private MockHttpServletResponse send(String method, String path, String destination, String overwrite) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/webdav/dispatch" + path);
+        request.setAttribute("X-HTTP-Method-Override", method);
+        request.addHeader("Destination", destination);
+        if (overwrite != null) {
+            request.addHeader("Overwrite", overwrite);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.switchMethod(request, response);
+        return response;
+    }
+
+    @Test
+    public void normalizesDestination() {
+        assertEquals("/x/", WebDavServiceImpl.getTargetPath("http://localhost/webdav/x/", true));
+        assertEquals("/x/", WebDavServiceImpl.getTargetPath("http://proxy:8443/webdav/x//", true));
+        assertEquals("/x/", WebDavServiceImpl.getTargetPath("/webdav/x", true));
+        assertEquals("/a b.txt", WebDavServiceImpl.getTargetPath("/webdav/a%20b.txt", false));
+        assertEquals("/", WebDavServiceImpl.getTargetPath("http://localhost/webdav/", true));
+        assertNull(WebDavServiceImpl.getTargetPath("http://localhost/other/x/", true));
+    }
+
+    @Test
+    public void copiesToTrailingSlashDestination() throws Exception {
+        MockHttpServletResponse response = send("COPY", "/a/", "http://localhost/webdav/x/", null);
+
+        assertEquals(201, response.getStatus());
+        verify(fileMapper).copySubtree(eq("/a/"), anyString(), eq("/x/"), eq("x"));
+    }
+
+    @Test
+    public void moveOntoItselfWithTrailingSlash() throws Exception {
+        MockHttpServletResponse response = send("MOVE", "/a/", "http://localhost/webdav/a/", null);
+
+        assertEquals(204, response.getStatus());
+        verify(fileMapper, never()).moveSubtree(anyString(), anyString(), anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    public void refusesToOverwriteExistingDestination() throws Exception {
+        when(fileTreeService.resolve("/x/")).thenReturn(FileInfo.builder().id(2L).webdavPath("/x/").dir(true).build());
+
+        MockHttpServletResponse response = send("MOVE", "/a/", "http://localhost/webdav/x/", "F");
+
+        assertEquals(412, response.getStatus());
+        verify(fileMapper, never()).moveSubtree(anyString(), anyString(), anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    public void rejectsDestinationWithoutParent() throws Exception {
+        when(fileTreeService.parentIdOf("/missing/x/")).thenReturn(null);
+
+        MockHttpServletResponse response = send("COPY", "/a/", "http://localhost/webdav/missing/x/", null);
+
+        assertEquals(409, response.getStatus());
+        verify(fileMapper, never()).copySubtree(anyString(), anyString(), anyString(), anyString());
+        verify(fileTreeService, never()).ensureParentDirs(anyString());
+    }
+}
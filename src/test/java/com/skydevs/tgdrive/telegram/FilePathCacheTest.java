@@ -0,0 +1,54 @@
+package com.skydevs.tgdrive.telegram;
+
+import com.google.gson.Gson;
+import com.pengrad.telegrambot.model.File;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FilePathCacheTest {
+
+    private static File file(String path) {
+        return new Gson().fromJson("{\"file_id\":\"id\",\"file_size\":10,\"file_path\":\"" + path + "\"}", File.class);
+    }
+
+    @Test
+    public void cachesPerBot() {
+        FilePathCache cache = new FilePathCache(Duration.ofMinutes(50), 100);
+        File file = file("documents/a");
+        cache.put("bot1", "id", file);
+
+        assertSame(file, cache.get("bot1", "id"));
+        assertNull(cache.get("bot2", "id"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void expiredEntryIsMiss() throws InterruptedException {
+        FilePathCache cache = new FilePathCache(Duration.ofMillis(1), 100);
+        cache.put("bot", "id", file("documents/a"));
+        Thread.sleep(5);
+        assertNull(cache.get("bot", "id"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void invalidateRemovesEntry() {
+        FilePathCache cache = new FilePathCache(Duration.ofMinutes(50), 100);
+        cache.put("bot", "id", file("documents/a"));
+        cache.invalidate("bot", "id");
+        assertNull(cache.get("bot", "id"));
+    }
+
+    @Test
+    public void skipsWhenFull() {
+        FilePathCache cache = new FilePathCache(Duration.ofMinutes(50), 1);
+        cache.put("bot", "a", file("documents/a"));
+        cache.put("bot", "b", file("documents/b"));
+        assertNotNull(cache.get("bot", "a"));
+        assertNull(cache.get("bot", "b"));
+    }
+}
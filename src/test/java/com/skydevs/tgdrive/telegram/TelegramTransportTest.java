@@ -0,0 +1,84 @@
+package com.skydevs.tgdrive.telegram;
+
+import com.skydevs.tgdrive.dto.TelegramTransportStats;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelegramTransportTest {
+
+    private HttpServer server;
+    private TelegramTransport transport;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        transport = new TelegramTransport(64, 32, 16, Duration.ofMinutes(5), true,
+                Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void connectionsAreReusedAndCounted() throws IOException {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/file";
+        for (int i = 0; i < 3; i++) {
+            try (Response response = transport.getClient().newCall(new Request.Builder().url(url).build()).execute()) {
+                assertEquals("ok", response.body().string());
+            }
+        }
+
+        TelegramTransportStats stats = transport.getStats();
+        assertEquals(3, stats.getCalls());
+        assertEquals(0, stats.getFailedCalls());
+        assertEquals(3, stats.getConnectionsAcquired());
+        assertEquals(1, stats.getNewConnections());
+        assertEquals(1, stats.getConnectionCount());
+        // 明文HTTP不会协商HTTP/2
+        assertEquals(0, stats.getHttp2Acquisitions());
+        assertTrue(stats.getMaxHeadersMillis() >= stats.getAvgHeadersMillis());
+    }
+
+    @Test
+    public void synchronousCallsAreLimitedPerHost() throws IOException {
+        TelegramTransport limited = new TelegramTransport(64, 1, 16, Duration.ofMinutes(5), true,
+                Duration.ofMillis(200), Duration.ofSeconds(5), Duration.ofSeconds(5));
+        Request request = new Request.Builder()
+                .url("http://127.0.0.1:" + server.getAddress().getPort() + "/file")
+                .build();
+
+        Response first = limited.getClient().newCall(request).execute();
+        // 响应体未关闭前一直占用许可
+        assertEquals(1, limited.getStats().getRunningCalls());
+        assertThrows(IOException.class, () -> limited.getClient().newCall(request).execute());
+
+        first.close();
+        assertEquals(0, limited.getStats().getRunningCalls());
+        try (Response response = limited.getClient().newCall(request).execute()) {
+            assertEquals("ok", response.body().string());
+        }
+        assertEquals(0, limited.getStats().getRunningCalls());
+    }
+}
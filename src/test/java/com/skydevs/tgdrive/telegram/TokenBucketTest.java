@@ -0,0 +1,38 @@
+package com.skydevs.tgdrive.telegram;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void burstThenRefill() {
+        TokenBucket bucket = new TokenBucket(1, 3, 0);
+        assertTrue(bucket.tryConsume(0));
+        assertTrue(bucket.tryConsume(0));
+        assertTrue(bucket.tryConsume(0));
+        assertFalse(bucket.tryConsume(0));
+        assertEquals(SECOND, bucket.nanosUntilAvailable(0));
+
+        assertTrue(bucket.tryConsume(SECOND));
+        assertFalse(bucket.tryConsume(SECOND));
+    }
+
+    @Test
+    public void pauseHonorsRetryAfter() {
+        TokenBucket bucket = new TokenBucket(30, 30, 0);
+        bucket.pauseUntil(5 * SECOND);
+        assertEquals(5 * SECOND, bucket.nanosUntilAvailable(0));
+        assertFalse(bucket.tryConsume(4 * SECOND));
+
+        // 恢复后从空桶开始补充，不会立即突发
+        long resume = 5 * SECOND + SECOND / 30 + 1;
+        assertTrue(bucket.tryConsume(resume));
+        assertFalse(bucket.tryConsume(resume));
+    }
+}
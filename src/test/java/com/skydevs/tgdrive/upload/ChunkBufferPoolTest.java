@@ -0,0 +1,56 @@
+package com.skydevs.tgdrive.upload;
+
+import com.skydevs.tgdrive.exception.file.UploadRejectedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkBufferPoolTest {
+
+    private static final int CHUNK = ChunkBufferPool.CHUNK_SIZE;
+
+    @Test
+    public void acquireTimesOutWhenBudgetExhausted() throws Exception {
+        ChunkBufferPool pool = new ChunkBufferPool(DataSize.ofBytes(CHUNK), Duration.ofMillis(50));
+        try (ChunkBuffer ignored = pool.acquire(CHUNK)) {
+            assertThrows(UploadRejectedException.class, () -> pool.acquire(CHUNK));
+        }
+        // 归还后可以再次获取
+        pool.acquire(CHUNK).close();
+        assertEquals(0, pool.getUsedBytes());
+    }
+
+    @Test
+    public void idleSlabsCountAgainstBudget() throws Exception {
+        ChunkBufferPool pool = new ChunkBufferPool(DataSize.ofBytes(2L * CHUNK), Duration.ofSeconds(5));
+        ChunkBuffer first = pool.acquire(CHUNK);
+        ChunkBuffer second = pool.acquire(CHUNK);
+        byte[] firstSlab = first.array();
+        byte[] secondSlab = second.array();
+        first.close();
+        second.close();
+
+        // 两个空闲缓冲区占满预算
+        assertEquals(0, pool.getUsedBytes());
+        assertEquals(2L * CHUNK, pool.getIdleBytes());
+        assertEquals(2L * CHUNK, pool.getResidentBytes());
+
+        // 满分块直接复用空闲缓冲区，不另外占用预算
+        try (ChunkBuffer reused = pool.acquire(CHUNK)) {
+            assertTrue(reused.array() == firstSlab || reused.array() == secondSlab);
+            assertEquals(2L * CHUNK, pool.getResidentBytes());
+        }
+
+        // 其他大小的缓冲区先释放空闲缓冲区腾出预算
+        try (ChunkBuffer small = pool.acquire(1024)) {
+            assertEquals(0, pool.getIdleBytes());
+            assertTrue(pool.getResidentBytes() <= 2L * CHUNK);
+            try (ChunkBuffer chunk = pool.acquire(CHUNK)) {
+                assertTrue(pool.getResidentBytes() <= 2L * CHUNK);
+            }
+        }
+    }
+}
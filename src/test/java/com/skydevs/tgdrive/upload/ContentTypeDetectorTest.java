@@ -0,0 +1,39 @@
+package com.skydevs.tgdrive.upload;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentTypeDetectorTest {
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 0x0d, 'I', 'H', 'D', 'R'};
+
+    private final ContentTypeDetector detector = new ContentTypeDetector();
+
+    @Test
+    public void detectsFromHeadWithoutExtension() {
+        assertEquals("image/png", detector.detect(PNG, "picture"));
+        assertEquals(".png", detector.extensionOf("image/png"));
+    }
+
+    @Test
+    public void streamIsNotConsumed() throws IOException {
+        byte[] data = new byte[ContentTypeDetector.HEAD_SIZE * 2];
+        System.arraycopy(PNG, 0, data, 0, PNG.length);
+        InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(data), ContentTypeDetector.HEAD_SIZE);
+
+        assertEquals("image/png", detector.detect(inputStream, null));
+        assertArrayEquals(data, inputStream.readAllBytes());
+    }
+
+    @Test
+    public void fallsBackToName() {
+        assertEquals("application/pdf", detector.detectByName("a.pdf"));
+        assertEquals(ContentTypeDetector.DEFAULT_TYPE, detector.detectByName("unknown"));
+    }
+}
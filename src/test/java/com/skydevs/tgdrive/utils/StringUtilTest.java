@@ -0,0 +1,30 @@
+package com.skydevs.tgdrive.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StringUtilTest {
+
+    @Test
+    public void parentPath() {
+        assertEquals("/a/b/", StringUtil.getParentPath("/a/b/c.txt"));
+        assertEquals("/a/", StringUtil.getParentPath("/a/b/"));
+        assertEquals("/a/", StringUtil.getParentPath("/a/b.c"));
+        assertEquals("/", StringUtil.getParentPath("/x.txt"));
+        assertEquals("/", StringUtil.getParentPath("/a/"));
+        assertEquals("/", StringUtil.getParentPath("/"));
+    }
+
+    @Test
+    public void subtreeUpperBound() {
+        assertEquals("/a/b0", StringUtil.getSubtreeUpperBound("/a/b/"));
+        assertEquals("0", StringUtil.getSubtreeUpperBound("/"));
+        assertEquals("/a/b.txt", StringUtil.getSubtreeUpperBound("/a/b.txt"));
+        // 子树中的路径都在范围内，同名前缀的兄弟不在
+        assertTrue("/a/b/z".compareTo("/a/b0") < 0);
+        assertTrue("/a/b-c/".compareTo("/a/b/") < 0);
+        assertTrue("/a/bc/".compareTo("/a/b0") > 0);
+    }
+}
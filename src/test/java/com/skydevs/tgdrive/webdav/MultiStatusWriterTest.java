@@ -0,0 +1,71 @@
+package com.skydevs.tgdrive.webdav;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultiStatusWriterTest {
+
+    private static final String DAV = "DAV:";
+
+    private static Document parse(byte[] xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+
+    private static String text(Element parent, String name) {
+        NodeList nodes = parent.getElementsByTagNameNS(DAV, name);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    @Test
+    public void writesWellFormedEscapedEntries() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MultiStatusWriter writer = new MultiStatusWriter(out)) {
+            writer.writeEntry("/webdav/a%20%26%20b/", "a & b <dir>", true, 0, null);
+            writer.writeEntry("/webdav/%E6%96%87.txt", "文.txt", false, 1700000000L, 42L);
+        }
+
+        Document document = parse(out.toByteArray());
+        Element root = document.getDocumentElement();
+        assertEquals(DAV, root.getNamespaceURI());
+        assertEquals("multistatus", root.getLocalName());
+
+        NodeList responses = root.getElementsByTagNameNS(DAV, "response");
+        assertEquals(2, responses.getLength());
+
+        Element dir = (Element) responses.item(0);
+        assertEquals("a & b <dir>", text(dir, "displayname"));
+        assertEquals(1, dir.getElementsByTagNameNS(DAV, "collection").getLength());
+        assertNull(text(dir, "getcontentlength"));
+        assertEquals("Thu, 1 Jan 1970 00:00:00 GMT", text(dir, "getlastmodified"));
+
+        Element file = (Element) responses.item(1);
+        assertEquals("文.txt", text(file, "displayname"));
+        assertEquals("42", text(file, "getcontentlength"));
+        assertEquals(0, file.getElementsByTagNameNS(DAV, "collection").getLength());
+        assertEquals("HTTP/1.1 200 OK", text(file, "status"));
+    }
+
+    @Test
+    public void writesStatusOnlyEntry() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MultiStatusWriter writer = new MultiStatusWriter(out)) {
+            writer.writeStatus("/webdav/x.txt");
+        }
+
+        String xml = out.toString(StandardCharsets.UTF_8);
+        Element response = (Element) parse(out.toByteArray()).getElementsByTagNameNS(DAV, "response").item(0);
+        assertEquals("/webdav/x.txt", text(response, "href"));
+        assertNull(text(response, "prop"), xml);
+    }
+}
@@ -0,0 +1,145 @@
+package com.skydevs.tgdrive.webdav;
+
+import com.skydevs.tgdrive.entity.FileInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebDavPathIndexTest {
+
+    private static FileInfo entry(long id, String path) {
+        return FileInfo.builder().id(id).webdavPath(path).fileId(path.endsWith("/") ? "dir" : "f" + id)
+                .dir(path.endsWith("/")).build();
+    }
+
+    private static List<Long> childIds(WebDavPathIndex index, String dirPath) {
+        List<Long> ids = new ArrayList<>();
+        index.forEachChild(dirPath, file -> ids.add(file.getId()));
+        ids.sort(Comparator.reverseOrder());
+        return ids;
+    }
+
+    private static WebDavPathIndex index(FileInfo... files) {
+        WebDavPathIndex index = new WebDavPathIndex(true);
+        index.load(List.of(files));
+        return index;
+    }
+
+    @Test
+    public void splitsDirectorySegmentsWithSlash() {
+        assertEquals(List.of("a/", "b/", "c.txt"), WebDavPathIndex.segments("/a/b/c.txt"));
+        assertEquals(List.of("a/", "b/"), WebDavPathIndex.segments("/a/b/"));
+        assertTrue(WebDavPathIndex.segments("/").isEmpty());
+    }
+
+    @Test
+    public void findsExactPath() {
+        WebDavPathIndex index = index(entry(1, "/a/"), entry(2, "/a/b.txt"), entry(3, "/a/b/"));
+
+        assertEquals(2L, index.get("/a/b.txt").getId());
+        // 同名的文件和目录是不同的条目
+        assertEquals(3L, index.get("/a/b/").getId());
+        assertNull(index.get("/a/b"));
+        assertNull(index.get("/A/b.txt"));
+        assertNull(index.get("/x/b.txt"));
+    }
+
+    @Test
+    public void findsPathIgnoringCase() {
+        WebDavPathIndex index = index(entry(1, "/Docs/"), entry(2, "/Docs/Report.PDF"));
+
+        assertEquals(2L, index.getIgnoreCase("/docs/report.pdf").getId());
+        assertEquals(1L, index.getIgnoreCase("/DOCS/").getId());
+        assertNull(index.getIgnoreCase("/docs/other.pdf"));
+    }
+
+    @Test
+    public void keepsLowestIdForDuplicatePaths() {
+        WebDavPathIndex index = index(entry(1, "/a.txt"), entry(5, "/a.txt"));
+        assertEquals(1L, index.get("/a.txt").getId());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void visitsChildrenAndDescendants() {
+        WebDavPathIndex index = index(entry(1, "/a/"), entry(2, "/a/x.txt"), entry(3, "/a/y/"), entry(4, "/a/y/z.txt"));
+
+        assertEquals(List.of(3L, 2L), childIds(index, "/a/"));
+        assertEquals(List.of(1L), childIds(index, "/"));
+        assertTrue(childIds(index, "/missing/").isEmpty());
+
+        List<Long> descendants = new ArrayList<>();
+        index.forEachDescendant("/a/", file -> descendants.add(file.getId()));
+        descendants.sort(null);
+        assertEquals(List.of(2L, 3L, 4L), descendants);
+    }
+
+    @Test
+    public void replacesMovedSubtree() {
+        WebDavPathIndex index = index(entry(1, "/a/"), entry(2, "/a/x.txt"), entry(3, "/b/"));
+
+        // 移动 /a/ 到 /b/c/ 后分别同步源和目标
+        index.replaceSubtree("/a/", List.of());
+        index.replaceSubtree("/b/c/", List.of(entry(1, "/b/c/"), entry(2, "/b/c/x.txt")));
+
+        assertNull(index.get("/a/"));
+        assertNull(index.get("/a/x.txt"));
+        assertEquals(2L, index.get("/b/c/x.txt").getId());
+        assertEquals(List.of(1L), childIds(index, "/b/"));
+        assertEquals(List.of(3L), childIds(index, "/"));
+    }
+
+    @Test
+    public void caseOnlyRenameUpdatesFoldedLookup() {
+        WebDavPathIndex index = index(entry(1, "/Note.txt"));
+
+        index.replaceSubtree("/Note.txt", List.of());
+        index.replaceSubtree("/note.txt", List.of(entry(1, "/note.txt")));
+
+        assertNull(index.get("/Note.txt"));
+        assertEquals("/note.txt", index.getIgnoreCase("/NOTE.txt").getWebdavPath());
+    }
+
+    @Test
+    public void removingLastEntryPrunesImplicitDirectories() {
+        // 父目录没有记录时，索引中的中间节点随最后一个子项一起删除
+        WebDavPathIndex index = index(entry(2, "/a/b/c.txt"));
+
+        index.replaceSubtree("/a/b/c.txt", List.of());
+
+        assertEquals(0, index.size());
+        assertTrue(childIds(index, "/").isEmpty());
+        assertNull(index.getIgnoreCase("/A/"));
+    }
+
+    @Test
+    public void findsPathsByFileId() {
+        WebDavPathIndex index = index(entry(1, "/a.txt"), entry(2, "/b.txt"));
+        index.replaceSubtree("/c.txt", List.of(FileInfo.builder().id(3L).webdavPath("/c.txt").fileId("f1").build()));
+
+        assertEquals(List.of("/a.txt", "/c.txt"), index.pathsOf("f1").stream().sorted().toList());
+    }
+
+    @Test
+    public void pathsByFileIdFollowSubtreeChanges() {
+        // 重复路径只保留id最小的条目，它的文件ID才可以查到
+        WebDavPathIndex index = index(entry(1, "/a/"), entry(2, "/a/x.txt"), entry(3, "/a/y/"), entry(4, "/a/y/z.txt"),
+                FileInfo.builder().id(5L).webdavPath("/a/x.txt").fileId("f5").build());
+        assertTrue(index.pathsOf("f5").isEmpty());
+
+        // 移动 /a/ 到 /b/
+        index.replaceSubtree("/a/", List.of());
+        index.replaceSubtree("/b/", List.of(entry(1, "/b/"), entry(2, "/b/x.txt"), entry(3, "/b/y/"), entry(4, "/b/y/z.txt")));
+        assertEquals(List.of("/b/x.txt"), index.pathsOf("f2"));
+        assertEquals(List.of("/b/y/z.txt"), index.pathsOf("f4"));
+
+        // 删除文件
+        index.replaceSubtree("/b/y/z.txt", List.of());
+        assertTrue(index.pathsOf("f4").isEmpty());
+        assertTrue(index.pathsOf("missing").isEmpty());
+    }
+}